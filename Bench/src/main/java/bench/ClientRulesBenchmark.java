@@ -0,0 +1,129 @@
+package bench;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import rule.Card;
+
+/**
+ * Benchmarks of the rules the client and the bots apply on every move: the
+ * cards that may be played by {@link Card#getFeasible}, the cards hinted by
+ * {@link Card#getHintFeasible} and parsing aliases by {@link Card#Card(String)}.
+ *
+ * @author Weizhao Tang
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClientRulesBenchmark {
+
+    /**
+     * Hands following a single card, from a shoe of one or two decks.
+     */
+    @State(Scope.Thread)
+    public static class Shoe {
+        @Param({ "1", "2" })
+        public int numDecks;
+
+        final ArrayList<ArrayList<Card>> hands = new ArrayList<>();
+        final ArrayList<ArrayList<Card>> leadSets = new ArrayList<>();
+        final boolean[] firstRounds = new boolean[Decks.POOL_SIZE];
+        final String[] aliases = new String[Decks.POOL_SIZE]; // full aliases as they arrive from the server
+        int next = 0;
+
+        @Setup
+        public void setUp() {
+            final Random random = new Random(Decks.SEED);
+
+            for (int i = 0; i < Decks.POOL_SIZE; i++) {
+                final List<String> shoe = Decks.shuffled(numDecks, random);
+                final ArrayList<Card> hand = new ArrayList<>();
+                for (final String alias : shoe.subList(0, 13 * numDecks))
+                    hand.add(new Card(alias));
+                hands.add(hand);
+                leadSets.add(new ArrayList<>(List.of(new Card(shoe.get(13 * numDecks)))));
+                firstRounds[i] = i % (13 * numDecks) == 0;
+            }
+
+            final List<String> shoe = Decks.shuffled(numDecks, random);
+            for (int i = 0; i < Decks.POOL_SIZE; i++) {
+                final String alias = shoe.get(i % shoe.size());
+                aliases[i] = Decks.isExposable(alias) && random.nextBoolean() ? alias + "x" : alias;
+            }
+        }
+
+        int next() {
+            return next = (next + 1) & (Decks.POOL_SIZE - 1);
+        }
+    }
+
+    /**
+     * Hands following a pair, which needs two decks, with the card the player
+     * selected first.
+     */
+    @State(Scope.Thread)
+    public static class PairShoe {
+        final ArrayList<ArrayList<Card>> hands = new ArrayList<>();
+        final ArrayList<ArrayList<Card>> leadSets = new ArrayList<>();
+        final ArrayList<HashSet<Card>> selections = new ArrayList<>();
+        int next = 0;
+
+        @Setup
+        public void setUp() {
+            final Random random = new Random(Decks.SEED);
+
+            for (int i = 0; i < Decks.POOL_SIZE; i++) {
+                final List<String> shoe = Decks.shuffled(2, random);
+                final ArrayList<Card> hand = new ArrayList<>();
+                for (final String alias : shoe.subList(0, 26))
+                    hand.add(new Card(alias));
+                final String lead = shoe.get(26);
+                final ArrayList<Card> leadSet = new ArrayList<>(List.of(new Card(lead), new Card(lead)));
+
+                final HashSet<Card> selected = new HashSet<>();
+                selected.add(Card.getFeasible(hand, leadSet, null, false).iterator().next());
+
+                hands.add(hand);
+                leadSets.add(leadSet);
+                selections.add(selected);
+            }
+        }
+
+        int next() {
+            return next = (next + 1) & (Decks.POOL_SIZE - 1);
+        }
+    }
+
+    @Benchmark
+    public HashSet<Card> getFeasibleSingle(final Shoe shoe) {
+        final int i = shoe.next();
+        return Card.getFeasible(shoe.hands.get(i), shoe.leadSets.get(i), null, shoe.firstRounds[i]);
+    }
+
+    @Benchmark
+    public HashSet<Card> getFeasiblePair(final PairShoe shoe) {
+        final int i = shoe.next();
+        return Card.getFeasible(shoe.hands.get(i), shoe.leadSets.get(i), shoe.selections.get(i), false);
+    }
+
+    @Benchmark
+    public HashSet<Card> getHintFeasibleSingle(final Shoe shoe) {
+        final int i = shoe.next();
+        return Card.getHintFeasible(shoe.hands.get(i), shoe.leadSets.get(i), null, shoe.firstRounds[i]);
+    }
+
+    @Benchmark
+    public HashSet<Card> getHintFeasiblePair(final PairShoe shoe) {
+        final int i = shoe.next();
+        return Card.getHintFeasible(shoe.hands.get(i), shoe.leadSets.get(i), shoe.selections.get(i), false);
+    }
+
+    @Benchmark
+    public Card parseCard(final Shoe shoe) {
+        return new Card(shoe.aliases[shoe.next()]);
+    }
+}
@@ -0,0 +1,52 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Decks builds the shuffled card aliases the benchmarks draw their inputs
+ * from. The same seed gives the same inputs on every run.
+ *
+ * @author Weizhao Tang
+ */
+final class Decks {
+    static final long SEED = 42;
+    static final int POOL_SIZE = 256; // inputs per benchmark, a power of 2
+
+    static final String RANKS = "23456789TJQKA";
+    static final String SUITS = "CDSH";
+
+    private Decks() {
+    }
+
+    /**
+     * Returns the aliases of all cards in a shoe, shuffled.
+     *
+     * @param numDecks Number of decks in the shoe
+     * @param random   Random generator to shuffle with
+     * @return the aliases, such as "QS"
+     */
+    static List<String> shuffled(final int numDecks, final Random random) {
+        final ArrayList<String> aliases = new ArrayList<>(52 * numDecks);
+        for (int i = 0; i < numDecks; i++) {
+            for (final char suit : SUITS.toCharArray()) {
+                for (final char rank : RANKS.toCharArray())
+                    aliases.add("" + rank + suit);
+            }
+        }
+        Collections.shuffle(aliases, random);
+        return aliases;
+    }
+
+    /**
+     * Tells if a card can be exposed, which gives it a suffix in full aliases.
+     *
+     * @param alias Alias of the card
+     * @return {@code true} for TC, JD, QS and AH
+     */
+    static boolean isExposable(final String alias) {
+        return alias.equals("TC") || alias.equals("JD") || alias.equals("QS") || alias.equals("AH");
+    }
+}
@@ -0,0 +1,67 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * RunBenchmarks runs the rule benchmarks with the GC profiler, so that every
+ * result comes with the bytes allocated per operation next to its time.
+ *
+ * @author Weizhao Tang
+ */
+public class RunBenchmarks {
+    private static final String USAGE = "Options: [-b benchmarkRegex] [-d numDecks] [-i numIterations]";
+
+    /**
+     * Main method of the benchmark runner.
+     *
+     * @param args String array of arguments passed to the runner
+     */
+    public static void main(final String[] args) throws RunnerException {
+        String regex = "bench\\..*";
+        String numDecks = null;
+        int numIterations = 0;
+
+        for (int i = 0; i < args.length; i += 2) {
+            final String option = args[i];
+            String argument = null;
+            try {
+                argument = args[i + 1];
+            } catch (final ArrayIndexOutOfBoundsException e) {
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+            try {
+                switch (option) {
+                    case "-b":
+                        regex = argument;
+                        break;
+                    case "-d":
+                        numDecks = argument;
+                        break;
+                    case "-i":
+                        numIterations = Integer.parseInt(argument);
+                        break;
+                    default:
+                        System.err.println(USAGE);
+                        System.exit(1);
+                        break;
+                }
+            } catch (final NumberFormatException e) {
+                System.err.println("Option " + option + " must be an integer");
+                System.exit(1);
+            }
+        }
+
+        final ChainedOptionsBuilder options = new OptionsBuilder().include(regex).addProfiler(GCProfiler.class);
+        if (numDecks != null)
+            options.param("numDecks", numDecks);
+        if (numIterations > 0)
+            options.warmupIterations(numIterations).measurementIterations(numIterations);
+
+        new Runner(options.build()).run();
+    }
+}
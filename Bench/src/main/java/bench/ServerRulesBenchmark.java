@@ -0,0 +1,181 @@
+package bench;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import rule.Asset;
+import rule.Card;
+
+/**
+ * Benchmarks of the rules the server applies on every move: the winner of a
+ * trick by {@link Card#roundResult}, the score of assets by
+ * {@link Asset#getScore}, parsing aliases by {@link Card#of(String)} and
+ * joining them by {@link Card#concatCards}.
+ *
+ * @author Weizhao Tang
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServerRulesBenchmark {
+    private static final String DELIM = "=="; // as Server.SEND_DELIM
+
+    /**
+     * Inputs drawn from a shoe of one or two decks.
+     */
+    @State(Scope.Thread)
+    public static class Shoe {
+        @Param({ "1", "2" })
+        public int numDecks;
+
+        // Tricks of single cards, as the table keeps them and by weight
+        final ArrayList<ArrayList<ArrayList<Card>>> singleTricks = new ArrayList<>();
+        final int[][] singleWeights = new int[Decks.POOL_SIZE][];
+        final int[] leaders = new int[Decks.POOL_SIZE];
+
+        LinkedList<Card> sweep; // all scored cards of the shoe
+        LinkedList<Card> transformed; // some penalties and all transformers, exposed or not
+        final String[] aliases = new String[Decks.POOL_SIZE]; // full aliases as they arrive from clients
+        final ArrayList<ArrayList<Card>> hands = new ArrayList<>();
+        int next = 0;
+
+        @Setup
+        public void setUp() {
+            final Random random = new Random(Decks.SEED);
+
+            for (int i = 0; i < Decks.POOL_SIZE; i++) {
+                final List<String> shoe = Decks.shuffled(numDecks, random);
+                final ArrayList<ArrayList<Card>> trick = new ArrayList<>();
+                singleWeights[i] = new int[4];
+                for (int j = 0; j < 4; j++) {
+                    trick.add(new ArrayList<>(List.of(Card.of(shoe.get(j)))));
+                    singleWeights[i][j] = Card.of(shoe.get(j)).weight();
+                }
+                singleTricks.add(trick);
+                leaders[i] = random.nextInt(4);
+
+                final ArrayList<Card> hand = new ArrayList<>();
+                for (final String alias : shoe.subList(0, 13 * numDecks))
+                    hand.add(Card.of(alias));
+                hands.add(hand);
+            }
+
+            sweep = new LinkedList<>();
+            transformed = new LinkedList<>();
+            for (int i = 0; i < numDecks; i++) {
+                for (final char rank : Decks.RANKS.toCharArray())
+                    sweep.add(Card.of(rank + "H"));
+                sweep.add(Card.of("QS"));
+                sweep.add(Card.of("JD"));
+                sweep.add(Card.of("TC"));
+
+                transformed.add(Card.of("QS"));
+                transformed.add(Card.of("AH"));
+                transformed.add(Card.of("5H"));
+                transformed.add(Card.of(i == 0 ? "TCx" : "TC"));
+            }
+
+            final List<String> shoe = Decks.shuffled(numDecks, random);
+            for (int i = 0; i < Decks.POOL_SIZE; i++) {
+                final String alias = shoe.get(i % shoe.size());
+                aliases[i] = Decks.isExposable(alias) && random.nextBoolean() ? alias + "x" : alias;
+            }
+        }
+
+        int next() {
+            return next = (next + 1) & (Decks.POOL_SIZE - 1);
+        }
+    }
+
+    /**
+     * Tricks led by a pair, which needs two decks.
+     */
+    @State(Scope.Thread)
+    public static class PairShoe {
+        final ArrayList<ArrayList<ArrayList<Card>>> pairTricks = new ArrayList<>();
+        final int[][] pairWeights = new int[Decks.POOL_SIZE][];
+        final int[] leaders = new int[Decks.POOL_SIZE];
+        int next = 0;
+
+        @Setup
+        public void setUp() {
+            final Random random = new Random(Decks.SEED);
+
+            for (int i = 0; i < Decks.POOL_SIZE; i++) {
+                final List<String> shoe = Decks.shuffled(2, random);
+                final String lead = shoe.get(0);
+                final ArrayList<ArrayList<Card>> trick = new ArrayList<>();
+                pairWeights[i] = new int[8];
+
+                for (int j = 0; j < 4; j++) {
+                    // Half of the followers hold a pair in the leading suit
+                    final String first, second;
+                    if (j == 0 || random.nextBoolean()) {
+                        first = j == 0 ? lead : "" + Decks.RANKS.charAt(random.nextInt(13)) + lead.charAt(1);
+                        second = first;
+                    } else {
+                        first = shoe.get(2 * j);
+                        second = shoe.get(2 * j + 1);
+                    }
+                    trick.add(new ArrayList<>(List.of(Card.of(first), Card.of(second))));
+                    pairWeights[i][2 * j] = Card.of(first).weight();
+                    pairWeights[i][2 * j + 1] = Card.of(second).weight();
+                }
+                pairTricks.add(trick);
+                leaders[i] = random.nextInt(4);
+            }
+        }
+
+        int next() {
+            return next = (next + 1) & (Decks.POOL_SIZE - 1);
+        }
+    }
+
+    @Benchmark
+    public int roundResultSingle(final Shoe shoe) {
+        final int i = shoe.next();
+        return Card.roundResult(shoe.singleTricks.get(i), shoe.leaders[i]);
+    }
+
+    @Benchmark
+    public int roundResultSingleWeights(final Shoe shoe) {
+        final int i = shoe.next();
+        return Card.roundResult(shoe.singleWeights[i], 4, 1, shoe.leaders[i]);
+    }
+
+    @Benchmark
+    public int roundResultPair(final PairShoe shoe) {
+        final int i = shoe.next();
+        return Card.roundResult(shoe.pairTricks.get(i), shoe.leaders[i]);
+    }
+
+    @Benchmark
+    public int roundResultPairWeights(final PairShoe shoe) {
+        final int i = shoe.next();
+        return Card.roundResult(shoe.pairWeights[i], 4, 2, shoe.leaders[i]);
+    }
+
+    @Benchmark
+    public int getScoreSweep(final Shoe shoe) {
+        return Asset.getScore(shoe.sweep, shoe.numDecks);
+    }
+
+    @Benchmark
+    public int getScoreTransformed(final Shoe shoe) {
+        return Asset.getScore(shoe.transformed, shoe.numDecks);
+    }
+
+    @Benchmark
+    public Card parseCard(final Shoe shoe) {
+        return Card.of(shoe.aliases[shoe.next()]);
+    }
+
+    @Benchmark
+    public String concatCards(final Shoe shoe) {
+        return Card.concatCards(DELIM, shoe.hands.get(shoe.next()));
+    }
+}
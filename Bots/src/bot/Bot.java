@@ -0,0 +1,401 @@
+package bot;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+import rule.Card;
+import rule.Protocol;
+
+/**
+ * A {@code Bot} plays Double Hearts without a window. It reacts to server
+ * messages the way {@code ClientController.changeView} does, and picks random
+ * legal moves with {@link Card#getFeasible}. A bot only reacts to messages, so
+ * it owns no thread and many bots can share one {@link BotLoop}.
+ *
+ * @author Weizhao Tang
+ */
+public class Bot {
+    private static final int NUM_SEATS = 4;
+    private static final int TRADE_SIZE = 3;
+    private static final int MAX_REJECTED = 8; // rejected moves in a row after which the bot leaves
+
+    /**
+     * An {@code Outlet} carries messages of a bot to the server.
+     */
+    public interface Outlet {
+        void send(String line);
+
+        void close();
+
+        /**
+         * Drops the connection and opens a new one for the same bot.
+         */
+        void reconnect();
+    }
+
+    /**
+     * A {@code Monitor} watches the messages of a bot, so that a load test can
+     * time the replies of the server.
+     */
+    public interface Monitor {
+        /**
+         * Called for every message the bot sends.
+         *
+         * @param type Type of the message, such as PLAY
+         */
+        void sent(String type);
+
+        /**
+         * Called for every message from the server, before the bot reacts to it.
+         *
+         * @param items Items of the message, its type first after the prefix
+         */
+        void received(String[] items);
+    }
+
+    private final String name;
+    private final int numFrames; // frames to play before leaving, or 0 to play on
+    private Outlet outlet;
+    private Monitor monitor; // watches the messages, or null if none
+
+    private int seat = -1;
+    private int seatTried;
+    private String token; // session token of the seat, or null if none was given
+    private boolean rejoining;
+    private final boolean[] occupied = new boolean[NUM_SEATS];
+
+    private final ArrayList<Card> hand = new ArrayList<>();
+    private int numCardsDealt;
+    private ArrayList<Card> leadSet;
+    private int numPlayedInRound;
+    private boolean firstRound;
+    private final ArrayList<Card> lastMove = new ArrayList<>(); // cards of the last trade or play, taken from the hand
+    private int numRejected; // moves in a row the server rejected
+
+    // State of a frame resumed by a recovered table
+    private boolean dealtBefore; // the hand was dealt before the server restarted
+    private int resumeLeader = -1; // leader of the round in progress, until its round is announced
+    private int resumePlayed; // plays made in that round before the restart
+
+    private int framesPlayed;
+    private int illegalMoves;
+    private int dropRate; // chance in a thousand to drop the connection after a message
+    private int numDrops;
+
+    /**
+     * Constructor for Bot object.
+     *
+     * @param name          Name shown to the other players
+     * @param preferredSeat Seat tried first
+     * @param numFrames     Frames to play before leaving, or 0 to play on
+     */
+    public Bot(final String name, final int preferredSeat, final int numFrames) {
+        this.name = name;
+        this.numFrames = numFrames;
+        seatTried = Math.floorMod(preferredSeat, NUM_SEATS);
+    }
+
+    public void connect(final Outlet outlet) {
+        this.outlet = outlet;
+    }
+
+    /**
+     * Lets a monitor watch the messages of the bot.
+     *
+     * @param monitor Monitor to notify of every message
+     */
+    public void setMonitor(final Monitor monitor) {
+        this.monitor = monitor;
+    }
+
+    public int seat() {
+        return seat;
+    }
+
+    public int framesPlayed() {
+        return framesPlayed;
+    }
+
+    public int illegalMoves() {
+        return illegalMoves;
+    }
+
+    public int numDrops() {
+        return numDrops;
+    }
+
+    /**
+     * Makes the bot drop its connection now and then, to try out reconnection.
+     *
+     * @param dropRate Chance in a thousand to drop the connection after each
+     *                 message from the server
+     */
+    public void setDropRate(final int dropRate) {
+        this.dropRate = dropRate;
+    }
+
+    /**
+     * Tells if the bot can take its seat back after losing its connection.
+     *
+     * @return {@code true} if the bot holds a session token
+     */
+    public boolean hasSession() {
+        return token != null;
+    }
+
+    /**
+     * Reacts to one message from the server.
+     *
+     * @param line Message without line terminator
+     */
+    public void receive(final String line) {
+        final String[] items = line.split(Protocol.SERVER_DELIM);
+        if (items.length <= 1 || !Protocol.SERVER_PREFIX.equals(items[0]))
+            return;
+        if (monitor != null)
+            monitor.received(items);
+
+        int absLoc;
+
+        switch (items[1]) {
+            case "WELCOME":
+                if (token != null) {
+                    rejoining = true;
+                    sendToServer("REJOIN", token);
+                } else {
+                    sendToServer("SITDOWN", String.valueOf(seatTried), "0", name);
+                }
+                break;
+            case "PLAYERINFO":
+                occupied[Integer.parseInt(items[2])] = true;
+                break;
+            case "TAKESEAT":
+                seat = Integer.parseInt(items[2]);
+                token = items.length > 3 ? items[3] : null;
+                rejoining = false;
+                break;
+            case "DONOTSIT":
+                if (rejoining) {
+                    // The seat was not held long enough
+                    rejoining = false;
+                    token = null;
+                    seat = -1;
+                    sendToServer("SITDOWN", String.valueOf(seatTried), "0", name);
+                } else {
+                    trySeatAgain();
+                }
+                break;
+            case "NEWFRAME":
+                resetFrame();
+                if (numFrames > 0 && framesPlayed >= numFrames)
+                    outlet.close();
+                else
+                    sendToServer("READY");
+                break;
+            case "RESUME":
+                resetFrame();
+                dealtBefore = !"DEALING".equals(items[2]);
+                resumeLeader = Integer.parseInt(items[3]);
+                resumePlayed = Integer.parseInt(items[4]);
+                break;
+            case "DEAL":
+                numCardsDealt = Integer.parseInt(items[2]);
+                hand.clear();
+                break;
+            case "ADD":
+                hand.add(new Card(items[2]));
+                if (hand.size() == numCardsDealt)
+                    sendToServer("ALLDEALT");
+                break;
+            case "HAND":
+                for (int i = 0; i + 2 <= items[2].length(); i += 2)
+                    hand.add(new Card(items[2].substring(i, i + 2)));
+                if (!dealtBefore)
+                    sendToServer("ALLDEALT");
+                dealtBefore = false;
+                break;
+            case "TRADESTART":
+                trade();
+                break;
+            case "TRADEIN":
+                numRejected = 0;
+                for (int i = 2; i < items.length; i++)
+                    hand.add(new Card(items[i]));
+                break;
+            case "EXHIBIT":
+                sendToServer("SHOW");
+                break;
+            case "OPENING":
+                firstRound = true;
+                resumeRound(Integer.parseInt(items[3]));
+                break;
+            case "LEAD":
+            case "FOLLOW":
+                absLoc = Integer.parseInt(items[3]);
+                if (absLoc == seat)
+                    numRejected = 0;
+                if ("LEAD".equals(items[1])) {
+                    leadSet = new ArrayList<>();
+                    for (int i = 4; i < items.length; i++)
+                        leadSet.add(new Card(items[i]));
+                }
+                // Of the plays made before a restart, only the last one prompts the next seat
+                final boolean replayed = resumePlayed > 0 && --resumePlayed > 0;
+                if (++numPlayedInRound < NUM_SEATS && (absLoc + 1) % NUM_SEATS == seat && !replayed)
+                    play();
+                break;
+            case "ASSET":
+                firstRound = false;
+                resumeRound(Integer.parseInt(items[3]));
+                break;
+            case "ENDFRAME":
+                framesPlayed++;
+                break;
+            case "CONNRESET":
+                occupied[Integer.parseInt(items[2])] = false;
+                break;
+            case "ILLEGAL":
+                illegalMoves++;
+                System.err.println("Warning: server rejected " + name + ": " + String.join(" ", items));
+                moveAgain(items[2]);
+                break;
+        }
+
+        if (dropRate > 0 && token != null && ThreadLocalRandom.current().nextInt(1000) < dropRate) {
+            numDrops++;
+            outlet.reconnect();
+        }
+    }
+
+    private void trySeatAgain() {
+        for (int i = 1; i <= NUM_SEATS; i++) {
+            final int nextSeat = (seatTried + i) % NUM_SEATS;
+            if (!occupied[nextSeat]) {
+                occupied[seatTried] = true;
+                seatTried = nextSeat;
+                sendToServer("SITDOWN", String.valueOf(seatTried), "0", name);
+                return;
+            }
+        }
+        System.err.println("Warning: no seat left for " + name);
+        outlet.close();
+    }
+
+    private void resetFrame() {
+        dealtBefore = false; // a frame resumed after its last hand has no HAND to clear it
+        hand.clear();
+        lastMove.clear();
+        numRejected = 0;
+        leadSet = null;
+        numPlayedInRound = 0;
+        firstRound = false;
+    }
+
+    /**
+     * Starts a round, unless the frame was resumed and the round is not the one
+     * in progress. The round in progress is not led again if its leader has
+     * already played.
+     */
+    private void resumeRound(final int leader) {
+        if (resumeLeader < 0) {
+            startRound(leader);
+        } else if (leader == resumeLeader) {
+            resumeLeader = -1;
+            if (resumePlayed == 0)
+                startRound(leader);
+            else
+                numPlayedInRound = 0;
+        }
+    }
+
+    private void startRound(final int leader) {
+        leadSet = null;
+        numPlayedInRound = 0;
+        if (leader == seat && !hand.isEmpty())
+            play();
+    }
+
+    /**
+     * Takes back a move the server rejected and makes another, since the table
+     * waits for the bot until it moves. A bot whose moves keep being rejected
+     * leaves the table instead.
+     *
+     * @param message Type of the rejected message
+     */
+    private void moveAgain(final String message) {
+        if (!"PLAY".equals(message) && !"TRADE".equals(message))
+            return; // a bot shows no cards, which is never rejected
+
+        if (++numRejected > MAX_REJECTED) {
+            System.err.println("Warning: " + name + " leaves after " + MAX_REJECTED + " rejected moves in a row");
+            outlet.close();
+            return;
+        }
+        hand.addAll(lastMove);
+        if ("PLAY".equals(message))
+            play();
+        else
+            trade();
+    }
+
+    private void trade() {
+        final ArrayList<Card> traded = new ArrayList<>(TRADE_SIZE);
+        for (int i = 0; i < TRADE_SIZE; i++)
+            traded.add(hand.remove(ThreadLocalRandom.current().nextInt(hand.size())));
+        lastMove.clear();
+        lastMove.addAll(traded);
+
+        sendToServer("TRADE", Card.concatCards(Protocol.CLIENT_DELIM, traded));
+    }
+
+    /**
+     * Plays random cards one by one, each among the cards the rules allow given
+     * the ones already picked. A leader that holds a pair leads one of its pairs
+     * or a single card at even odds.
+     */
+    private void play() {
+        int numToPlay = leadSet == null ? 1 : leadSet.size();
+        final HashSet<Card> selected = new HashSet<>();
+
+        if (leadSet == null && ThreadLocalRandom.current().nextBoolean()) {
+            final ArrayList<Card> twins = new ArrayList<>();
+            for (final Card card : Card.getFeasible(hand, null, selected, firstRound)) {
+                if (!Card.getFeasible(hand, null, new HashSet<>(List.of(card)), firstRound).isEmpty())
+                    twins.add(card);
+            }
+            if (!twins.isEmpty()) {
+                selected.add(pick(twins));
+                numToPlay = 2;
+            }
+        }
+
+        while (selected.size() < numToPlay) {
+            final HashSet<Card> feasible = Card.getFeasible(hand, leadSet, selected, firstRound);
+            if (feasible.isEmpty())
+                break;
+            selected.add(pick(feasible));
+        }
+
+        final ArrayList<Card> played = new ArrayList<>(selected);
+        hand.removeAll(played);
+        lastMove.clear();
+        lastMove.addAll(played);
+        sendToServer("PLAY", Card.concatCards(Protocol.CLIENT_DELIM, played));
+    }
+
+    private static Card pick(final Collection<Card> cards) {
+        int index = ThreadLocalRandom.current().nextInt(cards.size());
+        for (final Card card : cards) {
+            if (index-- == 0)
+                return card;
+        }
+        throw new NoSuchElementException();
+    }
+
+    private void sendToServer(final String... items) {
+        if (monitor != null)
+            monitor.sent(items[0]);
+        outlet.send(Protocol.CLIENT_PREFIX + Protocol.CLIENT_DELIM
+                + String.join(Protocol.CLIENT_DELIM, items));
+    }
+}
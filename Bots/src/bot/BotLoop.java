@@ -0,0 +1,230 @@
+package bot;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A {@code BotLoop} serves the connections of many bots on one thread with a
+ * non-blocking {@link Selector}. Bots only react to messages, so the loop runs
+ * them right where their messages are read.
+ *
+ * @author Weizhao Tang
+ */
+public class BotLoop implements Runnable {
+    private static final int READ_BUFFER_SIZE = 4096;
+
+    private final InetSocketAddress serverAddress;
+    private final Selector selector;
+    private final ConcurrentLinkedQueue<Bot> newBots = new ConcurrentLinkedQueue<>();
+    private final CountDownLatch finished;
+
+    /**
+     * Constructor for BotLoop object.
+     *
+     * @param serverAddress Address of the server
+     * @param finished      Counted down once for every bot that leaves
+     * @throws IOException if the selector cannot be opened
+     */
+    public BotLoop(final InetSocketAddress serverAddress, final CountDownLatch finished) throws IOException {
+        this.serverAddress = serverAddress;
+        this.finished = finished;
+        selector = Selector.open();
+    }
+
+    /**
+     * Queues a bot to be connected by the loop thread.
+     *
+     * @param bot Bot to connect
+     */
+    public void add(final Bot bot) {
+        newBots.add(bot);
+        selector.wakeup();
+    }
+
+    /**
+     * Selector thread run method.
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                selector.select();
+
+                Bot bot;
+                while ((bot = newBots.poll()) != null)
+                    connect(bot);
+
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+
+                    final BotConnection connection = (BotConnection) key.attachment();
+                    if (key.isValid() && key.isConnectable())
+                        connection.finishConnect();
+                    if (key.isValid() && key.isReadable())
+                        connection.read();
+                    if (key.isValid() && key.isWritable())
+                        connection.flush();
+                }
+            }
+        } catch (final IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void connect(final Bot bot) {
+        final BotConnection connection = new BotConnection(bot);
+        try {
+            connection.channel = SocketChannel.open();
+            connection.channel.configureBlocking(false);
+            connection.key = connection.channel.register(selector, SelectionKey.OP_CONNECT, connection);
+            bot.connect(connection);
+            // A local connection may be established at once, without a connect event
+            if (connection.channel.connect(serverAddress))
+                connection.finishConnect();
+        } catch (final IOException e) {
+            System.err.println("No server running at " + serverAddress);
+            connection.close();
+        }
+    }
+
+    /**
+     * A {@code BotConnection} buffers the bytes of one bot in both directions.
+     * Everything happens on the loop thread.
+     */
+    private class BotConnection implements Bot.Outlet {
+        private final Bot bot;
+        private SocketChannel channel;
+        private SelectionKey key;
+        private boolean closed;
+
+        private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final ArrayDeque<ByteBuffer> outbox = new ArrayDeque<>();
+
+        BotConnection(final Bot bot) {
+            this.bot = bot;
+        }
+
+        @Override
+        public void send(final String line) {
+            outbox.add(ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8)));
+            if (key.isValid() && (key.interestOps() & SelectionKey.OP_CONNECT) == 0)
+                flush();
+        }
+
+        private void finishConnect() {
+            try {
+                channel.finishConnect();
+            } catch (final IOException e) {
+                System.err.println("No server running at " + serverAddress);
+                close();
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            flush();
+        }
+
+        private void read() {
+            try {
+                if (channel.read(readBuffer) < 0) {
+                    lost();
+                    return;
+                }
+            } catch (final IOException e) {
+                lost();
+                return;
+            }
+
+            readBuffer.flip();
+            final byte[] bytes = readBuffer.array();
+            int start = 0;
+            for (int i = 0; i < readBuffer.limit() && !closed; i++) {
+                if (bytes[i] != '\n')
+                    continue;
+
+                final int end = i > start && bytes[i - 1] == '\r' ? i - 1 : i;
+                bot.receive(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+                start = i + 1;
+            }
+            if (closed)
+                return;
+
+            readBuffer.position(start);
+            readBuffer.compact();
+
+            if (!readBuffer.hasRemaining()) {
+                final ByteBuffer largerBuffer = ByteBuffer.allocate(2 * readBuffer.capacity());
+                readBuffer.flip();
+                largerBuffer.put(readBuffer);
+                readBuffer = largerBuffer;
+            }
+        }
+
+        private void flush() {
+            if (closed)
+                return;
+
+            try {
+                ByteBuffer buffer;
+                while ((buffer = outbox.peek()) != null) {
+                    channel.write(buffer);
+                    if (buffer.hasRemaining())
+                        break;
+                    outbox.poll();
+                }
+            } catch (final IOException e) {
+                lost();
+                return;
+            }
+            key.interestOps(outbox.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        /**
+         * Reconnects a bot that can take its seat back, and lets the others go.
+         */
+        private void lost() {
+            if (bot.hasSession())
+                reconnect();
+            else
+                close();
+        }
+
+        @Override
+        public void reconnect() {
+            if (closed)
+                return;
+
+            drop();
+            connect(bot);
+        }
+
+        @Override
+        public void close() {
+            if (closed)
+                return;
+
+            drop();
+            finished.countDown();
+        }
+
+        private void drop() {
+            closed = true;
+            if (key != null)
+                key.cancel();
+            try {
+                if (channel != null)
+                    channel.close();
+            } catch (final IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package bot;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * BotRunner connects many headless bots to a server from one JVM, spread over
+ * a few {@link BotLoop} threads, and reports once all of them have left.
+ *
+ * @author Weizhao Tang
+ */
+public class BotRunner {
+    private static final String DEFAULT_SERVER_ADDRESS = "localhost";
+    private static final int DEFAULT_SERVER_PORT = 23366;
+
+    private static final String USAGE = "Options: [-a serverAddress] [-p serverPort] [-n numBots] [-w numThreads]"
+            + " [-f numFrames] [-d dropsPerThousand]";
+
+    /**
+     * Main method of the bot runner.
+     *
+     * @param args String array of arguments passed to the runner
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        String serverAddress = DEFAULT_SERVER_ADDRESS;
+        int serverPort = DEFAULT_SERVER_PORT;
+        int numBots = 4;
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        int numFrames = 1;
+        int dropRate = 0;
+
+        for (int i = 0; i < args.length; i += 2) {
+            final String option = args[i];
+            String argument = null;
+            try {
+                argument = args[i + 1];
+            } catch (final ArrayIndexOutOfBoundsException e) {
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+            try {
+                switch (option) {
+                    case "-a":
+                        serverAddress = argument;
+                        break;
+                    case "-p":
+                        serverPort = Integer.parseInt(argument);
+                        break;
+                    case "-n":
+                        numBots = Integer.parseInt(argument);
+                        break;
+                    case "-w":
+                        numThreads = Integer.parseInt(argument);
+                        break;
+                    case "-f":
+                        numFrames = Integer.parseInt(argument);
+                        break;
+                    case "-d":
+                        dropRate = Integer.parseInt(argument);
+                        break;
+                    default:
+                        System.err.println(USAGE);
+                        System.exit(1);
+                        break;
+                }
+            } catch (final NumberFormatException e) {
+                System.err.println("Option " + option + " must be an integer");
+                System.exit(1);
+            }
+        }
+        if (numBots <= 0 || numThreads <= 0 || numFrames < 0) {
+            System.err.println("Num bots and num threads must be positive, num frames must not be negative");
+            System.exit(1);
+        }
+
+        final InetSocketAddress address = new InetSocketAddress(serverAddress, serverPort);
+        final CountDownLatch finished = new CountDownLatch(numBots);
+        final BotLoop[] loops = new BotLoop[Math.min(numThreads, numBots)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new BotLoop(address, finished);
+            final Thread thread = new Thread(loops[i], "bot-loop-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        final long startTime = System.nanoTime();
+        final ArrayList<Bot> bots = new ArrayList<>(numBots);
+        for (int i = 0; i < numBots; i++) {
+            final Bot bot = new Bot("bot" + i, i, numFrames);
+            bot.setDropRate(dropRate);
+            bots.add(bot);
+            loops[i % loops.length].add(bot);
+        }
+
+        finished.await();
+        final double seconds = (System.nanoTime() - startTime) / 1e9;
+
+        long framesPlayed = 0, illegalMoves = 0, numDrops = 0;
+        for (final Bot bot : bots) {
+            framesPlayed += bot.framesPlayed();
+            illegalMoves += bot.illegalMoves();
+            numDrops += bot.numDrops();
+        }
+        System.out.printf("%d bots on %d threads finished %d frames in %.1f s, %d illegal moves, %d drops%n",
+                numBots, loops.length, framesPlayed / 4, seconds, illegalMoves, numDrops);
+    }
+}
@@ -0,0 +1,161 @@
+package bot;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * IdleTest measures what idle connections cost a server. It starts the server
+ * jar on localhost, opens many connections that never send a message, holds
+ * them for a while, and reports the resident memory and the number of OS
+ * threads of the server before and after.
+ * <p>
+ * The figures come from {@code /proc}, so they are only reported on Linux.
+ * Opening 10,000 connections needs a limit of open files above that, for
+ * both the server and the test ({@code ulimit -n}).
+ *
+ * @author Weizhao Tang
+ */
+public class IdleTest {
+    private static final String DEFAULT_SERVER_JAR = "Server/target/DoubleHeartsServer.jar";
+    private static final int DEFAULT_SERVER_PORT = 23368;
+    private static final int CONNECT_TIMEOUT = 10000;
+
+    private static final String USAGE = "Options: [-j serverJar] [-p serverPort] [-n numConnections]"
+            + " [-i (blocking|nio|virtual)] [-t holdSeconds] [-l serverLog]";
+
+    /**
+     * Main method of the idle connection test.
+     *
+     * @param args String array of arguments passed to the test
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        String serverJar = DEFAULT_SERVER_JAR;
+        int serverPort = DEFAULT_SERVER_PORT;
+        int numConnections = 10000;
+        String ioMode = "virtual";
+        int holdSeconds = 10;
+        String serverLog = null;
+
+        for (int i = 0; i < args.length; i += 2) {
+            final String option = args[i];
+            String argument = null;
+            try {
+                argument = args[i + 1];
+            } catch (final ArrayIndexOutOfBoundsException e) {
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+            try {
+                switch (option) {
+                    case "-j":
+                        serverJar = argument;
+                        break;
+                    case "-p":
+                        serverPort = Integer.parseInt(argument);
+                        break;
+                    case "-n":
+                        numConnections = Integer.parseInt(argument);
+                        break;
+                    case "-i":
+                        ioMode = argument;
+                        break;
+                    case "-t":
+                        holdSeconds = Integer.parseInt(argument);
+                        break;
+                    case "-l":
+                        serverLog = argument;
+                        break;
+                    default:
+                        System.err.println(USAGE);
+                        System.exit(1);
+                        break;
+                }
+            } catch (final NumberFormatException e) {
+                System.err.println("Option " + option + " must be an integer");
+                System.exit(1);
+            }
+        }
+        if (numConnections <= 0 || holdSeconds < 0) {
+            System.err.println("Num connections must be positive and hold seconds non-negative");
+            System.exit(1);
+        }
+        if (!new File(serverJar).isFile()) {
+            System.err.println("Server jar " + serverJar + " not found, build it with mvn package");
+            System.exit(1);
+        }
+
+        // Every connection joins a table, so the server must allow a table per four of them
+        final Process server = LoadTest.startServer(serverJar, serverPort, (numConnections + 3) / 4, "-i " + ioMode,
+                serverLog);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::destroy));
+        final long pid = server.pid();
+        final long[] before = usage(pid);
+
+        final long startTime = System.nanoTime();
+        final ArrayList<Socket> sockets = new ArrayList<>(numConnections);
+        try {
+            for (int i = 0; i < numConnections; i++) {
+                final Socket socket = new Socket();
+                socket.connect(new InetSocketAddress("localhost", serverPort), CONNECT_TIMEOUT);
+                sockets.add(socket);
+            }
+        } catch (final IOException e) {
+            System.err.println("Warning: only " + sockets.size() + " connections opened: " + e.getMessage());
+        }
+        final double connectSeconds = (System.nanoTime() - startTime) / 1e9;
+
+        Thread.sleep(holdSeconds * 1000L);
+        final long[] after = usage(pid);
+        final boolean alive = server.isAlive();
+
+        for (final Socket socket : sockets)
+            socket.close();
+        server.destroy();
+
+        System.out.printf("%d idle connections to the server in %s mode, opened in %.1f s and held for %d s%n",
+                sockets.size(), ioMode, connectSeconds, holdSeconds);
+        if (!alive) {
+            System.err.println("Server died while holding the connections");
+            System.exit(1);
+        }
+        if (before == null || after == null) {
+            System.err.println("Warning: memory and threads of the server are only reported on Linux");
+            return;
+        }
+        System.out.printf("Server resident memory %.1f MB before, %.1f MB after, %.1f KB per connection%n",
+                before[0] / 1024.0, after[0] / 1024.0,
+                sockets.isEmpty() ? 0 : (double) (after[0] - before[0]) / sockets.size());
+        System.out.printf("Server OS threads %d before, %d after%n", before[1], after[1]);
+    }
+
+    /**
+     * Reads the resident memory and the number of threads of a process.
+     *
+     * @param pid Process id
+     * @return resident memory in KB and number of threads, or null if they
+     *         cannot be read
+     */
+    private static long[] usage(final long pid) {
+        final List<String> lines;
+        try {
+            lines = Files.readAllLines(Paths.get("/proc", String.valueOf(pid), "status"));
+        } catch (final IOException e) {
+            return null;
+        }
+
+        final long[] usage = new long[] { -1, -1 };
+        for (final String line : lines) {
+            if (line.startsWith("VmRSS:"))
+                usage[0] = Long.parseLong(line.replaceAll("\\D", ""));
+            else if (line.startsWith("Threads:"))
+                usage[1] = Long.parseLong(line.replaceAll("\\D", ""));
+        }
+        return usage[0] < 0 || usage[1] < 0 ? null : usage;
+    }
+}
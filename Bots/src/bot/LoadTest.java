@@ -0,0 +1,340 @@
+package bot;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LoadTest measures how many concurrent games a server can handle. It starts
+ * the server jar on localhost, seats four bots at each of many tables, lets
+ * them play whole frames with legal moves, and then reports how long the
+ * server took to answer each kind of move, how many messages went through per
+ * second and how much CPU time the server spent per game.
+ * <p>
+ * The time of a move runs from the message of a bot to the message in which
+ * the server tells that bot's move to the table: SITDOWN to TAKESEAT, READY to
+ * its ISREADY, TRADE to its TRADEREADY, SHOW to its SHOWN and PLAY to its LEAD
+ * or FOLLOW. ALLDEALT has no reply of its own and is not timed. The time of a
+ * frame runs from DEAL to ENDFRAME, including the pauses the server makes for
+ * human players.
+ *
+ * @author Weizhao Tang
+ */
+public class LoadTest {
+    private static final String DEFAULT_SERVER_JAR = "Server/target/DoubleHeartsServer.jar";
+    private static final int DEFAULT_SERVER_PORT = 23367;
+    private static final int STARTUP_SECONDS = 30;
+
+    private static final String USAGE = "Options: [-j serverJar] [-p serverPort] [-n numTables] [-f numFrames]"
+            + " [-w numThreads] [-o serverOptions] [-l serverLog]";
+
+    /**
+     * Kinds of timed steps, each with the message of the bot that starts it.
+     */
+    private enum Phase {
+        SEAT("SITDOWN"), READY("READY"), TRADE("TRADE"), SHOW("SHOW"), PLAY("PLAY"), FRAME(null);
+
+        private final String request;
+
+        Phase(final String request) {
+            this.request = request;
+        }
+
+        static Phase ofRequest(final String type) {
+            for (final Phase phase : values()) {
+                if (type.equals(phase.request))
+                    return phase;
+            }
+            return null;
+        }
+    }
+
+    private static final Latencies[] latencies = new Latencies[Phase.values().length];
+    private static final LongAdder messagesIn = new LongAdder();
+    private static final LongAdder messagesOut = new LongAdder();
+
+    static {
+        for (int i = 0; i < latencies.length; i++)
+            latencies[i] = new Latencies();
+    }
+
+    /**
+     * Main method of the load test.
+     *
+     * @param args String array of arguments passed to the load test
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        String serverJar = DEFAULT_SERVER_JAR;
+        int serverPort = DEFAULT_SERVER_PORT;
+        int numTables = 100;
+        int numFrames = 1;
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        String serverOptions = "";
+        String serverLog = null;
+
+        for (int i = 0; i < args.length; i += 2) {
+            final String option = args[i];
+            String argument = null;
+            try {
+                argument = args[i + 1];
+            } catch (final ArrayIndexOutOfBoundsException e) {
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+            try {
+                switch (option) {
+                    case "-j":
+                        serverJar = argument;
+                        break;
+                    case "-p":
+                        serverPort = Integer.parseInt(argument);
+                        break;
+                    case "-n":
+                        numTables = Integer.parseInt(argument);
+                        break;
+                    case "-f":
+                        numFrames = Integer.parseInt(argument);
+                        break;
+                    case "-w":
+                        numThreads = Integer.parseInt(argument);
+                        break;
+                    case "-o":
+                        serverOptions = argument;
+                        break;
+                    case "-l":
+                        serverLog = argument;
+                        break;
+                    default:
+                        System.err.println(USAGE);
+                        System.exit(1);
+                        break;
+                }
+            } catch (final NumberFormatException e) {
+                System.err.println("Option " + option + " must be an integer");
+                System.exit(1);
+            }
+        }
+        if (numTables <= 0 || numFrames <= 0 || numThreads <= 0) {
+            System.err.println("Num tables, num frames and num threads must be positive");
+            System.exit(1);
+        }
+        if (!new File(serverJar).isFile()) {
+            System.err.println("Server jar " + serverJar + " not found, build it with mvn package");
+            System.exit(1);
+        }
+
+        final Process server = startServer(serverJar, serverPort, numTables, serverOptions, serverLog);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::destroy));
+        final Duration cpuBefore = server.toHandle().info().totalCpuDuration().orElse(null);
+
+        final int numBots = 4 * numTables;
+        final InetSocketAddress address = new InetSocketAddress("localhost", serverPort);
+        final CountDownLatch finished = new CountDownLatch(numBots);
+        final BotLoop[] loops = new BotLoop[Math.min(numThreads, numBots)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new BotLoop(address, finished);
+            final Thread thread = new Thread(loops[i], "bot-loop-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        final long startTime = System.nanoTime();
+        final ArrayList<Bot> bots = new ArrayList<>(numBots);
+        for (int i = 0; i < numBots; i++) {
+            final Bot bot = new Bot("bot" + i, i, numFrames);
+            bot.setMonitor(new Probe(bot));
+            bots.add(bot);
+            loops[i % loops.length].add(bot);
+        }
+
+        finished.await();
+        final double seconds = (System.nanoTime() - startTime) / 1e9;
+        final Duration cpuAfter = server.toHandle().info().totalCpuDuration().orElse(null);
+        server.destroy();
+        server.waitFor(STARTUP_SECONDS, TimeUnit.SECONDS);
+
+        long framesPlayed = 0, illegalMoves = 0;
+        for (final Bot bot : bots) {
+            framesPlayed += bot.framesPlayed();
+            illegalMoves += bot.illegalMoves();
+        }
+        final long numGames = framesPlayed / 4;
+
+        System.out.printf("%d tables, %d bots on %d threads finished %d frames in %.1f s, %d illegal moves%n",
+                numTables, numBots, loops.length, numGames, seconds, illegalMoves);
+        System.out.printf("%d messages from the server, %d to it, %.0f messages/s%n", messagesIn.sum(),
+                messagesOut.sum(), (messagesIn.sum() + messagesOut.sum()) / seconds);
+        if (cpuBefore == null || cpuAfter == null) {
+            System.err.println("Warning: the CPU time of the server is not available on this platform");
+        } else {
+            final double cpuSeconds = cpuAfter.minus(cpuBefore).toNanos() / 1e9;
+            System.out.printf("Server CPU %.2f s, %.1f%% of one core, %.2f ms per game%n", cpuSeconds,
+                    100 * cpuSeconds / seconds, numGames == 0 ? 0 : 1000 * cpuSeconds / numGames);
+        }
+
+        System.out.printf("%-6s %8s %9s %9s %9s %9s %9s  (ms)%n", "phase", "count", "p50", "p90", "p99", "p99.9",
+                "max");
+        for (final Phase phase : Phase.values()) {
+            final long[] samples = latencies[phase.ordinal()].sorted();
+            System.out.printf("%-6s %8d %9.3f %9.3f %9.3f %9.3f %9.3f%n", phase.name().toLowerCase(), samples.length,
+                    percentile(samples, 0.5), percentile(samples, 0.9), percentile(samples, 0.99),
+                    percentile(samples, 0.999), percentile(samples, 1));
+        }
+    }
+
+    /**
+     * Starts the server jar on localhost and waits until it listens.
+     *
+     * @param serverJar     Path of the server jar
+     * @param serverPort    Port to listen on
+     * @param numTables     Number of tables to allow
+     * @param serverOptions Further options of the server, separated by spaces
+     * @param serverLog     File to copy the output of the server to, or null to
+     *                      drop it
+     * @return the server process
+     */
+    static Process startServer(final String serverJar, final int serverPort, final int numTables,
+            final String serverOptions, final String serverLog) throws IOException, InterruptedException {
+        final ArrayList<String> command = new ArrayList<>(List.of(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(), "-jar", serverJar,
+                "-p", String.valueOf(serverPort), "-x", String.valueOf(numTables + 1)));
+        if (!serverOptions.isBlank())
+            command.addAll(Arrays.asList(serverOptions.trim().split("\\s+")));
+
+        final Process server = new ProcessBuilder(command).redirectErrorStream(true).start();
+        final Writer log = serverLog == null ? Writer.nullWriter()
+                : new BufferedWriter(new OutputStreamWriter(new FileOutputStream(serverLog), StandardCharsets.UTF_8));
+        final CountDownLatch listening = new CountDownLatch(1);
+
+        final Thread reader = new Thread(() -> {
+            try (BufferedReader in = new BufferedReader(
+                    new InputStreamReader(server.getInputStream(), StandardCharsets.UTF_8)); Writer out = log) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.startsWith("Listening on port"))
+                        listening.countDown();
+                    out.write(line);
+                    out.write(System.lineSeparator());
+                }
+            } catch (final IOException e) {
+                System.err.println("Warning: output of the server is lost: " + e.getMessage());
+            }
+        }, "server-output");
+        reader.setDaemon(true);
+        reader.start();
+
+        if (!listening.await(STARTUP_SECONDS, TimeUnit.SECONDS) || !server.isAlive()) {
+            server.destroy();
+            System.err.println("Server did not start listening on port " + serverPort
+                    + (serverLog == null ? "" : ", see " + serverLog));
+            System.exit(1);
+        }
+        return server;
+    }
+
+    private static double percentile(final long[] sorted, final double fraction) {
+        if (sorted.length == 0)
+            return 0;
+        final int index = Math.max(0, (int) Math.ceil(fraction * sorted.length) - 1);
+        return sorted[index] / 1e6;
+    }
+
+    /**
+     * A {@code Probe} times the replies of the server to one bot. It runs on the
+     * loop thread of its bot.
+     */
+    private static class Probe implements Bot.Monitor {
+        private final Bot bot;
+        private final long[] sentAt = new long[Phase.values().length]; // by phase, or 0 if no reply is due
+        private long dealtAt;
+
+        Probe(final Bot bot) {
+            this.bot = bot;
+        }
+
+        @Override
+        public void sent(final String type) {
+            messagesOut.increment();
+            final Phase phase = Phase.ofRequest(type);
+            if (phase != null)
+                sentAt[phase.ordinal()] = System.nanoTime();
+        }
+
+        @Override
+        public void received(final String[] items) {
+            messagesIn.increment();
+            final long now = System.nanoTime();
+
+            switch (items[1]) {
+                case "TAKESEAT":
+                    reply(Phase.SEAT, now);
+                    break;
+                case "ISREADY":
+                    if (isOwn(items[2]))
+                        reply(Phase.READY, now);
+                    break;
+                case "TRADEREADY":
+                    if (isOwn(items[2]))
+                        reply(Phase.TRADE, now);
+                    break;
+                case "SHOWN":
+                    if (isOwn(items[2]))
+                        reply(Phase.SHOW, now);
+                    break;
+                case "LEAD":
+                case "FOLLOW":
+                    if (isOwn(items[3]))
+                        reply(Phase.PLAY, now);
+                    break;
+                case "DEAL":
+                    dealtAt = now;
+                    break;
+                case "ENDFRAME":
+                    // One bot of each table times the frame
+                    if (bot.seat() == 0 && dealtAt > 0)
+                        latencies[Phase.FRAME.ordinal()].add(now - dealtAt);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private boolean isOwn(final String seat) {
+            return Integer.parseInt(seat) == bot.seat();
+        }
+
+        private void reply(final Phase phase, final long now) {
+            final long start = sentAt[phase.ordinal()];
+            if (start == 0)
+                return;
+            sentAt[phase.ordinal()] = 0;
+            latencies[phase.ordinal()].add(now - start);
+        }
+    }
+
+    /**
+     * Latencies collects the durations of one phase from all bots.
+     */
+    private static class Latencies {
+        private long[] samples = new long[1024];
+        private int size = 0;
+
+        synchronized void add(final long nanos) {
+            if (size == samples.length)
+                samples = Arrays.copyOf(samples, 2 * size);
+            samples[size++] = nanos;
+        }
+
+        synchronized long[] sorted() {
+            final long[] copy = Arrays.copyOf(samples, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+}
@@ -141,16 +141,19 @@ public class MaskedCard extends JPanel {
         setEffectLevel(effectLevel += numLevels);
     }
 
-    public static void upgradeEffects(String[] exposed, Collection<Card> cards, Collection<MaskedCard> maskedCards) {
+    /**
+     * Raises the effect levels shown on cards after some cards are exposed. The
+     * masked cards hold the levels; the cards behind them never change.
+     *
+     * @param exposed     Aliases of the exposed cards
+     * @param maskedCards Cards to upgrade
+     */
+    public static void upgradeEffects(String[] exposed, Collection<MaskedCard> maskedCards) {
         HashMap<String, Integer> exposedHist = new HashMap<>();
         for (String alias : exposed) {
             exposedHist.compute(alias.substring(0, 2), (k, v) -> v == null ? 1 : v + 1);
         }
 
-        if (cards != null) {
-            cards.stream().filter(c -> exposedHist.containsKey(c.exposerAlias()))
-                    .forEach(c -> c.upgrade(exposedHist.get(c.exposerAlias())));
-        }
         if (maskedCards != null) {
             maskedCards.stream().filter(c -> exposedHist.containsKey(c.exposerAlias()))
                     .forEach(c -> c.upgrade(exposedHist.get(c.exposerAlias())));
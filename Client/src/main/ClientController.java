@@ -1,14 +1,16 @@
 package main;
 
 import java.util.Arrays;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import javax.swing.SwingWorker;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 import element.ArrowLabel;
 import element.ImageLabel;
 import element.MaskedCard;
 import rule.Card;
+import rule.Protocol;
 import ui.*;
 
 /**
@@ -28,19 +30,21 @@ public class ClientController {
     private final int serverPort;
 
     /** prefix of message from server */
-    public static final String RECV_PREFIX = "SERVERMESSAGE";
+    public static final String RECV_PREFIX = Protocol.SERVER_PREFIX;
     /** delimiter of items in incoming message */
-    public static final String RECV_DELIM = "==";
+    public static final String RECV_DELIM = Protocol.SERVER_DELIM;
     /** prefix of message to server */
-    public static final String SEND_PREFIX = "FROMCLIENT";
+    public static final String SEND_PREFIX = Protocol.CLIENT_PREFIX;
     /** delimiter of items in outgoing message */
-    public static final String SEND_DELIM = "~~";
+    public static final String SEND_DELIM = Protocol.CLIENT_DELIM;
 
     /** flag indicating if in test mode */
     public static int TEST_MODE = 0;
 
     /** status flag indicating if self is waiting for a game to start */
     private boolean waitingForReady = false;
+    /** status flag indicating if the hand of a resumed frame was dealt before */
+    private boolean dealtBefore = false;
     /** number of card decks each frame */
     public static int numDecks = 2;
 
@@ -48,6 +52,8 @@ public class ClientController {
     private ClientView view;
     /** client model handling communication */
     private ClientModel model;
+    /** flag indicating if the message pump is scheduled or paused on the EDT */
+    private final AtomicBoolean pumpScheduled = new AtomicBoolean(false);
 
     /**
      * Constructor for Client object.
@@ -61,26 +67,36 @@ public class ClientController {
     }
 
     /**
-     * Start a Swing worker that listens to server.
+     * Schedule the message pump on the event dispatch thread unless it is already
+     * scheduled. Called by the reader thread after each batch of messages.
      */
-    private void getServerMessage() {
-        final SwingWorker<String, String> swingWorker = new SwingWorker<>() {
-            @Override
-            public String doInBackground() throws Exception {
-                return model.getServerMessage();
-            }
+    private void schedulePump() {
+        if (pumpScheduled.compareAndSet(false, true))
+            SwingUtilities.invokeLater(this::pumpMessages);
+    }
 
-            @Override
-            public void done() {
-                try {
-                    changeView(get());
-                } catch (InterruptedException | ExecutionException e) {
-                    e.printStackTrace();
-                }
+    /**
+     * Consume queued server messages on the event dispatch thread. Messages that
+     * need time to be animated pause the pump for the delay given by the view.
+     */
+    private void pumpMessages() {
+        String[] items;
+        while ((items = model.pollServerMessage()) != null) {
+            changeView(items);
+
+            final int delay = items.length > 1 ? view.getPacingDelay(items[1]) : 0;
+            if (delay > 0) {
+                final Timer timer = new Timer(delay, e -> pumpMessages());
+                timer.setRepeats(false);
+                timer.start();
+                return;
             }
-        };
+        }
 
-        swingWorker.execute();
+        pumpScheduled.set(false);
+        // A batch may have arrived after the queue was found empty
+        if (model.hasServerMessage())
+            schedulePump();
     }
 
     /**
@@ -98,13 +114,9 @@ public class ClientController {
     /**
      * React to incoming message.
      * 
-     * @param serverMessage Message from server
+     * @param items Items of message from server
      */
-    private void changeView(final String serverMessage) {
-        if (serverMessage == null)
-            return;
-
-        final String[] items = serverMessage.split(RECV_DELIM);
+    private void changeView(final String[] items) {
         if (items.length <= 1 || !RECV_PREFIX.equals(items[0]))
             return;
 
@@ -114,10 +126,13 @@ public class ClientController {
         switch (items[1]) {
             case "WELCOME":
                 Card.setParams(Integer.parseInt(items[2]), Double.parseDouble(items[3]), Double.parseDouble(items[4]));
-                view.showWelcomePanel(); // Open window upon receipt
+                if (!model.isRejoining())
+                    view.showWelcomePanel(); // Open window upon receipt
                 break;
             case "TAKESEAT":
-                view.sitDown(Integer.parseInt(items[2]));
+                if (!model.isRejoining())
+                    view.sitDown(Integer.parseInt(items[2]));
+                model.setSessionToken(items.length > 3 ? items[3] : null);
                 break;
             case "PLAYERINFO":
                 seatIndex = Integer.parseInt(items[2]);
@@ -126,10 +141,15 @@ public class ClientController {
                 view.setPlayerInfo(seatIndex, avtIndex, name);
                 break;
             case "DONOTSIT":
+                if (model.isRejoining()) {
+                    System.err.println("Seat was given up after the connection was lost");
+                    System.exit(1);
+                }
                 view.showSeatErrMsg();
                 break;
             case "NEWFRAME":
                 waitingForReady = true;
+                dealtBefore = false; // a frame resumed after its last hand has no HAND to clear it
                 view.enableReadyButton();
                 break;
             case "ISREADY":
@@ -137,6 +157,11 @@ public class ClientController {
                 view.setReady(seatIndex);
                 view.enableHandControl(false);
                 break;
+            case "RESUME": // Frame goes on after the server recovered the table
+                waitingForReady = "WAITING".equals(items[2]);
+                dealtBefore = !waitingForReady && !"DEALING".equals(items[2]);
+                view.setTotalScore(getSubStrArray(items, 5));
+                break;
             case "DEAL": // Start dealing cards
                 waitingForReady = false;
                 view.resetForNewFrame();
@@ -147,6 +172,12 @@ public class ClientController {
                     sendToServer("ALLDEALT");
                 }
                 break;
+            case "HAND": // Deal a whole hand at once
+                if (view.addCards(splitCompactHand(items[2])) && !dealtBefore) {
+                    sendToServer("ALLDEALT");
+                }
+                dealtBefore = false;
+                break;
             case "TRADESTART": // Start trading
                 view.enterTradingPhase(Integer.parseInt(items[2]), Integer.parseInt(items[3]));
                 view.enableHandControl(true);
@@ -188,11 +219,13 @@ public class ClientController {
                 absLoc = Integer.parseInt(items[2]);
                 view.resetForDisconnection(absLoc, waitingForReady);
                 break;
+            case "ILLEGAL": // Move turned down by the server; the hand panel checks the same rules
+                System.err.println("Warning: server rejected " + String.join(" ", getSubStrArray(items, 2)));
+                break;
             case "GAMEOVER":
                 System.err.println("GAMEOVER");
                 System.exit(1);
         }
-        getServerMessage();
     }
 
     /**
@@ -209,6 +242,20 @@ public class ClientController {
         return Arrays.asList(items).subList(start, items.length).toArray(new String[0]);
     }
 
+    /**
+     * Split a compact hand into card aliases.
+     * 
+     * @param compactHand Concatenated short aliases, two letters per card
+     * @return Aliases of all cards in the hand
+     */
+    private String[] splitCompactHand(final String compactHand) {
+        final String[] aliases = new String[compactHand.length() / 2];
+        for (int i = 0; i < aliases.length; i++)
+            aliases[i] = compactHand.substring(2 * i, 2 * i + 2);
+
+        return aliases;
+    }
+
     /**
      * Sets up the client GUI and gets the first message from the server.
      */
@@ -216,7 +263,7 @@ public class ClientController {
         System.out.println("Starting client\n");
         view = new ClientView(this);
         model = new ClientModel(serverAddress, serverPort);
-        getServerMessage();
+        model.startListening(this::schedulePump);
     }
 
     /**
@@ -3,6 +3,7 @@ package main;
 import java.io.*;
 import java.net.*;
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * A {@code ClientModel} object handles communication with server.
@@ -10,10 +11,20 @@ import java.util.ArrayList;
  * @author Weizhao Tang
  */
 public class ClientModel {
-    private static final int MESSAGE_WAIT_TIME = 300; // time to wait between server messages
+    private static final int RECONNECT_ATTEMPTS = 10;
+    private static final int RECONNECT_DELAY = 2000; // milliseconds between attempts to reconnect
+
+    private final String serverAddress;
+    private final int serverPort;
     private Socket socket; // socket on server address and port
     private BufferedReader in; // in to server
-    private PrintWriter out; // out from server
+    private volatile PrintWriter out; // out from server
+
+    private volatile String sessionToken; // token that takes the seat back after a reconnection
+    private volatile boolean rejoining = false;
+
+    /** parsed server messages waiting to be consumed on the event dispatch thread */
+    private final ConcurrentLinkedQueue<String[]> inbox = new ConcurrentLinkedQueue<>();
 
     /**
      * Constructor for ClientModel object.
@@ -22,48 +33,140 @@ public class ClientModel {
      * @param serverPort    Server port
      */
     public ClientModel(final String serverAddress, final int serverPort) {
+        this.serverAddress = serverAddress;
+        this.serverPort = serverPort;
         try {
-            socket = new Socket(serverAddress, serverPort);
+            connect();
         } catch (final IOException e) {
             System.err.println("No server running on port " + serverPort + " at address " + serverAddress);
             System.exit(1);
         }
-        try {
-            final InputStreamReader isr = new InputStreamReader(socket.getInputStream(), "UTF-8"); // input stream
-                                                                                                   // reader from
-            // socket
-            in = new BufferedReader(isr);
-            out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"), true);
-        } catch (final IOException e) {
-            e.printStackTrace();
+    }
+
+    private void connect() throws IOException {
+        socket = new Socket(serverAddress, serverPort);
+        final InputStreamReader isr = new InputStreamReader(socket.getInputStream(), "UTF-8"); // input stream
+                                                                                               // reader from
+        // socket
+        in = new BufferedReader(isr);
+        out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"), true);
+    }
+
+    /**
+     * Keeps the session token of the seat, so that a lost connection can be
+     * replaced without losing the seat.
+     *
+     * @param sessionToken Token given by the server, or {@code null} if none
+     */
+    public void setSessionToken(final String sessionToken) {
+        this.sessionToken = sessionToken;
+        rejoining = false;
+    }
+
+    /**
+     * Tells if the client has reconnected and waits for its seat back.
+     *
+     * @return {@code true} if a seat is being taken back
+     */
+    public boolean isRejoining() {
+        return rejoining;
+    }
+
+    /**
+     * Opens a new connection after the old one was lost, and asks for the seat
+     * back. The server gives the seat back if it is still held.
+     *
+     * @return {@code true} if a new connection is open
+     */
+    private boolean reconnect() {
+        if (sessionToken == null)
+            return false;
+
+        for (int i = 0; i < RECONNECT_ATTEMPTS; i++) {
+            try {
+                Thread.sleep(RECONNECT_DELAY);
+                connect();
+            } catch (final IOException e) {
+                System.err.println("Reconnection failed, " + (RECONNECT_ATTEMPTS - i - 1) + " attempts left");
+                continue;
+            } catch (final InterruptedException e) {
+                return false;
+            }
+            rejoining = true;
+            sendToServer("REJOIN", sessionToken);
+            return true;
         }
+        return false;
     }
 
     /**
-     * Gets a message sent by the server.
+     * Starts a dedicated thread that reads and parses server messages as they
+     * arrive.
      *
-     * @return message sent by the server
+     * @param onArrival Callback invoked once after each batch of messages is queued
      */
-    public String getServerMessage() {
-        String serverMessage = null;
-        try {
-            Thread.sleep(MESSAGE_WAIT_TIME);
-            while (serverMessage == null)
-                serverMessage = in.readLine();
-
-            final String[] items = serverMessage.split(ClientController.RECV_DELIM);
-            if (!items[1].equals("ADD") && ClientController.TEST_MODE >= 1)
-                System.err.println("From Server: " + serverMessage);
-        } catch (final SocketException e) {
-            if (e.getMessage().contains("Connection reset")) {
+    public void startListening(final Runnable onArrival) {
+        final Thread readerThread = new Thread(new Reader(onArrival), "server-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    /**
+     * Takes the next parsed server message.
+     *
+     * @return items of the next message, or {@code null} if none is queued
+     */
+    public String[] pollServerMessage() {
+        return inbox.poll();
+    }
+
+    /**
+     * Tells if any parsed server message is waiting to be consumed.
+     *
+     * @return {@code true} if a message is queued; {@code false} otherwise
+     */
+    public boolean hasServerMessage() {
+        return !inbox.isEmpty();
+    }
+
+    /**
+     * A {@code Reader} blocks on the socket and queues every line it reads. All
+     * lines already buffered are queued before the consumer is notified, so that a
+     * burst of messages reaches the event dispatch thread as one batch.
+     */
+    private class Reader implements Runnable {
+        private final Runnable onArrival;
+
+        Reader(final Runnable onArrival) {
+            this.onArrival = onArrival;
+        }
+
+        @Override
+        public void run() {
+            do {
+                try {
+                    String serverMessage;
+                    while ((serverMessage = in.readLine()) != null) {
+                        do {
+                            final String[] items = serverMessage.split(ClientController.RECV_DELIM);
+                            if (items.length > 1 && !items[1].equals("ADD") && ClientController.TEST_MODE >= 1)
+                                System.err.println("From Server: " + serverMessage);
+
+                            inbox.add(items);
+                        } while (in.ready() && (serverMessage = in.readLine()) != null);
+
+                        onArrival.run();
+                    }
+                } catch (final SocketException e) {
+                    if (!e.getMessage().contains("Connection reset"))
+                        e.printStackTrace();
+                } catch (final IOException e) {
+                    e.printStackTrace();
+                }
                 System.err.println("Lost Connection to Server");
-                System.exit(1);
-            }
-            e.printStackTrace();
-        } catch (final Exception e) {
-            e.printStackTrace();
+            } while (reconnect());
+            System.exit(1);
         }
-        return serverMessage;
     }
 
     /**
@@ -84,6 +84,10 @@ public class ClientView extends JFrame implements ActionListener {
     /** Center panel including card showing panels, error message labels, etc. */
     private CenterPanel centerPanel;
 
+    /** Pause after each message type so that its animation and sound can play */
+    private static final Map<String, Integer> pacingDelays = Map.of("ADD", 15, "LEAD", 150, "FOLLOW", 150, "SHOWN",
+            300);
+
     /** Map of all loaded sound effect clips */
     private static final HashMap<String, Clip> clipMap = new HashMap<>();
 
@@ -164,6 +168,16 @@ public class ClientView extends JFrame implements ActionListener {
         }
     }
 
+    /**
+     * Get the pause to take after displaying a message of given type.
+     * 
+     * @param messageType Type of server message
+     * @return Delay in milliseconds before the next message is displayed
+     */
+    public int getPacingDelay(final String messageType) {
+        return pacingDelays.getOrDefault(messageType, 0);
+    }
+
     /**
      * Shows changes made to GUI.
      */
@@ -409,6 +423,17 @@ public class ClientView extends JFrame implements ActionListener {
         return handPanel.addCard(alias);
     }
 
+    /**
+     * Receive a whole hand dealt by server.
+     * 
+     * @param aliases Aliases of all cards in the hand
+     * @return {@code true} if all cards are dealt; {@code false} otherwise
+     */
+    public boolean addCards(final String[] aliases) {
+        playClip("deal");
+        return handPanel.addCards(aliases);
+    }
+
     /**
      * Sit down at chosen seat after server's permission.
      * 
@@ -10,7 +10,6 @@ import java.awt.*;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Random;
-import java.util.stream.IntStream;
 
 import javax.swing.*;
 
@@ -256,35 +255,21 @@ public class AssetPanel extends JPanel {
     }
 
     private int updatePanel(final int numDecks) {
-        int total = 0;
-        int heartScore = 0, pigScore = 0, sheepScore = 0, transScore = 0;
-
         int numTrans[] = new int[] { 0, 0, 0 };
         int numSheep[] = new int[] { 0, 0, 0 };
         int numPig[] = new int[] { 0, 0, 0 };
 
-        int numHearts = 0;
-
-        final int assetSize = assets.size();
-
         final HashMap<String, Integer> heartHist = new HashMap<>();
-        final ArrayList<Card> transformers = new ArrayList<>();
 
         for (final Card card : assets) {
             if (card.isHeart()) {
-                numHearts++;
-                heartScore += card.value();
                 heartHist.compute(card.fullAlias(), (k, v) -> v == null ? 1 : v + 1);
             } else if (card.isPig()) {
-                numPig[card.exposed]++;
-                pigScore += card.value();
+                numPig[card.exposed()]++;
             } else if (card.isSheep()) {
-                numSheep[card.exposed]++;
-                sheepScore += card.value();
+                numSheep[card.exposed()]++;
             } else if (card.isTransformer()) {
-                transScore += card.value();
-                transformers.add(card);
-                numTrans[card.exposed]++;
+                numTrans[card.exposed()]++;
             }
         }
 
@@ -293,18 +278,7 @@ public class AssetPanel extends JPanel {
         spadeAssetLiterals.setText(getColoredLiteral("S", numPig));
         heartAssetLiterals.setText(getHeartLiteral(heartHist));
 
-        if (assetSize == 0)
-            return 0;
-        if (assetSize == IntStream.of(numTrans).sum())
-            return transScore;
-
-        if (numHearts == 13 * numDecks) {
-            heartScore = -heartScore;
-            pigScore = assetSize == 16 * numDecks ? -pigScore : pigScore;
-        }
-
-        total = (int) Math.round((heartScore + pigScore + sheepScore) * Card.getMult(transformers));
-        return total;
+        return Asset.getScore(assets, numDecks);
     }
 
     private static String getColoredLiteral(final String suit, final int num, final boolean withSymbol) {
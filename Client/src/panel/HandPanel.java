@@ -178,16 +178,28 @@ public class HandPanel extends JPanel implements ActionListener {
     }
 
     public boolean addCard(final String cardAlias) {
+        return addCards(cardAlias);
+    }
+
+    /**
+     * Add dealt cards to hand, sorting and positioning them once for all.
+     * 
+     * @param cardAliases Aliases of dealt cards
+     * @return {@code true} if all cards are dealt; {@code false} otherwise
+     */
+    public boolean addCards(final String... cardAliases) {
         synchronized (cards) {
-            final Card newCard = new Card(cardAlias);
-            final MaskedCard cardObj = new MaskedCard(cardAlias);
-            cardObj.addMouseListener(mouseAdapter);
-            cardsPanel.add(cardObj);
+            for (final String cardAlias : cardAliases) {
+                final Card newCard = new Card(cardAlias);
+                final MaskedCard cardObj = new MaskedCard(cardAlias);
+                cardObj.addMouseListener(mouseAdapter);
+                cardsPanel.add(cardObj);
 
-            cardMap.put(cardObj, newCard);
-            cardObjMap.put(newCard, cardObj);
+                cardMap.put(cardObj, newCard);
+                cardObjMap.put(newCard, cardObj);
 
-            cards.add(newCard);
+                cards.add(newCard);
+            }
             cards.sort(new Card.CardComparator());
 
             repositionCards();
@@ -481,7 +493,7 @@ public class HandPanel extends JPanel implements ActionListener {
     }
 
     public synchronized void applyExposure(final String[] exposed) {
-        MaskedCard.upgradeEffects(exposed, cards, cardMap.keySet());
+        MaskedCard.upgradeEffects(exposed, cardMap.keySet());
         // putAllCards();
         showChanges();
     }
@@ -28,11 +28,11 @@ public class RulePanel extends JPanel {
     private static final String oldEffPrefix = "<font color=\"rgb((145, 135, 145))\"><strike>";
     private static final String oldEffPostFix = "</strike></font> ";
 
-    private static final Card trans = new Card(Card.TRANS);
-    private static final Card sheep = new Card(Card.SHEEP);
-    private static final Card pig = new Card(Card.PIG);
-    private static final HashMap<String, Card> allHearts = new HashMap<>(Map.of("2~4", new Card("2H"), "5~T",
-            new Card("5H"), "J", new Card("JH"), "Q", new Card("QH"), "K", new Card("KH"), "A", new Card(Card.ACEH)));
+    // Cards at the levels exposed so far, replaced as they are upgraded
+    private static Card trans = Card.of(Card.TRANS);
+    private static Card sheep = Card.of(Card.SHEEP);
+    private static Card pig = Card.of(Card.PIG);
+    private static final HashMap<String, Card> allHearts = new HashMap<>();
 
     private final BackgroundRect background;
 
@@ -134,14 +134,23 @@ public class RulePanel extends JPanel {
         setVisible(true);
     }
 
+    static {
+        resetCards();
+    }
+
     public void reset() {
-        trans.resetGrade();
-        sheep.resetGrade();
-        pig.resetGrade();
-        allHearts.values().stream().forEach(c -> c.resetGrade());
+        resetCards();
         setEffectText();
     }
 
+    private static void resetCards() {
+        trans = Card.of(Card.TRANS);
+        sheep = Card.of(Card.SHEEP);
+        pig = Card.of(Card.PIG);
+        allHearts.putAll(Map.of("2~4", Card.of("2H"), "5~T", Card.of("5H"), "J", Card.of("JH"), "Q", Card.of("QH"),
+                "K", Card.of("KH"), "A", Card.of(Card.ACEH)));
+    }
+
     private void setEffectText() {
         dTransLabel.setText(String.format("\u2663TT%4s\u00d7", "" + Card.getMultStr(4, trans, trans)));
         transLabel.setText(String.format("\u2663T%4s\u00d7", "" + Card.getMultStr(4, trans)));
@@ -158,13 +167,13 @@ public class RulePanel extends JPanel {
     public void updateEffects(String[] exposed) {
         for (String alias : exposed) {
             if (alias.startsWith(Card.TRANS)) {
-                trans.upgrade(1);
+                trans = trans.upgrade(1);
             } else if (alias.startsWith(Card.SHEEP)) {
-                sheep.upgrade(1);
+                sheep = sheep.upgrade(1);
             } else if (alias.startsWith(Card.PIG)) {
-                pig.upgrade(1);
+                pig = pig.upgrade(1);
             } else if (alias.startsWith(Card.ACEH)) {
-                allHearts.values().stream().forEach(c -> c.upgrade(1));
+                allHearts.replaceAll((k, c) -> c.upgrade(1));
             }
         }
         setEffectText();
@@ -175,16 +184,14 @@ public class RulePanel extends JPanel {
             if (trans.fullyUpgraded())
                 return "";
 
-            Card newTrans = new Card(trans.fullAlias());
-            newTrans.upgrade(1);
+            final Card newTrans = trans.upgrade(1);
             return MyColors.getColoredText("\u2663T(" + oldEffPrefix + Card.getMult(trans) + "\u00d7" + oldEffPostFix
                     + Card.getMult(newTrans) + "\u00d7)", MyColors.clubColor);
         } else if (Card.SHEEP.equals(exposable)) {
             if (sheep.fullyUpgraded())
                 return "";
 
-            Card newSheep = new Card(sheep.fullAlias());
-            newSheep.upgrade(1);
+            final Card newSheep = sheep.upgrade(1);
             return MyColors.getColoredText(
                     "\u2666J(" + oldEffPrefix + sheep.value() + oldEffPostFix + newSheep.value() + ")",
                     MyColors.diamondColor);
@@ -192,8 +199,7 @@ public class RulePanel extends JPanel {
             if (pig.fullyUpgraded())
                 return "";
 
-            Card newPig = new Card(pig.fullAlias());
-            newPig.upgrade(1);
+            final Card newPig = pig.upgrade(1);
             return MyColors.getColoredText(
                     "\u2660Q(" + oldEffPrefix + pig.value() + oldEffPostFix + newPig.value() + ")",
                     MyColors.spadeColor);
@@ -201,7 +207,7 @@ public class RulePanel extends JPanel {
             if (allHearts.get("A").fullyUpgraded())
                 return "";
 
-            int heartsMult = 1 << allHearts.get("A").exposed;
+            int heartsMult = 1 << allHearts.get("A").exposed();
             return MyColors.getColoredText("\u2665A(" + oldEffPrefix + "\u2665\u00d7" + heartsMult + oldEffPostFix
                     + "\u2665\u00d7" + (heartsMult << 1) + ")", MyColors.heartColor);
         } else
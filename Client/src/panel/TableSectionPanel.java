@@ -196,7 +196,7 @@ public class TableSectionPanel extends JPanel {
     }
 
     public synchronized void applyExposure(String[] exposed) {
-        MaskedCard.upgradeEffects(exposed, null, Stream.of(getComponents())
+        MaskedCard.upgradeEffects(exposed, Stream.of(getComponents())
                 .filter(c -> c.getClass() == MaskedCard.class).map(c -> (MaskedCard) c).collect(Collectors.toSet()));
         showChanges();
     }
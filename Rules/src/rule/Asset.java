@@ -1,3 +1,4 @@
+package rule;
 
 import java.util.*;
 
@@ -19,6 +20,18 @@ public class Asset {
     }
 
     public int getScore(final int numDecks) {
+        return getScore(cards, numDecks);
+    }
+
+    /**
+     * Scores a collection of asset cards, so that searches can score assets
+     * they keep on their own.
+     *
+     * @param cards    Scored cards won by a player
+     * @param numDecks Number of decks in the shoe
+     * @return the score of the cards
+     */
+    public static int getScore(final Collection<Card> cards, final int numDecks) {
         int total = 0;
         int heartScore = 0, pigScore = 0, sheepScore = 0, transScore = 0;
 
@@ -5,6 +5,15 @@ import java.util.stream.Collectors;
 
 /**
  * Card objects represent a standard playing card with a rank and a suit.
+ * <p>
+ * The cards returned by {@link #of} and {@link #fromWeight} are immutable
+ * flyweights: there is exactly one instance per rank, suit and exposure level,
+ * created up front together with its weight and aliases. Parsing and scoring
+ * are therefore table lookups without allocation. The server only uses these.
+ * <p>
+ * A card made by a constructor is an immutable copy of its own, so that a hand
+ * can tell apart the two copies of a card in a double deck. Its aliases and
+ * value come from the same tables as those of the flyweights.
  *
  * @author Weizhao Tang
  */
@@ -16,15 +25,38 @@ public class Card {
     public static final String SHEEP = Rank.JACK.alias() + Suit.DIAMONDS.alias();
     public static final String PIG = Rank.QUEEN.alias() + Suit.SPADES.alias();
     public static final String ACEH = Rank.ACE.alias() + Suit.HEARTS.alias();
+    public static final String[] exposables = new String[] { TRANS, SHEEP, PIG, ACEH };
 
-    public static double MULT_EXP = 0.1;
-    public static double MULT_GET = 0.1;
+    public static double MULT_EXP = 0.4;
+    public static double MULT_GET = 0.4;
 
-    /** rank of the card */
-    private final Rank rank;
-    /** suit of the card */
-    private final Suit suit;
-    public int exposed = 0;
+    public static final int MAX_EXPOSED = 2;
+    private static final String exposureSuffixes = " xz";
+
+    private static final Suit[] suitsByValue = { Suit.CLUBS, Suit.DIAMONDS, Suit.SPADES, Suit.HEARTS };
+    private static final Card[][] cards = new Card[MAX_EXPOSED + 1][CardSet.NUM_KINDS]; // by exposure and weight
+    private static final int[][] values = new int[MAX_EXPOSED + 1][CardSet.NUM_KINDS]; // by exposure and weight
+
+    private final Rank rank; // rank of the card
+    private final Suit suit; // suit of the card
+    private final int exposed;
+
+    private final int weight;
+    private final boolean scored;
+    private final String alias;
+    private final String fullAlias; // of the flyweight, whose level is fixed
+
+    static {
+        for (int exposed = 0; exposed <= MAX_EXPOSED; exposed++) {
+            for (final Suit suit : Suit.values()) {
+                for (final Rank rank : Rank.values()) {
+                    final Card card = new Card(rank, suit, exposed);
+                    cards[exposed][card.weight] = card;
+                }
+            }
+        }
+        setBaseScore(baseScore);
+    }
 
     /**
      * The {@code CardComparator} class defines comparison between each pair of
@@ -32,7 +64,7 @@ public class Card {
      */
     public static class CardComparator implements Comparator<Card> {
         public int compare(final Card c1, final Card c2) {
-            return c1.weight() == c2.weight() ? 0 : (c1.weight() < c2.weight() ? 1 : -1);
+            return Integer.compare(c2.weight, c1.weight);
         }
     }
 
@@ -43,169 +75,220 @@ public class Card {
         TWO(2), THREE(3), FOUR(4), FIVE(5), SIX(6), SEVEN(7), EIGHT(8), NINE(9), TEN(10), JACK(11), QUEEN(12), KING(13),
         ACE(14);
 
-        private int value; // value of the rank
+        private static final Rank[] byChar = new Rank[128];
+
+        private final int value; // value of the rank
+        private final String alias;
+
+        static {
+            for (final Rank rank : values())
+                byChar[rank.alias.charAt(0)] = rank;
+        }
 
         /**
          * Constructor for Rank object.
          *
          * @param value Value of the rank
          */
-        Rank(final int value) {
+
+        Rank(int value) {
             this.value = value;
+            alias = value < 10 ? String.valueOf(value) : name().substring(0, 1);
         }
 
-        /**
-         * Translate an alias to a {@link Rank} enum instance.
-         * 
-         * @param c Alias of one letter
-         * @return Corresponding {@link Rank} enum instance
-         */
-        public static Rank fromString(final String c) {
+        public static Rank fromString(String c) {
             if (c.length() != 1)
                 throw new NumberFormatException("Illegal rank \"" + c + "\"");
 
-            int n;
-            try {
-                n = Integer.valueOf(c);
-            } catch (final NumberFormatException e) {
-                if (c.equals("T"))
-                    n = 10;
-                else if (c.equals("J"))
-                    n = 11;
-                else if (c.equals("Q"))
-                    n = 12;
-                else if (c.equals("K"))
-                    n = 13;
-                else if (c.equals("A"))
-                    n = 14;
-                else
-                    throw new NumberFormatException("Illegal rank \"" + c + "\"");
-            }
+            return fromChar(c.charAt(0));
+        }
 
-            return Rank.values()[n - 2];
+        public static Rank fromChar(char c) {
+            final Rank rank = c < byChar.length ? byChar[c] : null;
+            if (rank == null)
+                throw new NumberFormatException("Illegal rank \"" + c + "\"");
+
+            return rank;
         }
 
-        /**
-         * Get one-letter alias of the rank.
-         * 
-         * @return One-letter alias of the rank
-         */
         public String alias() {
-            if (this.value < 10)
-                return String.valueOf(this.value);
-            else
-                return name().toUpperCase().substring(0, 1);
+            return alias;
         }
     }
 
     /**
      * Suits that cards can have.
      */
+
     public enum Suit {
         CLUBS(0), DIAMONDS(1), HEARTS(3), SPADES(2);
 
-        private int value;
+        private final int value;
+        private final String alias;
 
-        Suit(final int value) {
+        Suit(int value) {
             this.value = value;
+            alias = name().substring(0, 1);
         }
 
-        /**
-         * Translate an alias to a {@link Suit} enum instance.
-         * 
-         * @param c Alias of one letter
-         * @return Corresponding {@link Suit} enum instance
-         */
-        public static Suit fromString(final String c) {
-            if (c.equals("C"))
-                return CLUBS;
-            if (c.equals("D"))
-                return DIAMONDS;
-            if (c.equals("H"))
-                return HEARTS;
-            if (c.equals("S"))
-                return SPADES;
-
-            throw new NumberFormatException();
+        public static Suit fromString(String c) {
+            if (c.length() != 1)
+                throw new NumberFormatException();
+
+            return fromChar(c.charAt(0));
+        }
+
+        public static Suit fromChar(char c) {
+            switch (c) {
+                case 'C':
+                    return CLUBS;
+                case 'D':
+                    return DIAMONDS;
+                case 'H':
+                    return HEARTS;
+                case 'S':
+                    return SPADES;
+                default:
+                    throw new NumberFormatException();
+            }
         }
 
-        /**
-         * Get one-letter alias of the suit.
-         * 
-         * @return One-letter alias of the suit
-         */
         public String alias() {
-            return name().toUpperCase().substring(0, 1);
+            return alias;
         }
     }
 
     /**
-     * Instantiate a {@code Card} object given rank and suit.
+     * Constructor for the flyweight Card objects.
+     *
+     * @param rank_    Rank of the card
+     * @param suit_    Suit of the card
+     * @param exposed_ Exposure level of the card
+     */
+    private Card(Rank rank_, Suit suit_, int exposed_) {
+        rank = rank_;
+        suit = suit_;
+        exposed = exposed_;
+        weight = rank.value - 2 + suit.value * 13;
+        scored = isTransformer() || isSheep() || isPig() || isHeart();
+        alias = exposed == 0 ? rank.alias() + suit.alias() : cards[0][weight].alias;
+        fullAlias = alias + exposureSuffixes.substring(exposed, exposed + 1).trim();
+    }
+
+    /**
+     * Instantiate a {@code Card} object of its own given rank and suit.
      *
      * @param rank_ Rank of the card
      * @param suit_ Suit of the card
      */
     public Card(final Rank rank_, final Suit suit_) {
-        rank = rank_;
-        suit = suit_;
+        this(of(rank_, suit_));
     }
 
     /**
-     * Instantiate a {@code Card} object given its full alias.
+     * Instantiate a {@code Card} object of its own given its full alias.
      *
-     * @param alias Full alias of new card
+     * @param alias Full alias of new card, such as "QS" or "QSx"
      */
     public Card(final String alias) {
-        if (alias.length() != 2 && alias.length() != 3 || (alias.length() == 3 && !"zx".contains(alias.substring(2))))
-            throw new NumberFormatException("Illegal card alias \"" + alias + "\"");
+        this(of(alias));
+    }
 
-        rank = Rank.fromString(alias.substring(0, 1));
-        suit = Suit.fromString(alias.substring(1, 2));
+    private Card(final Card flyweight) {
+        rank = flyweight.rank;
+        suit = flyweight.suit;
+        exposed = flyweight.exposed;
+        weight = flyweight.weight;
+        scored = flyweight.scored;
+        alias = flyweight.alias;
+        fullAlias = null;
+    }
 
-        if (alias.length() == 3) {
-            upgrade(alias.charAt(2) == 'x' ? 1 : 2);
-        }
+    /**
+     * Returns the unexposed card of given rank and suit.
+     *
+     * @param rank Rank of the card
+     * @param suit Suit of the card
+     * @return the card
+     */
+    public static Card of(Rank rank, Suit suit) {
+        return cards[0][rank.value - 2 + suit.value * 13];
     }
 
     /**
-     * Tell if the card's full alias (including terminating "x" or not) is identical
-     * to given literal.
-     * 
-     * @param literal Target full alias
-     * @return {@code true} if they are exactly the same; {@code false} otherwise
+     * Returns the card of given full alias, such as "QS" or "QSx".
+     *
+     * @param alias Full alias of the card
+     * @return the card
      */
-    public boolean fullEquals(final String literal) {
-        return fullAlias().equals(literal);
+    public static Card of(String alias) {
+        final int length = alias.length();
+        final int exposed = length == 3 ? exposureSuffixes.indexOf(alias.charAt(2)) : 0;
+        if (length != 2 && length != 3 || exposed <= 0 && length == 3)
+            throw new NumberFormatException("Illegal card alias \"" + alias + "\"");
+
+        final Rank rank = Rank.fromChar(alias.charAt(0));
+        final Suit suit = Suit.fromChar(alias.charAt(1));
+        return cards[exposed][rank.value - 2 + suit.value * 13];
     }
 
     /**
-     * Tell if the card's partial alias (w/o terminating "x") is identical to given
-     * literal.
-     * 
-     * @param literal Target alias
-     * @return {@code true} if they are roughly the same; {@code false} otherwise
+     * Returns the card of given weight.
+     *
+     * @param weight Weight of the card, as returned by {@link #weight()}
+     * @return the card
      */
-    public boolean weakEquals(final String literal) {
-        return alias().equals(literal.substring(0, 2));
+    public static Card fromWeight(final int weight) {
+        return cards[0][weight];
     }
 
     /**
-     * Set {@code exposed} flag to {@code true} when the card is exposed.
+     * Returns the card of given weight and exposure level.
+     *
+     * @param weight  Weight of the card, as returned by {@link #weight()}
+     * @param exposed Exposure level, from 0 to {@link #MAX_EXPOSED}
+     * @return the card
      */
-    public synchronized void upgrade(final int numLevels) {
-        if ((exposed += numLevels) > 2)
-            throw new RuntimeException("Upgrade to " + exposed + " over maximum 2");
+    public static Card fromWeight(final int weight, final int exposed) {
+        return cards[exposed][weight];
     }
 
-    public synchronized boolean fullyUpgraded() {
-        return exposed >= 2;
+    public static int getBaseScore() {
+        return baseScore;
     }
 
     /**
-     * Set {@code exposed} flag to {@code true} when the card is exposed.
+     * Sets the base score and recomputes the value of every card.
+     *
+     * @param score Base score
+     */
+    public static void setBaseScore(final int score) {
+        baseScore = score;
+        for (final Card[] level : cards) {
+            for (final Card card : level)
+                values[card.exposed][card.weight] = card.computeValue();
+        }
+    }
+
+    /**
+     * Sets the scoring parameters announced by the server.
+     *
+     * @param score    Base score
+     * @param mult_exp Multiplier added by each exposure of a transformer
+     * @param mult_get Multiplier added by each transformer taken
      */
-    public synchronized void resetGrade() {
-        exposed = 0;
+    public static void setParams(final int score, final double mult_exp, final double mult_get) {
+        setBaseScore(score);
+        MULT_EXP = mult_exp;
+        MULT_GET = mult_get;
+    }
+
+    public boolean fullEquals(String literal) {
+        return fullAlias().equals(literal);
+    }
+
+    public boolean weakEquals(String literal) {
+        return alias.regionMatches(0, literal, 0, 2);
     }
 
     /**
@@ -214,6 +297,10 @@ public class Card {
      * @return the value of the card
      */
     public int value() {
+        return values[exposed][weight];
+    }
+
+    private int computeValue() {
         if (isTransformer())
             return (5 * baseScore) << exposed;
         if (isSheep())
@@ -237,32 +324,35 @@ public class Card {
             throw new RuntimeException("Calling multiplier on non-transformer \"" + fullAlias() + "\"");
     }
 
-    /**
-     * Tell if a card is scored.
-     * 
-     * @return {@code true} if card is scored; {@code false} otherwise
-     */
     public boolean isScored() {
-        return isTransformer() || isSheep() || isPig() || isHeart();
+        return scored;
     }
 
     /**
-     * Tell if a card is forbidden to follow in the first round.
-     * 
-     * @return {@code true} if card is forbidden; {@code false} otherwise
+     * Returns the flyweight of this card raised by given exposure levels. The
+     * card itself never changes.
+     *
+     * @param numLevels Number of levels to raise
+     * @return the upgraded card
      */
-    public boolean scoringInRound1() {
-        return isSheep() || isPig() || isNegativeHeart();
+    public Card upgrade(int numLevels) {
+        if (exposed + numLevels > MAX_EXPOSED)
+            throw new RuntimeException("Upgrade to " + (exposed + numLevels) + " over maximum " + MAX_EXPOSED);
+
+        return cards[exposed + numLevels][weight];
+    }
+
+    public boolean fullyUpgraded() {
+        return exposed >= MAX_EXPOSED;
     }
 
     /**
-     * Tell if a card can be exposed.
-     * 
-     * @return {@code true} if the card is allowed to be exposed; {@code false}
-     *         otherwise
+     * Returns the exposure level of the card.
+     *
+     * @return 0 if not exposed, up to {@link #MAX_EXPOSED}
      */
-    public boolean isExposable() {
-        return weakEquals(Card.ACEH) || isSheep() || isPig() || isTransformer();
+    public int exposed() {
+        return exposed;
     }
 
     /**
@@ -274,77 +364,54 @@ public class Card {
         return rank;
     }
 
-    /**
-     * Tell if a card is transformer (10 of clubs).
-     * 
-     * @return {@code true} if is transformer; {@code false} otherwise
-     */
+    public Suit suit() {
+        return suit;
+    }
+
     public boolean isTransformer() {
         return (rank == Rank.TEN && suit == Suit.CLUBS);
     }
 
-    /**
-     * Tell if a card is pig (queen of spades).
-     * 
-     * @return {@code true} if is pig; {@code false} otherwise
-     */
     public boolean isPig() {
         return (rank == Rank.QUEEN && suit == Suit.SPADES);
     }
 
-    /**
-     * Tell if a card is sheep (jack of diamonds).
-     * 
-     * @return {@code true} if is sheep; {@code false} otherwise
-     */
     public boolean isSheep() {
         return (rank == Rank.JACK && suit == Suit.DIAMONDS);
     }
 
-    /**
-     * Tell if a card is in heart suit.
-     * 
-     * @return {@code true} if is in heart suit; {@code false} otherwise
-     */
     public boolean isHeart() {
         return suit == Suit.HEARTS;
     }
 
-    /**
-     * Tell if a card is in heart suit and has negative score.
-     * 
-     * @return {@code true} if is in heart suit with negative score; {@code false}
-     *         otherwise
-     */
     public boolean isNegativeHeart() {
         return (rank.value > Rank.FOUR.value && suit == Suit.HEARTS);
     }
 
-    /**
-     * Get suit of this card.
-     * 
-     * @return {@code Suit} enum object of this card.
-     */
-    public Suit suit() {
-        return suit;
+    public boolean scoringInRound1() {
+        return isSheep() || isPig() || isNegativeHeart();
     }
 
-    /**
-     * Assign an weight to card for card sorting.
-     * 
-     * @return Weight of card
-     */
-    private int weight() {
-        return rank.value - 2 + suit.value * 13;
+    public boolean isExposable() {
+        return weakEquals(ACEH) || isSheep() || isPig() || isTransformer();
     }
 
     /**
-     * Get short alias of card (w/o exposure information).
-     * 
-     * @return Short alias of card
+     * Returns the alias of the card whose exposure upgrades this card: the ace of
+     * hearts for all hearts, and the card itself for the other scored cards.
+     *
+     * @return alias of the exposer, or "--" if the card is not scored
      */
+    public String exposerAlias() {
+        return isScored() ? (isHeart() ? ACEH : alias) : "--";
+    }
+
+    public int weight() {
+        return weight;
+    }
+
     public String alias() {
-        return rank.alias() + suit.alias();
+        return alias;
     }
 
     /**
@@ -353,11 +420,7 @@ public class Card {
      * @return Full alias of card
      */
     public String fullAlias() {
-        return alias() + (exposed == 0 ? "" : exposed == 1 ? "x" : "z");
-    }
-
-    public String exposerAlias() {
-        return isScored() ? (isHeart() ? Card.ACEH : alias()) : "--";
+        return cards[exposed][weight].fullAlias;
     }
 
     /**
@@ -471,6 +534,76 @@ public class Card {
         }
     }
 
+    public static int roundResult(ArrayList<ArrayList<Card>> cardSets, int leader) {
+        final int roundSize = cardSets.get(0).size();
+        final int[] plays = new int[cardSets.size() * roundSize];
+
+        for (int i = 0; i < cardSets.size(); i++) {
+            for (int j = 0; j < roundSize; j++)
+                plays[i * roundSize + j] = cardSets.get(i).get(j).weight();
+        }
+        return roundResult(plays, cardSets.size(), roundSize, leader);
+    }
+
+    /**
+     * Returns the winner of a trick given by card weights.
+     *
+     * @param plays      Weights of all cards in playing order, {@code roundSize}
+     *                   consecutive weights per player
+     * @param numPlayers Number of players in the trick
+     * @param roundSize  Number of cards each player played, 1 or 2
+     * @param leader     Index of the leading player
+     * @return the index of the winning player
+     */
+    public static int roundResult(final int[] plays, final int numPlayers, final int roundSize, final int leader) {
+        final int leadSuit = CardSet.suitOf(plays[0]);
+        int maxRank = CardSet.rankOf(plays[0]);
+        int winner = 0;
+
+        if (roundSize == 1) {
+            for (int i = 1; i < numPlayers; i++) {
+                if (CardSet.suitOf(plays[i]) == leadSuit && CardSet.rankOf(plays[i]) > maxRank) {
+                    winner = i;
+                    maxRank = CardSet.rankOf(plays[i]);
+                }
+            }
+        } else if (roundSize == 2) {
+            assert isPair(plays[0], plays[1]);
+
+            boolean maxIsPair = true;
+            final boolean isNotDiamond = leadSuit != Suit.DIAMONDS.value;
+
+            for (int i = 1; i < numPlayers; i++) {
+                final int first = plays[2 * i], second = plays[2 * i + 1];
+                if (CardSet.suitOf(first) != leadSuit || CardSet.suitOf(second) != leadSuit)
+                    continue;
+
+                final int topRank = Math.max(CardSet.rankOf(first), CardSet.rankOf(second));
+                final boolean isPair = isPair(first, second);
+
+                if ((topRank > maxRank && !(maxIsPair ^ isPair)) || (isNotDiamond && maxIsPair && !isPair)) {
+                    maxRank = topRank;
+                    winner = i;
+                    maxIsPair = isPair;
+                }
+            }
+        }
+        return (winner + leader) % numPlayers;
+    }
+
+    public static boolean isPair(final int weight1, final int weight2) {
+        return weight1 == weight2;
+    }
+
+    public static boolean isPair(final String alias1, final String alias2) {
+        return alias1.startsWith(alias2.substring(0, 2));
+    }
+
+    public static boolean isPair(final Collection<Card> collection) {
+        final Card[] cards = collection.toArray(new Card[0]);
+        return cards.length == 2 && cards[0].suit == cards[1].suit && cards[0].rank == cards[1].rank;
+    }
+
     public static double getMult(final Collection<Card> trans) {
         if (trans == null || trans.isEmpty())
             return 1.0;
@@ -494,22 +627,16 @@ public class Card {
         return getNumerics(len, getMult(trans));
     }
 
-    public static void setParams(final int score, final double mult_exp, final double mult_get) {
-        baseScore = score;
-        MULT_EXP = mult_exp;
-        MULT_GET = mult_get;
-    }
+    public static String concatCards(String delim, Collection<Card> collection) {
+        if (collection == null || collection.size() == 0)
+            return "";
 
-    public static boolean isPair(final String alias1, final String alias2) {
-        return alias1.startsWith(alias2.substring(0, 2));
-    }
-
-    public static boolean isPair(final Collection<Card> collection) {
-        final Card[] cards = collection.toArray(new Card[0]);
-        return cards.length == 2 && cards[0].suit == cards[1].suit && cards[0].rank == cards[1].rank;
-    }
-
-    public static String concatCards(final String delim, final Collection<Card> collection) {
-        return collection.stream().map(card -> card.fullAlias()).collect(Collectors.joining(delim));
+        final StringBuilder builder = new StringBuilder(4 * collection.size());
+        for (final Card card : collection) {
+            if (builder.length() > 0)
+                builder.append(delim);
+            builder.append(card.fullAlias());
+        }
+        return builder.toString();
     }
 }
\ No newline at end of file
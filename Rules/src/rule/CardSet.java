@@ -0,0 +1,184 @@
+package rule;
+
+/**
+ * A {@code CardSet} holds up to two copies of each of the 52 cards in a pair of
+ * {@code long}s, one bit per card and copy. Cards are indexed by
+ * {@link Card#weight()}, so the 13 cards of a suit occupy consecutive bits and
+ * suit queries are a mask and a bit count. No operation allocates.
+ *
+ * @author Weizhao Tang
+ */
+public class CardSet {
+    public static final int NUM_KINDS = 52;
+    public static final long ALL_KINDS = (1L << NUM_KINDS) - 1;
+
+    private long first; // cards held at least once
+    private long second; // cards held twice
+
+    public CardSet() {
+    }
+
+    public CardSet(final long first, final long second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    public CardSet(final CardSet other) {
+        this(other.first, other.second);
+    }
+
+    /**
+     * Returns the bit of a card.
+     *
+     * @param weight Weight of the card
+     * @return the bit of the card
+     */
+    public static long bit(final int weight) {
+        return 1L << weight;
+    }
+
+    /**
+     * Returns the bits of all cards in a suit.
+     *
+     * @param suit Value of the suit, i.e. weight divided by 13
+     * @return the bits of the suit
+     */
+    public static long suitMask(final int suit) {
+        return 0x1FFFL << (13 * suit);
+    }
+
+    public static int suitOf(final int weight) {
+        return weight / 13;
+    }
+
+    public static int rankOf(final int weight) {
+        return weight % 13;
+    }
+
+    public long first() {
+        return first;
+    }
+
+    public long second() {
+        return second;
+    }
+
+    public void set(final long first, final long second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    public void set(final CardSet other) {
+        set(other.first, other.second);
+    }
+
+    public void clear() {
+        first = 0;
+        second = 0;
+    }
+
+    public boolean isEmpty() {
+        return first == 0;
+    }
+
+    public int size() {
+        return Long.bitCount(first) + Long.bitCount(second);
+    }
+
+    public void add(final int weight) {
+        final long bit = bit(weight);
+        if ((first & bit) == 0)
+            first |= bit;
+        else if ((second & bit) == 0)
+            second |= bit;
+        else
+            throw new IllegalStateException("More than two copies of card " + weight);
+    }
+
+    public void add(final Card card) {
+        add(card.weight());
+    }
+
+    public void addAll(final CardSet other) {
+        final long overflow = second & other.first | first & other.second | second & other.second;
+        if (overflow != 0)
+            throw new IllegalStateException("More than two copies of card " + Long.numberOfTrailingZeros(overflow));
+
+        second |= first & other.first | other.second;
+        first |= other.first;
+    }
+
+    /**
+     * Removes one copy of a card.
+     *
+     * @param weight Weight of the card
+     * @return {@code true} if a copy was removed; {@code false} if the card is
+     *         absent
+     */
+    public boolean remove(final int weight) {
+        final long bit = bit(weight);
+        if ((second & bit) != 0)
+            second &= ~bit;
+        else if ((first & bit) != 0)
+            first &= ~bit;
+        else
+            return false;
+        return true;
+    }
+
+    public boolean remove(final Card card) {
+        return remove(card.weight());
+    }
+
+    public boolean contains(final int weight) {
+        return (first & bit(weight)) != 0;
+    }
+
+    public int count(final int weight) {
+        final long bit = bit(weight);
+        return ((first & bit) == 0 ? 0 : 1) + ((second & bit) == 0 ? 0 : 1);
+    }
+
+    public int countInSuit(final int suit) {
+        final long mask = suitMask(suit);
+        return Long.bitCount(first & mask) + Long.bitCount(second & mask);
+    }
+
+    public boolean hasSuit(final int suit) {
+        return (first & suitMask(suit)) != 0;
+    }
+
+    public boolean hasPairInSuit(final int suit) {
+        return (second & suitMask(suit)) != 0;
+    }
+
+    /**
+     * Returns the bits of all cards held in both copies.
+     *
+     * @return the bits of all pairs
+     */
+    public long pairs() {
+        return second;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return obj instanceof CardSet && ((CardSet) obj).first == first && ((CardSet) obj).second == second;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(first * 31 + second);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        for (long bits = first; bits != 0; bits &= bits - 1) {
+            final int weight = Long.numberOfTrailingZeros(bits);
+            for (int i = count(weight); i > 0; i--)
+                builder.append(Card.fromWeight(weight).alias());
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,21 @@
+package rule;
+
+/**
+ * Prefixes and delimiters of the messages between the server and its clients.
+ * Every message is one line: a prefix, then items joined by a delimiter.
+ *
+ * @author Weizhao Tang
+ */
+public final class Protocol {
+    /** prefix of messages from the server */
+    public static final String SERVER_PREFIX = "SERVERMESSAGE";
+    /** delimiter of items in messages from the server */
+    public static final String SERVER_DELIM = "==";
+    /** prefix of messages from a client */
+    public static final String CLIENT_PREFIX = "FROMCLIENT";
+    /** delimiter of items in messages from a client */
+    public static final String CLIENT_DELIM = "~~";
+
+    private Protocol() {
+    }
+}
@@ -0,0 +1,205 @@
+package rule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rules decides whether a play, a trade or a show is legal, so the server does
+ * not have to trust its clients. Hands are {@link CardSet}s, and checking a
+ * play takes a handful of mask operations on them without allocating.
+ * <p>
+ * The rules mirror {@code HandPanel.checkPlayRule} on the client.
+ *
+ * @author Weizhao Tang
+ */
+public class Rules {
+    private static final int OPENER = Card.of(Card.OPENER).weight();
+
+    private static final long FIRST_ROUND_BANNED; // cards that may not follow in the first round
+    private static final long EXPOSABLES;
+
+    static {
+        long banned = 0, exposables = 0;
+        for (int weight = 0; weight < CardSet.NUM_KINDS; weight++) {
+            final Card card = Card.fromWeight(weight);
+            if (card.scoringInRound1())
+                banned |= CardSet.bit(weight);
+            if (card.isExposable())
+                exposables |= CardSet.bit(weight);
+        }
+        FIRST_ROUND_BANNED = banned;
+        EXPOSABLES = exposables;
+    }
+
+    /**
+     * Reasons for rejecting a move.
+     */
+    public enum Violation {
+        NONE, CARD_NUM_EXCESS, CARD_NUM_MISMATCH, NOT_IN_HAND, ILLEGAL_FIRST_LEAD, ILLEGAL_DOUBLE_LEAD,
+        BANNED_FIRST_ROUND_FOLLOW, ILLEGAL_DISCARD, ILLEGAL_PAIR_FOLLOW, TRADE_NUM_MISMATCH, ILLEGAL_SHOWING,
+        WRONG_EXPOSURE,
+    }
+
+    private Rules() {
+    }
+
+    /**
+     * Checks a play against the hand of the player.
+     *
+     * @param hand       Cards held by the player, including the played ones
+     * @param play       Cards played
+     * @param lead       Cards led in this round, or an empty list if the player
+     *                   leads
+     * @param firstRound {@code true} if this is the first round of the frame
+     * @return the broken rule, or {@link Violation#NONE} if the play is legal
+     */
+    public static Violation checkPlay(final CardSet hand, final List<Card> play, final List<Card> lead,
+            final boolean firstRound) {
+        final int numPlayed = play.size();
+        if (numPlayed == 0 || numPlayed > 2)
+            return Violation.CARD_NUM_EXCESS;
+
+        final int first = play.get(0).weight();
+        final int second = numPlayed == 2 ? play.get(1).weight() : -1;
+        return lead.isEmpty() ? checkPlay(hand, first, second, 0, -1, firstRound)
+                : checkPlay(hand, first, second, lead.size(), lead.get(0).weight(), firstRound);
+    }
+
+    /**
+     * Checks a play given by card weights.
+     *
+     * @param hand       Cards held by the player, including the played ones
+     * @param first      Weight of the first card played
+     * @param second     Weight of the second card played, or -1 if only one card
+     *                   is played
+     * @param leadSize   Number of cards led in this round, 0 if the player leads
+     * @param leadWeight Weight of a card led in this round
+     * @param firstRound {@code true} if this is the first round of the frame
+     * @return the broken rule, or {@link Violation#NONE} if the play is legal
+     */
+    public static Violation checkPlay(final CardSet hand, final int first, final int second, final int leadSize,
+            final int leadWeight, final boolean firstRound) {
+        final int numPlayed = second < 0 ? 1 : 2;
+        final boolean pair = first == second;
+
+        if (pair ? hand.count(first) < 2 : !hand.contains(first) || second >= 0 && !hand.contains(second))
+            return Violation.NOT_IN_HAND;
+
+        if (leadSize == 0) {
+            if (firstRound && (first != OPENER || second >= 0 && second != OPENER))
+                return Violation.ILLEGAL_FIRST_LEAD;
+            if (numPlayed == 2 && !pair)
+                return Violation.ILLEGAL_DOUBLE_LEAD;
+            return Violation.NONE;
+        }
+
+        if (numPlayed != leadSize)
+            return Violation.CARD_NUM_MISMATCH;
+
+        final int leadSuit = CardSet.suitOf(leadWeight);
+        final boolean discard = CardSet.suitOf(first) != leadSuit
+                || second >= 0 && CardSet.suitOf(second) != leadSuit;
+        if (!discard && (numPlayed == 1 || pair))
+            return Violation.NONE;
+
+        // Cards left in hand after the play
+        long rest = hand.first();
+        long restPairs = hand.second();
+        for (int i = 0; i < numPlayed; i++) {
+            final long bit = CardSet.bit(i == 0 ? first : second);
+            if ((restPairs & bit) != 0)
+                restPairs &= ~bit;
+            else
+                rest &= ~bit;
+        }
+
+        final long played = CardSet.bit(first) | (second < 0 ? 0 : CardSet.bit(second));
+        if (firstRound && (played & FIRST_ROUND_BANNED) != 0 && (rest & ~FIRST_ROUND_BANNED) != 0)
+            return Violation.BANNED_FIRST_ROUND_FOLLOW;
+
+        if (discard && (rest & CardSet.suitMask(leadSuit)) != 0)
+            return Violation.ILLEGAL_DISCARD;
+
+        if (numPlayed == 2 && hand.hasPairInSuit(leadSuit))
+            return Violation.ILLEGAL_PAIR_FOLLOW;
+
+        return Violation.NONE;
+    }
+
+    /**
+     * Lists every legal play of a hand.
+     *
+     * @param hand       Cards held by the player
+     * @param lead       Cards led in this round, or an empty list if the player
+     *                   leads
+     * @param firstRound {@code true} if this is the first round of the frame
+     * @return the legal plays, each of one or two cards
+     */
+    public static ArrayList<List<Card>> legalPlays(final CardSet hand, final List<Card> lead,
+            final boolean firstRound) {
+        final ArrayList<List<Card>> plays = new ArrayList<>();
+        final int leadSize = lead.size();
+        final int leadWeight = leadSize == 0 ? -1 : lead.get(0).weight();
+
+        for (long bits = hand.first(); bits != 0; bits &= bits - 1) {
+            final int first = Long.numberOfTrailingZeros(bits);
+            final Card card = Card.fromWeight(first);
+
+            if (leadSize < 2 && checkPlay(hand, first, -1, leadSize, leadWeight, firstRound) == Violation.NONE)
+                plays.add(List.of(card));
+            if (leadSize == 1)
+                continue;
+
+            if (checkPlay(hand, first, first, leadSize, leadWeight, firstRound) == Violation.NONE)
+                plays.add(List.of(card, card));
+            if (leadSize == 0)
+                continue;
+
+            for (long others = bits & bits - 1; others != 0; others &= others - 1) {
+                final int second = Long.numberOfTrailingZeros(others);
+                if (checkPlay(hand, first, second, leadSize, leadWeight, firstRound) == Violation.NONE)
+                    plays.add(List.of(card, Card.fromWeight(second)));
+            }
+        }
+        return plays;
+    }
+
+    /**
+     * Checks the cards a player gives away in trading.
+     *
+     * @param hand     Cards held by the player
+     * @param traded   Cards given away
+     * @param numCards Number of cards to give away
+     * @return the broken rule, or {@link Violation#NONE} if the trade is legal
+     */
+    public static Violation checkTrade(final CardSet hand, final List<Card> traded, final int numCards) {
+        if (traded.size() != numCards)
+            return Violation.TRADE_NUM_MISMATCH;
+
+        return holdsAll(hand, traded) ? Violation.NONE : Violation.NOT_IN_HAND;
+    }
+
+    /**
+     * Checks the cards a player shows.
+     *
+     * @param hand  Cards held by the player
+     * @param shown Cards shown, possibly none
+     * @return the broken rule, or {@link Violation#NONE} if the show is legal
+     */
+    public static Violation checkShow(final CardSet hand, final List<Card> shown) {
+        for (final Card card : shown) {
+            if ((CardSet.bit(card.weight()) & EXPOSABLES) == 0)
+                return Violation.ILLEGAL_SHOWING;
+        }
+        return holdsAll(hand, shown) ? Violation.NONE : Violation.NOT_IN_HAND;
+    }
+
+    private static boolean holdsAll(final CardSet hand, final List<Card> cards) {
+        final CardSet rest = new CardSet(hand);
+        for (final Card card : cards) {
+            if (!rest.remove(card))
+                return false;
+        }
+        return true;
+    }
+}
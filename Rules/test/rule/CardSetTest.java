@@ -0,0 +1,76 @@
+package rule;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the bit sets of cards.
+ *
+ * @author Weizhao Tang
+ */
+class CardSetTest {
+    private static final int QS = Card.of(Card.PIG).weight();
+    private static final int JD = Card.of(Card.SHEEP).weight();
+    private static final int AH = Card.of(Card.ACEH).weight();
+
+    @Test
+    void countsUpToTwoCopies() {
+        final CardSet set = new CardSet();
+        assertTrue(set.isEmpty());
+        set.add(QS);
+        set.add(QS);
+        set.add(JD);
+        assertEquals(3, set.size());
+        assertEquals(2, set.count(QS));
+        assertEquals(1, set.count(JD));
+        assertEquals(0, set.count(AH));
+        assertEquals(CardSet.bit(QS), set.pairs());
+        assertThrows(IllegalStateException.class, () -> set.add(QS));
+
+        assertTrue(set.remove(QS));
+        assertEquals(1, set.count(QS));
+        assertEquals(0, set.pairs());
+        assertTrue(set.remove(QS));
+        assertFalse(set.contains(QS));
+        assertFalse(set.remove(QS));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    void groupsCardsBySuit() {
+        final CardSet set = new CardSet();
+        set.add(QS);
+        set.add(QS);
+        set.add(AH);
+        final int spades = CardSet.suitOf(QS), hearts = CardSet.suitOf(AH), diamonds = CardSet.suitOf(JD);
+        assertEquals(2, set.countInSuit(spades));
+        assertEquals(1, set.countInSuit(hearts));
+        assertTrue(set.hasSuit(hearts));
+        assertFalse(set.hasSuit(diamonds));
+        assertTrue(set.hasPairInSuit(spades));
+        assertFalse(set.hasPairInSuit(hearts));
+        assertEquals(Card.Rank.QUEEN.ordinal(), CardSet.rankOf(QS));
+    }
+
+    @Test
+    void addsWholeSets() {
+        final CardSet set = new CardSet();
+        set.add(QS);
+        set.add(JD);
+        final CardSet other = new CardSet();
+        other.add(QS);
+        other.add(AH);
+
+        final CardSet sum = new CardSet(set);
+        sum.addAll(other);
+        assertEquals(4, sum.size());
+        assertEquals(2, sum.count(QS));
+        assertEquals(1, sum.count(JD));
+        assertEquals(1, sum.count(AH));
+        assertEquals(2, set.size(), "the copy is independent");
+
+        assertThrows(IllegalStateException.class, () -> sum.addAll(other));
+        assertEquals(new CardSet(sum.first(), sum.second()), sum);
+    }
+}
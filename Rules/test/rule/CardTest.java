@@ -0,0 +1,81 @@
+package rule;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the cards and the winners of tricks.
+ *
+ * @author Weizhao Tang
+ */
+class CardTest {
+    private static ArrayList<ArrayList<Card>> trick(final String... plays) {
+        final ArrayList<ArrayList<Card>> trick = new ArrayList<>();
+        for (final String play : plays) {
+            final ArrayList<Card> cards = new ArrayList<>();
+            for (final String alias : play.split(" "))
+                cards.add(Card.of(alias));
+            trick.add(cards);
+        }
+        return trick;
+    }
+
+    @Test
+    void highestOfTheLeadSuitWinsASingleRound() {
+        assertEquals(2, Card.roundResult(trick("5C", "9C", "KC", "AD"), 0));
+        assertEquals(0, Card.roundResult(trick("5C", "AD", "AS", "AH"), 0));
+        // Winners are counted from the leader
+        assertEquals(3, Card.roundResult(trick("5C", "9C", "KC", "AD"), 1));
+        assertEquals(1, Card.roundResult(trick("KC", "9C", "5C", "AD"), 1));
+    }
+
+    @Test
+    void pairsWinPairRounds() {
+        assertEquals(1, Card.roundResult(trick("5D 5D", "9D 9D", "KD QD", "AD 2C"), 0));
+        assertEquals(0, Card.roundResult(trick("5D 5D", "9D KD", "AS AS", "AD 2D"), 0));
+        assertEquals(0, Card.roundResult(trick("TS TS", "9S 9S", "AH AH", "AD AD"), 0));
+        assertEquals(1, Card.roundResult(trick("TS TS", "9S 9S", "JS JS", "AD AD"), 3));
+    }
+
+    @Test
+    void weightsGiveTheSameWinners() {
+        final ArrayList<ArrayList<Card>> trick = trick("5D 5D", "9D 9D", "KD QD", "AD 2C");
+        final int[] weights = new int[8];
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 2; j++)
+                weights[2 * i + j] = trick.get(i).get(j).weight();
+        }
+        for (int leader = 0; leader < 4; leader++)
+            assertEquals(Card.roundResult(trick, leader), Card.roundResult(weights, 4, 2, leader));
+    }
+
+    @Test
+    void upgradesReturnOtherCards() {
+        final Card pig = Card.of(Card.PIG);
+        final Card exposed = pig.upgrade(1);
+        assertEquals(0, pig.exposed());
+        assertEquals(1, exposed.exposed());
+        assertSame(Card.of("QSx"), exposed);
+        assertSame(Card.fromWeight(pig.weight(), 2), exposed.upgrade(1));
+        assertEquals(2 * pig.value(), exposed.value());
+        assertTrue(exposed.upgrade(1).fullyUpgraded());
+        assertThrows(RuntimeException.class, () -> exposed.upgrade(2));
+
+        final Card own = new Card("QSx");
+        assertEquals(1, own.exposed());
+        assertEquals("QSx", own.fullAlias());
+        assertNotSame(exposed, own);
+    }
+
+    @Test
+    void namesTheExposerOfEachScoredCard() {
+        assertEquals(Card.ACEH, Card.of("5H").exposerAlias());
+        assertEquals(Card.PIG, Card.of(Card.PIG).exposerAlias());
+        assertEquals("--", Card.of("5S").exposerAlias());
+        assertTrue(Card.isPair(List.of(Card.of("5S"), Card.of("5S"))));
+    }
+}
@@ -0,0 +1,141 @@
+package rule;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import rule.Rules.Violation;
+
+/**
+ * Tests of the legal moves.
+ *
+ * @author Weizhao Tang
+ */
+class RulesTest {
+    private static CardSet hand(final String... aliases) {
+        final CardSet hand = new CardSet();
+        for (final String alias : aliases)
+            hand.add(Card.of(alias));
+        return hand;
+    }
+
+    private static List<Card> cards(final String... aliases) {
+        final ArrayList<Card> cards = new ArrayList<>();
+        for (final String alias : aliases)
+            cards.add(Card.of(alias));
+        return cards;
+    }
+
+    private static Violation check(final CardSet hand, final List<Card> play, final List<Card> lead) {
+        return Rules.checkPlay(hand, play, lead, false);
+    }
+
+    @Test
+    void firstLeadIsTheOpener() {
+        final CardSet hand = hand("2C", "2C", "3C");
+        assertEquals(Violation.NONE, Rules.checkPlay(hand, cards("2C"), List.of(), true));
+        assertEquals(Violation.NONE, Rules.checkPlay(hand, cards("2C", "2C"), List.of(), true));
+        assertEquals(Violation.ILLEGAL_FIRST_LEAD, Rules.checkPlay(hand, cards("3C"), List.of(), true));
+        assertEquals(Violation.NONE, Rules.checkPlay(hand, cards("3C"), List.of(), false));
+    }
+
+    @Test
+    void onlyPairsLeadTwoCards() {
+        final CardSet hand = hand("5S", "5S", "6S");
+        assertEquals(Violation.NONE, check(hand, cards("5S", "5S"), List.of()));
+        assertEquals(Violation.ILLEGAL_DOUBLE_LEAD, check(hand, cards("5S", "6S"), List.of()));
+        assertEquals(Violation.NOT_IN_HAND, check(hand, cards("6S", "6S"), List.of()));
+        assertEquals(Violation.NOT_IN_HAND, check(hand, cards("7S"), List.of()));
+        assertEquals(Violation.CARD_NUM_EXCESS, check(hand, cards("5S", "5S", "6S"), List.of()));
+        assertEquals(Violation.CARD_NUM_EXCESS, check(hand, List.of(), List.of()));
+    }
+
+    @Test
+    void followsTheLeadSuit() {
+        final CardSet hand = hand("9C", "KD");
+        assertEquals(Violation.NONE, check(hand, cards("9C"), cards("5C")));
+        assertEquals(Violation.ILLEGAL_DISCARD, check(hand, cards("KD"), cards("5C")));
+        assertEquals(Violation.NONE, check(hand, cards("KD"), cards("5S")));
+        assertEquals(Violation.CARD_NUM_MISMATCH, check(hand, cards("9C"), cards("5C", "5C")));
+    }
+
+    @Test
+    void followsAPairWithAPair() {
+        final CardSet hand = hand("9C", "9C", "TC", "KD");
+        assertEquals(Violation.NONE, check(hand, cards("9C", "9C"), cards("5C", "5C")));
+        assertEquals(Violation.ILLEGAL_PAIR_FOLLOW, check(hand, cards("9C", "TC"), cards("5C", "5C")));
+
+        final CardSet noPair = hand("9C", "TC", "KD");
+        assertEquals(Violation.NONE, check(noPair, cards("9C", "TC"), cards("5C", "5C")));
+        assertEquals(Violation.ILLEGAL_DISCARD, check(noPair, cards("9C", "KD"), cards("5C", "5C")));
+
+        final CardSet oneClub = hand("9C", "KD", "3D");
+        assertEquals(Violation.NONE, check(oneClub, cards("9C", "KD"), cards("5C", "5C")));
+        assertEquals(Violation.ILLEGAL_DISCARD, check(oneClub, cards("KD", "3D"), cards("5C", "5C")));
+    }
+
+    @Test
+    void keepsScoredCardsOutOfTheFirstRound() {
+        assertEquals(Violation.BANNED_FIRST_ROUND_FOLLOW,
+                Rules.checkPlay(hand("QS", "3D"), cards("QS"), cards("2C"), true));
+        assertEquals(Violation.NONE, Rules.checkPlay(hand("QS", "3D"), cards("3D"), cards("2C"), true));
+        assertEquals(Violation.NONE, Rules.checkPlay(hand("QS", "AH"), cards("QS"), cards("2C"), true));
+        assertEquals(Violation.NONE, Rules.checkPlay(hand("QS", "3D"), cards("QS"), cards("2C"), false));
+    }
+
+    @Test
+    void checksTradesAndShows() {
+        final CardSet hand = hand("QS", "JD", "3D");
+        assertEquals(Violation.NONE, Rules.checkTrade(hand, cards("QS", "3D"), 2));
+        assertEquals(Violation.TRADE_NUM_MISMATCH, Rules.checkTrade(hand, cards("QS"), 2));
+        assertEquals(Violation.NOT_IN_HAND, Rules.checkTrade(hand, cards("QS", "QS"), 2));
+
+        assertEquals(Violation.NONE, Rules.checkShow(hand, cards("QS", "JD")));
+        assertEquals(Violation.NONE, Rules.checkShow(hand, List.of()));
+        assertEquals(Violation.ILLEGAL_SHOWING, Rules.checkShow(hand, cards("3D")));
+        assertEquals(Violation.NOT_IN_HAND, Rules.checkShow(hand, cards("AH")));
+    }
+
+    /**
+     * Every play that {@link Rules#checkPlay} accepts is listed by
+     * {@link Rules#legalPlays}, and nothing else.
+     */
+    @Test
+    void listsExactlyTheLegalPlays() {
+        final SplittableRandom random = new SplittableRandom(1);
+        for (int n = 0; n < 2000; n++) {
+            final CardSet hand = new CardSet();
+            for (int i = random.nextInt(1, 27); i > 0; i--) {
+                final int weight = random.nextInt(CardSet.NUM_KINDS);
+                if (hand.count(weight) < 2)
+                    hand.add(weight);
+            }
+            final int leadWeight = random.nextInt(CardSet.NUM_KINDS);
+            final Card leadCard = Card.fromWeight(leadWeight);
+            final int leadSize = random.nextInt(3);
+            final List<Card> lead = leadSize == 0 ? List.of() : leadSize == 1 ? List.of(leadCard)
+                    : List.of(leadCard, leadCard);
+            final boolean firstRound = random.nextInt(4) == 0;
+
+            final ArrayList<List<Card>> expected = new ArrayList<>();
+            for (int first = 0; first < CardSet.NUM_KINDS; first++) {
+                for (int second = -1; second < CardSet.NUM_KINDS; second++) {
+                    if (second >= 0 && second < first)
+                        continue;
+                    final List<Card> play = second < 0 ? List.of(Card.fromWeight(first))
+                            : List.of(Card.fromWeight(first), Card.fromWeight(second));
+                    if (Rules.checkPlay(hand, play, lead, firstRound) == Violation.NONE)
+                        expected.add(play);
+                }
+            }
+            final ArrayList<List<Card>> listed = Rules.legalPlays(hand, lead, firstRound);
+            assertEquals(expected.size(), listed.size(), "plays of " + hand + " after " + lead);
+            assertEquals(new HashSet<>(expected), new HashSet<>(listed));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+/**
+ * A {@code Connection} carries messages from the server to one client.
+ *
+ * @author Weizhao Tang
+ */
+public interface Connection {
+    /**
+     * Sends one line of message to the client.
+     *
+     * @param line Message without line terminator
+     */
+    void send(String line);
+
+    /**
+     * Closes the connection from any thread. Messages sent after it are
+     * dropped.
+     */
+    default void close() {
+    }
+}
@@ -0,0 +1,570 @@
+import java.util.*;
+
+import rule.Asset;
+import rule.Card;
+import rule.CardSet;
+import rule.Rules;
+
+/**
+ * A {@code Deal} holds the whole state of one frame played without a table:
+ * hands, trading, exposure, tricks and assets. It checks every move with
+ * {@link Rules} and resolves tricks with {@link Card#roundResult}, but knows
+ * nothing of players, messages or delays. Simulators can therefore step
+ * through a frame as fast as the rules allow.
+ *
+ * @author Weizhao Tang
+ */
+public class Deal {
+    public static final int NUM_SEATS = 4;
+
+    private static final int[] exposers = new int[CardSet.NUM_KINDS]; // card whose exposure upgrades each card
+
+    private final int numDecks;
+    private final int tradeGap;
+    private final CardSet[] hands = new CardSet[NUM_SEATS];
+    private final CardSet[] passed = new CardSet[NUM_SEATS]; // cards each seat gave away in trading
+    private final CardSet[] shown = new CardSet[NUM_SEATS];
+    private final int[] exposedCopies = new int[CardSet.NUM_KINDS];
+    private final Asset[] assets = new Asset[NUM_SEATS];
+    private final CardSet[] won = new CardSet[NUM_SEATS]; // scored cards in the assets of each seat
+    private final CardSet played = new CardSet();
+    private final CardSet[] playedBy = new CardSet[NUM_SEATS];
+    private final int[] voids = new int[NUM_SEATS]; // one bit for each suit a seat has run out of
+
+    private Stage stage;
+    private final boolean[] answered = new boolean[NUM_SEATS];
+    private int numAnswered;
+
+    private int leader = -1;
+    private int turned;
+    private boolean firstRound = true;
+    private final ArrayList<List<Card>> trick = new ArrayList<>(NUM_SEATS);
+
+    static {
+        for (int weight = 0; weight < CardSet.NUM_KINDS; weight++) {
+            final Card card = Card.fromWeight(weight);
+            exposers[weight] = card.isScored() ? Card.of(card.exposerAlias()).weight() : -1;
+        }
+    }
+
+    /**
+     * Stages of a deal.
+     */
+    public enum Stage {
+        TRADING, SHOWING, OPENING, PLAYING, OVER,
+    }
+
+    /**
+     * Constructor for Deal object.
+     *
+     * @param numDecks Number of decks in the shoe
+     * @param tradeGap Distance between a seat and the seat it passes cards to, or
+     *                 0 if no cards are passed
+     * @param hands    Cards dealt to each seat
+     */
+    public Deal(final int numDecks, final int tradeGap, final CardSet[] hands) {
+        this.numDecks = numDecks;
+        this.tradeGap = tradeGap;
+        for (int i = 0; i < NUM_SEATS; i++) {
+            this.hands[i] = new CardSet(hands[i]);
+            passed[i] = new CardSet();
+            shown[i] = new CardSet();
+            assets[i] = new Asset();
+            won[i] = new CardSet();
+            playedBy[i] = new CardSet();
+        }
+        stage = tradeGap != 0 ? Stage.TRADING : Stage.SHOWING;
+    }
+
+    /**
+     * Copies a deal, so that the copy can be played on without touching the
+     * original.
+     *
+     * @param other Deal to copy
+     */
+    public Deal(final Deal other) {
+        numDecks = other.numDecks;
+        tradeGap = other.tradeGap;
+        for (int i = 0; i < NUM_SEATS; i++) {
+            hands[i] = new CardSet(other.hands[i]);
+            passed[i] = new CardSet(other.passed[i]);
+            shown[i] = new CardSet(other.shown[i]);
+            assets[i] = new Asset();
+            assets[i].cards.addAll(other.assets[i].cards);
+            won[i] = new CardSet(other.won[i]);
+            playedBy[i] = new CardSet(other.playedBy[i]);
+            voids[i] = other.voids[i];
+            answered[i] = other.answered[i];
+        }
+        System.arraycopy(other.exposedCopies, 0, exposedCopies, 0, exposedCopies.length);
+        played.set(other.played);
+        stage = other.stage;
+        numAnswered = other.numAnswered;
+        leader = other.leader;
+        turned = other.turned;
+        firstRound = other.firstRound;
+        trick.addAll(other.trick);
+    }
+
+    /**
+     * Shuffles a shoe and deals it out the way a table does.
+     *
+     * @param numDecks Number of decks in the shoe
+     * @param frameNum Number of frames played before, which decides the trade gap
+     * @param random   Random generator
+     * @return the new deal
+     */
+    public static Deal deal(final int numDecks, final int frameNum, final SplittableRandom random) {
+        final Shoe shoe = new Shoe(numDecks);
+        shoe.shuffle(random);
+
+        final CardSet[] hands = new CardSet[NUM_SEATS];
+        for (int i = 0; i < NUM_SEATS; i++)
+            hands[i] = new CardSet();
+
+        Card card;
+        int seat = random.nextInt(NUM_SEATS);
+        while ((card = shoe.dealCard()) != null) {
+            hands[seat].add(card);
+            seat = (seat + 1) % NUM_SEATS;
+        }
+        return new Deal(numDecks, Table.tradeOrder[Math.floorMod(frameNum, Table.tradeOrder.length)], hands);
+    }
+
+    public Stage stage() {
+        return stage;
+    }
+
+    public int numDecks() {
+        return numDecks;
+    }
+
+    public int tradeGap() {
+        return tradeGap;
+    }
+
+    /**
+     * Returns the seat to play next.
+     *
+     * @return the seat in turn, or -1 if no one is to play
+     */
+    public int turn() {
+        return stage == Stage.PLAYING ? (leader + turned) % NUM_SEATS : -1;
+    }
+
+    /**
+     * Gives away the cards a seat chose to pass. Passed cards reach their targets
+     * once every seat has passed.
+     *
+     * @param seat  Seat passing the cards
+     * @param cards Cards to pass
+     * @return the broken rule, or {@link Rules.Violation#NONE} if the cards are
+     *         passed
+     */
+    public Rules.Violation trade(final int seat, final List<Card> cards) {
+        expect(Stage.TRADING, seat);
+        final Rules.Violation violation = Rules.checkTrade(hands[seat], cards, Table.tradeSize);
+        if (violation != Rules.Violation.NONE)
+            return violation;
+
+        for (final Card card : cards) {
+            hands[seat].remove(card);
+            passed[seat].add(card);
+        }
+        if (answer(seat)) {
+            for (int i = 0; i < NUM_SEATS; i++)
+                hands[(i + tradeGap) % NUM_SEATS].addAll(passed[i]);
+            enter(Stage.SHOWING);
+        }
+        return Rules.Violation.NONE;
+    }
+
+    /**
+     * Exposes the cards a seat chose to show. Every exposed copy upgrades the
+     * cards it stands for by one level.
+     *
+     * @param seat  Seat showing the cards
+     * @param cards Cards to show, possibly none
+     * @return the broken rule, or {@link Rules.Violation#NONE} if the cards are
+     *         shown
+     */
+    public Rules.Violation show(final int seat, final List<Card> cards) {
+        expect(Stage.SHOWING, seat);
+        final Rules.Violation violation = Rules.checkShow(hands[seat], cards);
+        if (violation != Rules.Violation.NONE)
+            return violation;
+
+        for (final Card card : cards) {
+            shown[seat].add(card);
+            exposedCopies[card.weight()]++;
+        }
+        if (answer(seat))
+            enter(Stage.OPENING);
+        return Rules.Violation.NONE;
+    }
+
+    /**
+     * Picks the first leader among the holders of the opener, weighted by the
+     * number of openers they hold, like {@code Table.pickLeader}.
+     *
+     * @param random Random generator
+     */
+    public void openPlay(final SplittableRandom random) {
+        if (stage != Stage.OPENING)
+            throw new IllegalStateException("Opening play under stage " + stage);
+
+        final int opener = Card.of(Card.OPENER).weight();
+        int numOpeners = 0;
+        for (final CardSet hand : hands)
+            numOpeners += hand.count(opener);
+
+        int randi = random.nextInt(numOpeners);
+        for (leader = 0; (randi -= hands[leader].count(opener)) >= 0; leader++)
+            ;
+        stage = Stage.PLAYING;
+    }
+
+    /**
+     * Opens play with a given first leader, such as one recorded in a
+     * {@link Journal}.
+     *
+     * @param firstLeader Seat that leads the first round
+     */
+    public void openPlay(final int firstLeader) {
+        if (stage != Stage.OPENING)
+            throw new IllegalStateException("Opening play under stage " + stage);
+
+        leader = firstLeader;
+        stage = Stage.PLAYING;
+    }
+
+    /**
+     * Plays cards for the seat in turn, and resolves the round once every seat
+     * has played.
+     *
+     * @param cards Cards to play
+     * @return the broken rule, or {@link Rules.Violation#NONE} if the cards are
+     *         played
+     */
+    public Rules.Violation play(final List<Card> cards) {
+        final int seat = turn();
+        if (seat < 0)
+            throw new IllegalStateException("Playing under stage " + stage);
+
+        final List<Card> lead = lead();
+        final Rules.Violation violation = Rules.checkPlay(hands[seat], cards, lead, firstRound);
+        if (violation != Rules.Violation.NONE)
+            return violation;
+
+        final ArrayList<Card> upgraded = new ArrayList<>(cards.size());
+        for (final Card card : cards) {
+            hands[seat].remove(card);
+            played.add(card);
+            playedBy[seat].add(card);
+            upgraded.add(Card.fromWeight(card.weight(), level(card.weight())));
+        }
+        if (!lead.isEmpty()) {
+            final int leadSuit = CardSet.suitOf(lead.get(0).weight());
+            for (final Card card : cards) {
+                if (CardSet.suitOf(card.weight()) != leadSuit)
+                    voids[seat] |= 1 << leadSuit;
+            }
+        }
+
+        trick.add(upgraded);
+        if (++turned == NUM_SEATS)
+            finishRound();
+        return Rules.Violation.NONE;
+    }
+
+    private void finishRound() {
+        final int roundSize = trick.get(0).size();
+        final int[] weights = new int[NUM_SEATS * roundSize];
+        for (int i = 0; i < NUM_SEATS; i++) {
+            for (int j = 0; j < roundSize; j++)
+                weights[i * roundSize + j] = trick.get(i).get(j).weight();
+        }
+
+        leader = Card.roundResult(weights, NUM_SEATS, roundSize, leader);
+        for (final List<Card> cards : trick) {
+            for (final Card card : cards) {
+                if (card.isScored()) {
+                    assets[leader].addAsset(card);
+                    won[leader].add(card.weight());
+                }
+            }
+        }
+        trick.clear();
+        turned = 0;
+        firstRound = false;
+        if (hands[leader].isEmpty())
+            stage = Stage.OVER;
+    }
+
+    /**
+     * Lists every legal play of the seat in turn.
+     *
+     * @return the legal plays, each of one or two cards
+     */
+    public ArrayList<List<Card>> legalPlays() {
+        return Rules.legalPlays(hands[turn()], lead(), firstRound);
+    }
+
+    /**
+     * Hashes everything a seat knows about the current state that matters for
+     * the rest of the deal: its hand, the cards played, the assets of each seat
+     * and the round in progress. Different move orders that end in the same
+     * state hash the same.
+     *
+     * @param seat Seat of the observer
+     * @return the hash of the state as seen by the seat
+     */
+    public long stateKey(final int seat) {
+        long key = mix(hands[seat].first()) ^ mix(hands[seat].second() + 1);
+        key = key * 31 + mix(played.first() + 2) ^ mix(played.second() + 3);
+        for (int i = 0; i < NUM_SEATS; i++)
+            key = key * 31 + mix(won[i].first() + 4 + i) ^ mix(won[i].second() + 8 + i);
+        key = key * 31 + leader * NUM_SEATS + turned;
+        for (final List<Card> cards : trick) {
+            for (final Card card : cards)
+                key = key * 67 + card.weight();
+        }
+        return mix(key);
+    }
+
+    private static long mix(long x) {
+        x = (x ^ (x >>> 33)) * 0xff51afd7ed558ccdL;
+        x = (x ^ (x >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return x ^ (x >>> 33);
+    }
+
+    /**
+     * Returns the scores of all seats, which are final once the deal is over.
+     *
+     * @return the score of each seat
+     */
+    public int[] scores() {
+        final int[] scores = new int[NUM_SEATS];
+        for (int i = 0; i < NUM_SEATS; i++)
+            scores[i] = assets[i].getScore(numDecks);
+        return scores;
+    }
+
+    private List<Card> lead() {
+        return trick.isEmpty() ? Collections.emptyList() : trick.get(0);
+    }
+
+    private int level(final int weight) {
+        return exposers[weight] < 0 ? 0 : Math.min(exposedCopies[exposers[weight]], Card.MAX_EXPOSED);
+    }
+
+    private void expect(final Stage expected, final int seat) {
+        if (stage != expected || answered[seat])
+            throw new IllegalStateException("Unexpected move from seat " + seat + " under stage " + stage);
+    }
+
+    private boolean answer(final int seat) {
+        answered[seat] = true;
+        return ++numAnswered == NUM_SEATS;
+    }
+
+    private void enter(final Stage nextStage) {
+        stage = nextStage;
+        numAnswered = 0;
+        Arrays.fill(answered, false);
+    }
+
+    /**
+     * Returns what one seat is allowed to know about the deal.
+     *
+     * @param seat Seat of the viewer
+     * @return the view of the seat
+     */
+    public View view(final int seat) {
+        return new View(seat);
+    }
+
+    /**
+     * A {@code View} shows a deal from one seat: its own hand, and everything
+     * that was public or passed through its hands.
+     */
+    public class View {
+        private final int seat;
+
+        private View(final int seat) {
+            this.seat = seat;
+        }
+
+        public int seat() {
+            return seat;
+        }
+
+        public int numDecks() {
+            return numDecks;
+        }
+
+        public int tradeGap() {
+            return tradeGap;
+        }
+
+        public boolean isFirstRound() {
+            return firstRound;
+        }
+
+        public CardSet hand() {
+            return new CardSet(hands[seat]);
+        }
+
+        /**
+         * Returns the cards played so far in this round, in playing order.
+         *
+         * @return the cards of each play
+         */
+        public List<List<Card>> trick() {
+            return Collections.unmodifiableList(trick);
+        }
+
+        public List<Card> lead() {
+            return Deal.this.lead();
+        }
+
+        public int leader() {
+            return leader;
+        }
+
+        public CardSet played() {
+            return new CardSet(played);
+        }
+
+        public CardSet passed() {
+            return new CardSet(passed[seat]);
+        }
+
+        public CardSet shown(final int otherSeat) {
+            return new CardSet(shown[otherSeat]);
+        }
+
+        public int numCards(final int otherSeat) {
+            return hands[otherSeat].size();
+        }
+
+        /**
+         * Tells if a seat is known to have run out of a suit, because it discarded
+         * while the suit was led.
+         *
+         * @param otherSeat Seat to ask about
+         * @param suit      Value of the suit, i.e. weight divided by 13
+         * @return {@code true} if the seat has no card of the suit
+         */
+        public boolean isVoid(final int otherSeat, final int suit) {
+            return (voids[otherSeat] & 1 << suit) != 0;
+        }
+
+        public List<Card> assets(final int otherSeat) {
+            return Collections.unmodifiableList(assets[otherSeat].cards);
+        }
+
+        public int level(final Card card) {
+            return Deal.this.level(card.weight());
+        }
+
+        public ArrayList<List<Card>> legalPlays() {
+            return Rules.legalPlays(hands[seat], lead(), firstRound);
+        }
+
+        public long stateKey() {
+            return Deal.this.stateKey(seat);
+        }
+
+        /**
+         * Samples a full deal that agrees with everything the seat knows. Other
+         * seats keep the cards they showed or were passed by this seat unless
+         * they played them, never get a suit they ran out of, and are dealt the
+         * remaining unseen cards at random.
+         *
+         * @param random Random generator
+         * @return a copy of the deal with the hidden hands resampled
+         */
+        public Deal sample(final SplittableRandom random) {
+            final Deal sample = new Deal(Deal.this);
+            final CardSet unseen = new CardSet();
+            for (int weight = 0; weight < CardSet.NUM_KINDS; weight++) {
+                for (int i = numDecks - hands[seat].count(weight) - played.count(weight); i > 0; i--)
+                    unseen.add(weight);
+            }
+
+            final int[] need = new int[NUM_SEATS];
+            for (int other = 0; other < NUM_SEATS; other++) {
+                if (other == seat)
+                    continue;
+
+                final CardSet hand = sample.hands[other];
+                hand.clear();
+                final boolean passedTo = tradeGap != 0 && (seat + tradeGap) % NUM_SEATS == other;
+                for (int weight = 0; weight < CardSet.NUM_KINDS; weight++) {
+                    final int known = Math.max(shown[other].count(weight), passedTo ? passed[seat].count(weight) : 0)
+                            - playedBy[other].count(weight);
+                    for (int i = 0; i < known && unseen.remove(weight); i++)
+                        hand.add(weight);
+                }
+                need[other] = hands[other].size() - hand.size();
+            }
+
+            final int[] cards = new int[unseen.size()];
+            int numCards = 0;
+            for (long bits = unseen.first(); bits != 0; bits &= bits - 1) {
+                final int weight = Long.numberOfTrailingZeros(bits);
+                for (int i = unseen.count(weight); i > 0; i--)
+                    cards[numCards++] = weight;
+            }
+            dealUnseen(sample, cards, need, random);
+            return sample;
+        }
+
+        /**
+         * Deals unseen cards to the hidden hands, avoiding suits a seat ran out
+         * of. A few shuffles are tried before the voids are ignored.
+         */
+        private void dealUnseen(final Deal sample, final int[] cards, final int[] need,
+                final SplittableRandom random) {
+            final CardSet[] dealt = new CardSet[NUM_SEATS];
+            for (int attempt = 0; attempt < 8; attempt++) {
+                final boolean respectVoids = attempt < 7;
+                for (int i = cards.length - 1; i > 0; i--) {
+                    final int j = random.nextInt(i + 1);
+                    final int card = cards[i];
+                    cards[i] = cards[j];
+                    cards[j] = card;
+                }
+
+                final int[] left = need.clone();
+                boolean complete = true;
+                for (int other = 0; other < NUM_SEATS; other++)
+                    dealt[other] = new CardSet();
+
+                for (final int card : cards) {
+                    int target = -1;
+                    for (int other = 0; other < NUM_SEATS; other++) {
+                        if (left[other] > 0 && (!respectVoids || (voids[other] & 1 << CardSet.suitOf(card)) == 0)
+                                && (target < 0 || left[other] > left[target]))
+                            target = other;
+                    }
+                    if (target < 0) {
+                        complete = false;
+                        break;
+                    }
+                    dealt[target].add(card);
+                    left[target]--;
+                }
+
+                if (complete) {
+                    for (int other = 0; other < NUM_SEATS; other++) {
+                        if (other != seat)
+                            sample.hands[other].addAll(dealt[other]);
+                    }
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import java.util.*;
+
+import rule.Card;
+import rule.CardSet;
+
+/**
+ * A {@code DuckStrategy} tries not to win tricks that carry penalties. It
+ * passes its most penalizing cards, leads low clean cards, plays just under the
+ * winning play when it can, and dumps penalties when it discards.
+ *
+ * @author Weizhao Tang
+ */
+public class DuckStrategy implements Strategy {
+    @Override
+    public List<Card> trade(final Deal.View view, final int numCards) {
+        final ArrayList<Card> cards = new ArrayList<>();
+        final CardSet hand = view.hand();
+        for (long bits = hand.first(); bits != 0; bits &= bits - 1) {
+            final int weight = Long.numberOfTrailingZeros(bits);
+            for (int i = hand.count(weight); i > 0; i--)
+                cards.add(Card.fromWeight(weight));
+        }
+
+        cards.sort(Comparator.comparingInt(DuckStrategy::danger).reversed());
+        return new ArrayList<>(cards.subList(0, numCards));
+    }
+
+    @Override
+    public List<Card> show(final Deal.View view) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<Card> play(final Deal.View view) {
+        List<Card> best = null;
+        int bestScore = Integer.MIN_VALUE;
+
+        for (final List<Card> play : view.legalPlays()) {
+            final int score = evaluate(view, play);
+            if (score > bestScore) {
+                best = play;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private static int evaluate(final Deal.View view, final List<Card> play) {
+        final List<List<Card>> trick = view.trick();
+        final int turned = trick.size();
+
+        int topRank = 0, dumped = 0;
+        for (final Card card : play) {
+            topRank = Math.max(topRank, CardSet.rankOf(card.weight()));
+            dumped += penalty(Card.fromWeight(card.weight(), view.level(card)));
+        }
+
+        if (turned == 0)
+            return -topRank - (dumped != 0 ? 100 : 0) + (play.size() == 2 ? 5 : 0);
+
+        final int roundSize = play.size();
+        final int[] weights = new int[(turned + 1) * roundSize];
+        int trickPenalty = 0;
+        for (int i = 0; i < turned; i++) {
+            for (int j = 0; j < roundSize; j++) {
+                final Card card = trick.get(i).get(j);
+                weights[i * roundSize + j] = card.weight();
+                trickPenalty += penalty(card);
+            }
+        }
+        for (int j = 0; j < roundSize; j++)
+            weights[turned * roundSize + j] = play.get(j).weight();
+
+        final boolean wins = Card.roundResult(weights, turned + 1, roundSize, 0) == turned;
+        if (!wins)
+            return 10000 + 10 * dumped + topRank;
+
+        // Winning anyway: the last player gets rid of a high card, the others stay low
+        return -10 * (trickPenalty + dumped) + (turned == Deal.NUM_SEATS - 1 ? topRank : -topRank);
+    }
+
+    private static int penalty(final Card card) {
+        return card.isTransformer() ? 0 : -card.value();
+    }
+
+    private static int danger(final Card card) {
+        return 16 * penalty(card) + CardSet.rankOf(card.weight());
+    }
+}
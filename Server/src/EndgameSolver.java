@@ -0,0 +1,651 @@
+import java.util.*;
+
+import rule.Asset;
+import rule.Card;
+import rule.CardSet;
+import rule.Rules;
+
+/**
+ * An {@code EndgameSolver} plays out the rest of a deal exactly with every hand
+ * known. The seat in turn maximizes its own final score and the other seats are
+ * assumed to play against it, which turns the four-player game into a
+ * two-player one that alpha-beta can prune. Tricks are resolved by
+ * {@link Card#roundResult} and assets scored by {@link Asset#getScore}, so pair
+ * leads, heart sweeps and transformers count just as in a real frame.
+ * <p>
+ * States are remembered in a memo table keyed by a Zobrist hash of the hands,
+ * the round in progress, the leader and what the seat won since the search
+ * began, where hearts of equal value count as the same card. Cards of one suit
+ * that are next to each other among the cards left, held by one seat and scored
+ * alike, are searched only once, and once no scored card is left the score is
+ * final.
+ * <p>
+ * The score is found by MTD(f), a series of searches with a null window that
+ * close in on it from the score of the cards already won, and the memo keeps
+ * a lower and an upper bound of each state. Between rounds, a state is cut
+ * off when the scored cards left cannot move the score past the window.
+ *
+ * @author Weizhao Tang
+ */
+public class EndgameSolver {
+    public static final int DEFAULT_MEMO_BITS = 18;
+
+    private static final int NUM_SEATS = Deal.NUM_SEATS;
+    private static final int MAX_CARDS = 2 * CardSet.NUM_KINDS / NUM_SEATS; // cards in a hand of two decks
+    private static final int MAX_PLAYS = MAX_CARDS * (MAX_CARDS + 1) / 2;
+    private static final int MAX_DEPTH = 2 * CardSet.NUM_KINDS + NUM_SEATS;
+
+    private static final long SCORED;
+
+    // Zobrist keys of holding one or two copies of a card, of having won some
+    // cards of a scoring class and of a card at a position of the round in
+    // progress
+    private static final long[][] handKeys = new long[NUM_SEATS * CardSet.NUM_KINDS][3];
+    private static final long[][] wonKeys = new long[CardSet.NUM_KINDS][2 * 13 + 1];
+    private static final long[][] trickKeys = new long[2 * NUM_SEATS][CardSet.NUM_KINDS];
+    private static final long[] leaderKeys = new long[NUM_SEATS];
+
+    static {
+        long scored = 0;
+        for (int weight = 0; weight < CardSet.NUM_KINDS; weight++) {
+            if (Card.fromWeight(weight).isScored())
+                scored |= CardSet.bit(weight);
+        }
+        SCORED = scored;
+
+        final SplittableRandom random = new SplittableRandom(0x5eed);
+        for (final long[] keys : handKeys) {
+            keys[1] = random.nextLong();
+            keys[2] = random.nextLong();
+        }
+        for (final long[] keys : wonKeys) {
+            for (int count = 1; count < keys.length; count++)
+                keys[count] = random.nextLong();
+        }
+        for (final long[] keys : trickKeys) {
+            for (int weight = 0; weight < keys.length; weight++)
+                keys[weight] = random.nextLong();
+        }
+        for (int i = 0; i < NUM_SEATS; i++)
+            leaderKeys[i] = random.nextLong();
+    }
+
+    private static final int SCORE_CACHE_SIZE = 1 << 12;
+    private static final int STAMP_SHIFT = 16;
+    private static final int STAMP_MASK = (1 << 31 - STAMP_SHIFT) - 1;
+
+    // Memo entries: the key, the lower and upper bounds of the value packed in
+    // a long, and the stamp and best play packed in an int. Entries stamped by
+    // an earlier solve are misses, so that the table is only cleared when the
+    // stamps wrap around.
+    private final long[] memoKeys;
+    private final long[] memoBounds;
+    private final int[] memoMoves;
+    private final int memoMask;
+    private int stamp = 0;
+    private final long[] scoreKeys = new long[SCORE_CACHE_SIZE];
+    private final int[] scoreValues = new int[SCORE_CACHE_SIZE];
+
+    // State of the search, changed by make and restored by unmake
+    private int numDecks;
+    private int root;
+    private final Card[] cards = new Card[CardSet.NUM_KINDS]; // cards with the exposure of this deal
+    private final CardSet[] hands = new CardSet[NUM_SEATS];
+    private final CardSet live = new CardSet(); // cards in hands or in the round in progress
+    private final int[] classes = new int[CardSet.NUM_KINDS]; // lowest card that scores like each card
+    private final int[] plays = new int[CardSet.NUM_KINDS]; // lowest card that plays like each card
+    private final int[] won = new int[CardSet.NUM_KINDS]; // cards of each class won since the search began
+    private final ArrayList<Card> assets = new ArrayList<>();
+    private final int[][] tricks = new int[MAX_DEPTH / NUM_SEATS + 1][2 * NUM_SEATS]; // cards of each round
+    private int numTricks;
+    private int[] trick; // cards of the round in progress
+    private int leader, turned, roundSize;
+    private boolean firstRound;
+    private long hash;
+    private long wonHash; // part of the hash that covers the cards won
+    private long nodes;
+    private int lowBound, highBound; // bounds of the final score, set by bound
+    private int bestRootMove;
+
+    // Play lists and undo records of each depth
+    private final int[][] moves = new int[MAX_DEPTH][MAX_PLAYS];
+    private final long[] orderKeys = new long[MAX_PLAYS];
+    private final int[][] history = new int[NUM_SEATS][move(CardSet.NUM_KINDS - 1, CardSet.NUM_KINDS - 1) + 1];
+    private final int[] undoLeaders = new int[MAX_DEPTH];
+    private final int[] undoRoundSizes = new int[MAX_DEPTH];
+    private final int[] undoNumWon = new int[MAX_DEPTH];
+    private final boolean[] undoFirstRounds = new boolean[MAX_DEPTH];
+
+    /**
+     * Constructor for EndgameSolver object.
+     *
+     * @param memoBits Base 2 logarithm of the number of memo entries
+     */
+    public EndgameSolver(final int memoBits) {
+        memoKeys = new long[1 << memoBits];
+        memoBounds = new long[1 << memoBits];
+        memoMoves = new int[1 << memoBits];
+        memoMask = (1 << memoBits) - 1;
+        for (int i = 0; i < NUM_SEATS; i++)
+            hands[i] = new CardSet();
+    }
+
+    public EndgameSolver() {
+        this(DEFAULT_MEMO_BITS);
+    }
+
+    /**
+     * Best play found for a deal, with its score and the effort it took.
+     */
+    public static class Solution {
+        private final List<Card> play;
+        private final int score;
+        private final long nodes;
+
+        private Solution(final List<Card> play, final int score, final long nodes) {
+            this.play = play;
+            this.score = score;
+            this.nodes = nodes;
+        }
+
+        public List<Card> play() {
+            return play;
+        }
+
+        /**
+         * Returns the final score the seat in turn makes sure of with the play.
+         *
+         * @return the final score of the seat
+         */
+        public int score() {
+            return score;
+        }
+
+        public long nodes() {
+            return nodes;
+        }
+    }
+
+    /**
+     * Solves the rest of a deal for the seat in turn, seeing every hand.
+     *
+     * @param deal Deal under play, which is not changed
+     * @return the best play and its score
+     */
+    public Solution solve(final Deal deal) {
+        root = deal.turn();
+        if (root < 0)
+            throw new IllegalStateException("Solving a deal that is not under play");
+
+        numDecks = deal.numDecks();
+        final Deal.View view = deal.view(root);
+        for (int weight = 0; weight < CardSet.NUM_KINDS; weight++) {
+            cards[weight] = Card.fromWeight(weight, view.level(Card.fromWeight(weight)));
+            classes[weight] = plays[weight] = weight;
+            for (int other = weight - 1; other >= 0; other--) {
+                if (cards[other].isHeart() && cards[weight].isHeart()
+                        && cards[other].value() == cards[weight].value())
+                    classes[weight] = other;
+                if (alike(cards[other], cards[weight]))
+                    plays[weight] = other;
+            }
+        }
+
+        hash = 0;
+        live.clear();
+        for (int seat = 0; seat < NUM_SEATS; seat++) {
+            hands[seat].set(deal.view(seat).hand());
+            live.addAll(hands[seat]);
+            for (long bits = hands[seat].first(); bits != 0; bits &= bits - 1) {
+                final int weight = Long.numberOfTrailingZeros(bits);
+                hash ^= handKeys[seat * CardSet.NUM_KINDS + weight][hands[seat].count(weight)];
+            }
+        }
+        Arrays.fill(won, 0);
+        assets.clear();
+        assets.addAll(view.assets(root));
+
+        leader = view.leader();
+        numTricks = 0;
+        trick = tricks[0];
+        turned = 0;
+        firstRound = view.isFirstRound();
+        for (final List<Card> played : view.trick()) {
+            roundSize = played.size();
+            for (int j = 0; j < roundSize; j++) {
+                place(turned * roundSize + j, played.get(j).weight());
+                live.add(played.get(j).weight());
+            }
+            turned++;
+        }
+        if (++stamp > STAMP_MASK) {
+            Arrays.fill(memoKeys, 0);
+            Arrays.fill(memoMoves, 0);
+            stamp = 1;
+        }
+        Arrays.fill(scoreKeys, -1);
+        wonHash = 0;
+        for (final int[] counts : history)
+            Arrays.fill(counts, 0);
+
+        nodes = 0;
+        int lower = Integer.MIN_VALUE, upper = Integer.MAX_VALUE;
+        int score = score();
+        int move = -1;
+        while (lower < upper) {
+            final int beta = score == lower ? score + 1 : score;
+            score = search(beta - 1, beta, 0);
+            if (score < beta) {
+                upper = score;
+            } else {
+                lower = score;
+                move = bestRootMove;
+            }
+        }
+        final List<Card> play = second(move) < 0 ? List.of(Card.fromWeight(first(move)))
+                : List.of(Card.fromWeight(first(move)), Card.fromWeight(second(move)));
+        return new Solution(play, score, nodes);
+    }
+
+    private int search(int alpha, int beta, final int depth) {
+        nodes++;
+        if (turned == 0 && depth != 0) {
+            if (hands[leader].isEmpty() || (live.first() & SCORED) == 0)
+                return score();
+            if (hands[leader].size() == 1)
+                return lastRound();
+        }
+
+        final long key = hash ^ leaderKeys[leader];
+        final int slot = (int) (key ^ key >>> 32) & memoMask;
+        final boolean hit = memoKeys[slot] == key && memoMoves[slot] >>> STAMP_SHIFT == stamp;
+        int lower = Integer.MIN_VALUE, upper = Integer.MAX_VALUE, hint = -1;
+        if (hit) {
+            lower = (int) (memoBounds[slot] >> 32);
+            upper = (int) memoBounds[slot];
+            hint = memoMoves[slot] & (1 << STAMP_SHIFT) - 1;
+            if (depth != 0) {
+                if (lower >= beta)
+                    return lower;
+                if (upper <= alpha || lower == upper)
+                    return upper;
+                alpha = Math.max(alpha, lower);
+                beta = Math.min(beta, upper);
+            }
+        }
+        if (turned == 0 && depth != 0) {
+            bound();
+            if (lowBound >= beta)
+                return lowBound;
+            if (highBound <= alpha)
+                return highBound;
+        }
+
+        final int seat = (leader + turned) % NUM_SEATS;
+        final boolean maximizing = seat == root;
+        final int[] list = moves[depth];
+        final int numMoves = generate(seat, list);
+        order(seat, maximizing, list, numMoves, hint);
+
+        final int alpha0 = alpha, beta0 = beta;
+        int best = maximizing ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        int bestMove = list[0];
+        for (int i = 0; i < numMoves; i++) {
+            final int move = list[i];
+            make(seat, move, depth);
+            final int value = search(alpha, beta, depth + 1);
+            unmake(seat, move, depth);
+
+            if (maximizing ? value > best : value < best) {
+                best = value;
+                bestMove = move;
+            }
+            if (maximizing)
+                alpha = Math.max(alpha, value);
+            else
+                beta = Math.min(beta, value);
+            if (alpha >= beta) {
+                history[seat][move] += hands[seat].size() * hands[seat].size();
+                break;
+            }
+        }
+
+        if (depth == 0)
+            bestRootMove = bestMove;
+        if (best > alpha0)
+            lower = best;
+        if (best < beta0)
+            upper = best;
+        memoKeys[slot] = key;
+        memoBounds[slot] = (long) lower << 32 | upper & 0xffffffffL;
+        memoMoves[slot] = stamp << STAMP_SHIFT | bestMove;
+        return best;
+    }
+
+    private static int move(final int first, final int second) {
+        return first | (second + 1) << 6;
+    }
+
+    private static int first(final int move) {
+        return move & 63;
+    }
+
+    private static int second(final int move) {
+        return (move >>> 6) - 1;
+    }
+
+    /**
+     * Lists the legal plays of a seat, leaving out plays that are the same as
+     * another one.
+     */
+    private int generate(final int seat, final int[] list) {
+        final CardSet hand = hands[seat];
+        final int leadSize = turned == 0 ? 0 : roundSize;
+        final int leadWeight = turned == 0 ? -1 : trick[0];
+        int numMoves = 0;
+
+        if (leadSize != 2) {
+            for (long bits = hand.first(); bits != 0; bits &= bits - 1) {
+                final int weight = Long.numberOfTrailingZeros(bits);
+                if (!redundant(seat, weight) && Rules.checkPlay(hand, weight, -1, leadSize, leadWeight,
+                        firstRound) == Rules.Violation.NONE)
+                    list[numMoves++] = move(weight, -1);
+            }
+        }
+        if (leadSize != 1) {
+            for (long bits = hand.second(); bits != 0; bits &= bits - 1) {
+                final int weight = Long.numberOfTrailingZeros(bits);
+                if (!redundant(seat, weight) && Rules.checkPlay(hand, weight, weight, leadSize, leadWeight,
+                        firstRound) == Rules.Violation.NONE)
+                    list[numMoves++] = move(weight, weight);
+            }
+        }
+        if (leadSize == 2) {
+            for (long bits = hand.first(); bits != 0; bits &= bits - 1) {
+                final int first = Long.numberOfTrailingZeros(bits);
+                for (long rest = bits & bits - 1; rest != 0; rest &= rest - 1) {
+                    final int second = Long.numberOfTrailingZeros(rest);
+                    if (Rules.checkPlay(hand, first, second, leadSize, leadWeight,
+                            firstRound) == Rules.Violation.NONE)
+                        list[numMoves++] = move(first, second);
+                }
+            }
+        }
+        return numMoves;
+    }
+
+    /**
+     * Tells whether a card plays the same as the next lower card of its suit
+     * still in play: both score alike and the seat holds every copy of them, as
+     * many of one as of the other, so no other card can fall between or tie
+     * with them and the hands left after either play only differ by name.
+     */
+    private boolean redundant(final int seat, final int weight) {
+        final long lowerLive = live.first() & CardSet.suitMask(CardSet.suitOf(weight)) & CardSet.bit(weight) - 1;
+        if (lowerLive == 0)
+            return false;
+
+        final CardSet hand = hands[seat];
+        final int lower = 63 - Long.numberOfLeadingZeros(lowerLive);
+        return hand.count(weight) == live.count(weight) && hand.count(lower) == live.count(lower)
+                && hand.count(lower) == hand.count(weight) && plays[lower] == plays[weight];
+    }
+
+    private static boolean alike(final Card card, final Card other) {
+        return card.isScored() == other.isScored() && card.value() == other.value()
+                && card.scoringInRound1() == other.scoringInRound1() && !card.isTransformer()
+                && !other.isTransformer();
+    }
+
+    /**
+     * Plays the last round, where every seat has one card left.
+     */
+    private int lastRound() {
+        final int[] last = tricks[numTricks];
+        for (int i = 0; i < NUM_SEATS; i++)
+            last[i] = Long.numberOfTrailingZeros(hands[(leader + i) % NUM_SEATS].first());
+        if (Card.roundResult(last, NUM_SEATS, 1, leader) != root)
+            return score();
+
+        final long savedHash = wonHash;
+        final int numAssets = assets.size();
+        for (int i = 0; i < NUM_SEATS; i++) {
+            final int weight = last[i];
+            if (cards[weight].isScored()) {
+                final int scoreClass = classes[weight];
+                wonHash ^= wonKeys[scoreClass][won[scoreClass]] ^ wonKeys[scoreClass][won[scoreClass] + 1];
+                won[scoreClass]++;
+                assets.add(cards[weight]);
+            }
+        }
+        final int score = score();
+        for (int i = 0; i < NUM_SEATS; i++) {
+            if (cards[last[i]].isScored())
+                won[classes[last[i]]]--;
+        }
+        while (assets.size() > numAssets)
+            assets.remove(assets.size() - 1);
+        wonHash = savedHash;
+        return score;
+    }
+
+    /**
+     * Scores the assets of the seat, remembering the scores of the cards won
+     * by their hash.
+     */
+    private int score() {
+        final int slot = (int) (wonHash ^ wonHash >>> 32) & SCORE_CACHE_SIZE - 1;
+        if (scoreKeys[slot] != wonHash) {
+            scoreKeys[slot] = wonHash;
+            scoreValues[slot] = Asset.getScore(assets, numDecks);
+        }
+        return scoreValues[slot];
+    }
+
+    /**
+     * Bounds the final score of the seat between rounds, by the scores it
+     * makes if it wins none, some or all of the scored cards left in the
+     * hands, worked out the way {@link Asset#getScore} does.
+     */
+    private void bound() {
+        int numHearts = 0, heartScore = 0, pigScore = 0, sheepScore = 0, numTrans = 0, transScore = 0;
+        double maxMult = 0;
+        for (int i = 0; i < assets.size(); i++) {
+            final Card card = assets.get(i);
+            if (card.isHeart()) {
+                numHearts++;
+                heartScore += card.value();
+            } else if (card.isPig()) {
+                pigScore += card.value();
+            } else if (card.isSheep()) {
+                sheepScore += card.value();
+            } else if (card.isTransformer()) {
+                numTrans++;
+                transScore += card.value();
+                maxMult = Math.max(maxMult, card.multiplier());
+            }
+        }
+
+        int numLeft = 0, leftHearts = 0, leftHeartScore = 0, leftPigScore = 0, leftSheepScore = 0, leftTrans = 0;
+        Card transformer = null;
+        for (long bits = live.first() & SCORED; bits != 0; bits &= bits - 1) {
+            final int weight = Long.numberOfTrailingZeros(bits);
+            final Card card = cards[weight];
+            final int count = live.count(weight);
+            numLeft += count;
+            if (card.isHeart()) {
+                leftHearts += count;
+                leftHeartScore += count * card.value();
+            } else if (card.isPig()) {
+                leftPigScore += count * card.value();
+            } else if (card.isSheep()) {
+                leftSheepScore += count * card.value();
+            } else {
+                leftTrans += count;
+                transformer = card;
+            }
+        }
+
+        lowBound = Integer.MAX_VALUE;
+        highBound = Integer.MIN_VALUE;
+        final boolean sweepable = numHearts + leftHearts == 13 * numDecks;
+        final int sweep = -heartScore - leftHeartScore;
+        for (int taken = 0; taken <= leftTrans; taken++) {
+            if (assets.size() == numTrans)
+                include(transScore + taken * (transformer == null ? 0 : transformer.value()));
+            if (assets.size() == numTrans && numLeft == leftTrans)
+                continue;
+
+            final double mult = numTrans + taken == 0 ? 1.0
+                    : Math.max(maxMult, taken == 0 ? 0 : transformer.multiplier())
+                            + (numTrans + taken) * Card.MULT_GET;
+            include(heartScore + leftHeartScore + pigScore + leftPigScore + sheepScore, mult);
+            include(heartScore + pigScore + sheepScore + leftSheepScore, mult);
+            if (sweepable) {
+                include(sweep + pigScore + leftPigScore + sheepScore, mult);
+                include(sweep + pigScore + sheepScore + leftSheepScore, mult);
+                if (assets.size() + numLeft == 16 * numDecks)
+                    include(sweep - pigScore - leftPigScore + sheepScore + leftSheepScore, mult);
+            }
+        }
+    }
+
+    private void include(final int base, final double mult) {
+        include((int) Math.round(base * mult));
+    }
+
+    private void include(final int score) {
+        lowBound = Math.min(lowBound, score);
+        highBound = Math.max(highBound, score);
+    }
+
+    /**
+     * Sorts plays so that the best ones are likely searched first: the best
+     * play remembered for the state, then the plays that do the most good to
+     * the seat if the round ended right after them, then the plays that cut
+     * off the search most often elsewhere, lower cards first.
+     */
+    private void order(final int seat, final boolean maximizing, final int[] list, final int numMoves, final int hint) {
+        int trickValue = 0;
+        for (int i = 0; i < turned * roundSize; i++)
+            trickValue += cards[trick[i]].value();
+
+        final long[] keys = orderKeys;
+        for (int i = 0; i < numMoves; i++) {
+            final int move = list[i];
+            final int first = first(move), second = second(move);
+            final int size = turned == 0 ? (second < 0 ? 1 : 2) : roundSize;
+            trick[turned * size] = first;
+            if (second >= 0)
+                trick[turned * size + 1] = second;
+
+            final int value = trickValue + cards[first].value() + (second < 0 ? 0 : cards[second].value());
+            final int winner = (leader + Card.roundResult(trick, turned + 1, size, 0)) % NUM_SEATS;
+            final int gain = winner == root ? value : 0;
+            keys[i] = move == hint ? Long.MIN_VALUE
+                    : ((long) (maximizing ? -gain : gain) << 40) - ((long) history[seat][move] << 4)
+                            + CardSet.rankOf(Math.max(first, second));
+        }
+
+        for (int i = 1; i < numMoves; i++) {
+            final int move = list[i];
+            final long key = keys[i];
+            int j = i;
+            for (; j > 0 && keys[j - 1] > key; j--) {
+                list[j] = list[j - 1];
+                keys[j] = keys[j - 1];
+            }
+            list[j] = move;
+            keys[j] = key;
+        }
+    }
+
+    private void make(final int seat, final int move, final int depth) {
+        final int first = first(move), second = second(move);
+        if (turned == 0) {
+            undoRoundSizes[depth] = roundSize;
+            roundSize = second < 0 ? 1 : 2;
+        }
+
+        removeFromHand(seat, first);
+        place(turned * roundSize, first);
+        if (second >= 0) {
+            removeFromHand(seat, second);
+            place(turned * roundSize + 1, second);
+        }
+        if (++turned < NUM_SEATS)
+            return;
+
+        undoLeaders[depth] = leader;
+        undoFirstRounds[depth] = firstRound;
+        leader = Card.roundResult(trick, NUM_SEATS, roundSize, leader);
+        int numWon = 0;
+        for (int i = 0; i < NUM_SEATS * roundSize; i++) {
+            final int weight = trick[i];
+            hash ^= trickKeys[i][weight];
+            live.remove(weight);
+            if (leader == root && cards[weight].isScored()) {
+                final int scoreClass = classes[weight];
+                final long change = wonKeys[scoreClass][won[scoreClass]] ^ wonKeys[scoreClass][++won[scoreClass]];
+                hash ^= change;
+                wonHash ^= change;
+                assets.add(cards[weight]);
+                numWon++;
+            }
+        }
+        undoNumWon[depth] = numWon;
+        trick = tricks[++numTricks];
+        turned = 0;
+        firstRound = false;
+    }
+
+    private void unmake(final int seat, final int move, final int depth) {
+        if (turned == 0) {
+            for (int i = undoNumWon[depth]; i > 0; i--) {
+                final int weight = assets.remove(assets.size() - 1).weight();
+                final int scoreClass = classes[weight];
+                final long change = wonKeys[scoreClass][won[scoreClass]] ^ wonKeys[scoreClass][--won[scoreClass]];
+                hash ^= change;
+                wonHash ^= change;
+            }
+            leader = undoLeaders[depth];
+            firstRound = undoFirstRounds[depth];
+            trick = tricks[--numTricks];
+            for (int i = 0; i < NUM_SEATS * roundSize; i++) {
+                hash ^= trickKeys[i][trick[i]];
+                live.add(trick[i]);
+            }
+            turned = NUM_SEATS;
+        }
+
+        turned--;
+        final int second = second(move);
+        if (second >= 0) {
+            hash ^= trickKeys[turned * roundSize + 1][second];
+            addToHand(seat, second);
+        }
+        hash ^= trickKeys[turned * roundSize][first(move)];
+        addToHand(seat, first(move));
+        if (turned == 0)
+            roundSize = undoRoundSizes[depth];
+    }
+
+    private void place(final int position, final int weight) {
+        trick[position] = weight;
+        hash ^= trickKeys[position][weight];
+    }
+
+    private void removeFromHand(final int seat, final int weight) {
+        final long[] keys = handKeys[seat * CardSet.NUM_KINDS + weight];
+        hash ^= keys[hands[seat].count(weight)];
+        hands[seat].remove(weight);
+        hash ^= keys[hands[seat].count(weight)];
+    }
+
+    private void addToHand(final int seat, final int weight) {
+        final long[] keys = handKeys[seat * CardSet.NUM_KINDS + weight];
+        hash ^= keys[hands[seat].count(weight)];
+        hands[seat].add(weight);
+        hash ^= keys[hands[seat].count(weight)];
+    }
+}
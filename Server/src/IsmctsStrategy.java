@@ -0,0 +1,283 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinTask;
+
+import rule.Card;
+
+/**
+ * An {@code IsmctsStrategy} plays by information-set Monte Carlo tree search.
+ * Every iteration samples the hidden hands from what the seat has seen, walks
+ * down a tree of the states the seat can tell apart, tries one new play and
+ * finishes the deal with random plays. The tree of each search thread lives in
+ * a bounded transposition table keyed by {@link Deal#stateKey}, so a state
+ * reached by different move orders, or again on a later move, reuses its
+ * statistics. Once few cards are left, each sample is instead solved exactly
+ * by an {@link EndgameSolver} and the play chosen by most samples wins.
+ * Trading and showing are left to {@link DuckStrategy}.
+ * <p>
+ * The strategy only plays in the {@link Simulator} and the {@link Tournament},
+ * where it is handed a {@link Deal.View}. It does not play live games yet: the
+ * bots of the Bots module only see the protocol messages, nothing rebuilds a
+ * view from them, and this class and {@link Deal} sit in the default package
+ * of the server, which the bots cannot import.
+ *
+ * @author Weizhao Tang
+ */
+public class IsmctsStrategy implements Strategy {
+    public static final long DEFAULT_BUDGET_MILLIS = 1000;
+    public static final int DEFAULT_CACHE_CAPACITY = 1 << 16;
+    public static final int ENDGAME_CARDS = 4; // cards in hand from which samples are solved exactly
+    public static final int ENDGAME_SAMPLES = 32;
+
+    private static final double EXPLORATION = 0.7;
+
+    private final DuckStrategy duck = new DuckStrategy();
+    private final EndgameSolver solver = new EndgameSolver();
+    private final Search[] searches;
+    private final long budgetMillis;
+    private final int maxIterations;
+
+    /**
+     * Constructor for IsmctsStrategy object.
+     *
+     * @param random        Random generator of the samples and rollouts
+     * @param numThreads    Number of threads searching each move
+     * @param budgetMillis  Time limit of each move in milliseconds
+     * @param maxIterations Limit of iterations of each move over all threads, or
+     *                      0 to search until the time runs out
+     */
+    public IsmctsStrategy(final SplittableRandom random, final int numThreads, final long budgetMillis,
+            final int maxIterations) {
+        if (numThreads <= 0 || budgetMillis <= 0 || maxIterations < 0)
+            throw new IllegalArgumentException("Num threads and budget must be positive, iterations not negative");
+
+        searches = new Search[numThreads];
+        for (int i = 0; i < numThreads; i++)
+            searches[i] = new Search(random.split(), DEFAULT_CACHE_CAPACITY);
+        this.budgetMillis = budgetMillis;
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Constructor for IsmctsStrategy object with one thread per processor that
+     * searches each move for the default budget.
+     *
+     * @param random Random generator of the samples and rollouts
+     */
+    public IsmctsStrategy(final SplittableRandom random) {
+        this(random, Runtime.getRuntime().availableProcessors(), DEFAULT_BUDGET_MILLIS, 0);
+    }
+
+    @Override
+    public List<Card> trade(final Deal.View view, final int numCards) {
+        return duck.trade(view, numCards);
+    }
+
+    @Override
+    public List<Card> show(final Deal.View view) {
+        return duck.show(view);
+    }
+
+    @Override
+    public List<Card> play(final Deal.View view) {
+        final ArrayList<List<Card>> plays = view.legalPlays();
+        if (plays.size() == 1)
+            return plays.get(0);
+
+        final long deadline = System.nanoTime() + budgetMillis * 1000000;
+        if (view.hand().size() <= ENDGAME_CARDS)
+            return solveEndgame(view, plays, deadline);
+
+        final int iterationsEach = maxIterations == 0 ? Integer.MAX_VALUE
+                : Math.max(1, maxIterations / searches.length);
+        if (searches.length == 1) {
+            searches[0].run(view, deadline, iterationsEach);
+        } else {
+            final ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>(searches.length);
+            for (final Search search : searches)
+                tasks.add(ForkJoinTask.adapt(() -> search.run(view, deadline, iterationsEach)));
+            ForkJoinTask.invokeAll(tasks);
+        }
+
+        // Root parallelization: the play tried most often over all threads wins
+        final long rootKey = view.stateKey();
+        List<Card> best = plays.get(0);
+        long bestVisits = -1;
+        for (final List<Card> play : plays) {
+            long visits = 0;
+            for (final Search search : searches) {
+                final Node root = search.table.get(rootKey);
+                if (root != null)
+                    visits += root.visits(code(play));
+            }
+            if (visits > bestVisits) {
+                best = play;
+                bestVisits = visits;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Solves sampled deals exactly and picks the play that most of them agree
+     * on.
+     */
+    private List<Card> solveEndgame(final Deal.View view, final ArrayList<List<Card>> plays, final long deadline) {
+        final HashMap<Integer, Integer> votes = new HashMap<>();
+        for (int i = 0; i < ENDGAME_SAMPLES && (i == 0 || System.nanoTime() < deadline); i++)
+            votes.merge(code(solver.solve(view.sample(searches[0].random)).play()), 1, Integer::sum);
+
+        List<Card> best = plays.get(0);
+        int bestVotes = -1;
+        for (final List<Card> play : plays) {
+            final int numVotes = votes.getOrDefault(code(play), 0);
+            if (numVotes > bestVotes) {
+                best = play;
+                bestVotes = numVotes;
+            }
+        }
+        return best;
+    }
+
+    private static int code(final List<Card> play) {
+        return play.get(0).weight() + 1 + 53 * (play.size() == 2 ? play.get(1).weight() + 1 : 0);
+    }
+
+    /**
+     * Statistics of the plays tried from a state, with the number of times each
+     * play was available, since not every play is legal in every sample.
+     */
+    private static class Node {
+        private int size;
+        private int[] codes = new int[8];
+        private int[] visits = new int[8];
+        private int[] available = new int[8];
+        private double[] rewards = new double[8];
+
+        private int edge(final int code) {
+            for (int i = 0; i < size; i++) {
+                if (codes[i] == code)
+                    return i;
+            }
+            if (size == codes.length) {
+                codes = Arrays.copyOf(codes, size * 2);
+                visits = Arrays.copyOf(visits, size * 2);
+                available = Arrays.copyOf(available, size * 2);
+                rewards = Arrays.copyOf(rewards, size * 2);
+            }
+            codes[size] = code;
+            return size++;
+        }
+
+        private int visits(final int code) {
+            for (int i = 0; i < size; i++) {
+                if (codes[i] == code)
+                    return visits[i];
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * The search of one thread with its own random generator and table.
+     */
+    private static class Search {
+        private final SplittableRandom random;
+        private final LinkedHashMap<Long, Node> table;
+
+        private final ArrayList<Node> pathNodes = new ArrayList<>();
+        private final ArrayList<Integer> pathEdges = new ArrayList<>();
+        private final ArrayList<Integer> pathMovers = new ArrayList<>();
+
+        Search(final SplittableRandom random, final int capacity) {
+            this.random = random;
+            table = new LinkedHashMap<Long, Node>(capacity * 4 / 3 + 1, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<Long, Node> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        void run(final Deal.View view, final long deadline, final int maxIterations) {
+            for (int i = 0; i < maxIterations; i++) {
+                if ((i & 15) == 15 && System.nanoTime() >= deadline)
+                    break;
+                iterate(view.sample(random), view.seat());
+            }
+        }
+
+        private void iterate(final Deal deal, final int observer) {
+            pathNodes.clear();
+            pathEdges.clear();
+            pathMovers.clear();
+
+            // Selection down the tree until a play is tried for the first time
+            boolean expanded = false;
+            int mover;
+            while (!expanded && (mover = deal.turn()) >= 0) {
+                final long key = deal.stateKey(observer);
+                Node node = table.get(key);
+                if (node == null) {
+                    node = new Node();
+                    table.put(key, node);
+                }
+
+                final ArrayList<List<Card>> plays = deal.legalPlays();
+                int chosen = -1, numUntried = 0;
+                double bestValue = Double.NEGATIVE_INFINITY;
+                final int[] edges = new int[plays.size()];
+                for (int i = 0; i < edges.length; i++) {
+                    edges[i] = node.edge(code(plays.get(i)));
+                    node.available[edges[i]]++;
+                }
+                for (int i = 0; i < edges.length; i++) {
+                    final int e = edges[i];
+                    if (node.visits[e] == 0) {
+                        // Reservoir sampling among the untried plays
+                        if (random.nextInt(++numUntried) == 0)
+                            chosen = i;
+                    } else if (numUntried == 0) {
+                        final double value = node.rewards[e] / node.visits[e]
+                                + EXPLORATION * Math.sqrt(Math.log(node.available[e]) / node.visits[e]);
+                        if (value > bestValue) {
+                            bestValue = value;
+                            chosen = i;
+                        }
+                    }
+                }
+                expanded = numUntried != 0;
+
+                pathNodes.add(node);
+                pathEdges.add(edges[chosen]);
+                pathMovers.add(mover);
+                deal.play(plays.get(chosen));
+            }
+
+            // Rollout with random legal plays
+            while (deal.turn() >= 0) {
+                final ArrayList<List<Card>> plays = deal.legalPlays();
+                deal.play(plays.get(random.nextInt(plays.size())));
+            }
+
+            final int[] scores = deal.scores();
+            final double scale = 50.0 * Card.getBaseScore();
+            for (int i = 0; i < pathNodes.size(); i++) {
+                final Node node = pathNodes.get(i);
+                final int e = pathEdges.get(i);
+                node.visits[e]++;
+                node.rewards[e] += reward(scores, pathMovers.get(i), scale);
+            }
+        }
+
+        private static double reward(final int[] scores, final int seat, final double scale) {
+            double others = 0;
+            for (int i = 0; i < scores.length; i++) {
+                if (i != seat)
+                    others += scores[i];
+            }
+            return Math.tanh((scores[seat] - others / (scores.length - 1)) / scale);
+        }
+    }
+}
@@ -0,0 +1,499 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import rule.Card;
+import rule.CardSet;
+
+/**
+ * A {@code Journal} records everything that happens at one table in an
+ * append-only binary file: a header with the seed of the table, then one record
+ * per event. Every record is its length as an int, followed by its type and
+ * its fields, and cards are written as one byte of their weight.
+ * <p>
+ * Records are only copied into a buffer by the table. A single committer
+ * thread writes the buffers of all journals to their {@link FileChannel}s and
+ * forces them to disk together every {@link #COMMIT_MILLIS} milliseconds, so
+ * no table ever waits for the disk and one {@code fsync} covers many events.
+ * <p>
+ * A table writes a snapshot of its seats and totals at the start of every
+ * frame, so that the records after the last snapshot are all that
+ * {@link Recovery} needs to rebuild the table after a crash. The committer
+ * keeps the offset of the last snapshot in the header, at
+ * {@link #LAST_SNAPSHOT}, so that it is found without reading the records
+ * before it.
+ *
+ * @author Weizhao Tang
+ */
+public class Journal {
+    public static final int MAGIC = 0x44484a4c; // "DHJL"
+    public static final short VERSION = 2;
+    public static final long COMMIT_MILLIS = 20;
+
+    // Types of the records, and their fields after the type
+    public static final byte HEADER = 0; // magic, version, table id, num decks, seed, base score, multipliers, time,
+                                         // offset of the last snapshot or 0 if none
+    public static final byte FRAME = 1; // frame number, trade gap, time
+    public static final byte DEAL = 2; // first seat dealt to, cards in dealing order
+    public static final byte TRADE = 3; // seat, cards passed
+    public static final byte SHOW = 4; // seat, cards shown
+    public static final byte LEADER = 5; // seat that leads the first round
+    public static final byte PLAY = 6; // seat, cards played
+    public static final byte TRICK = 7; // seat that won the round
+    public static final byte SCORES = 8; // score of each seat in the frame
+    public static final byte ABORT = 9; // seat whose player dropped offline during the frame
+    public static final byte SEAT = 10; // seat, avatar, name of a player who sat down
+    public static final byte LEAVE = 11; // seat of a player who dropped offline, which resets the totals
+    public static final byte SNAPSHOT = 12; // frame number, total scores, then avatar and name of each seat
+    public static final byte CLOSE = 13; // no fields: the table was retired
+    public static final byte RECOVER = 14; // new seed, time: the table was recovered after a restart
+
+    // Position in the file of the offset of the last snapshot, the last field of the header
+    public static final int LAST_SNAPSHOT = 4 + 1 + 4 + 2 + 4 + 1 + 8 + 4 + 8 + 8 + 8;
+
+    /**
+     * Journal that records nothing, for tables without a journal directory.
+     */
+    public static final Journal OFF = new Journal();
+
+    private static Committer committer;
+
+    private final String name;
+    private final FileChannel channel;
+    private ByteBuffer filling = ByteBuffer.allocate(1 << 12); // records not yet taken by the committer
+    private ByteBuffer draining = ByteBuffer.allocate(1 << 12); // records being written by the committer
+    private boolean closed = false;
+    private volatile boolean stopped; // set once records are no longer kept
+    private long length = 0; // length of the file once the records taken by the committer are written
+    private long lastSnapshot = 0; // offset of the last snapshot recorded, or 0 if none since the file was opened
+    private long snapshotWritten = 0; // offset of the last snapshot written to the header by the committer
+
+    private Journal() {
+        name = "off";
+        channel = null;
+        stopped = true;
+    }
+
+    private Journal(final Path path, final FileChannel channel) {
+        name = path.toString();
+        this.channel = channel;
+    }
+
+    /**
+     * Opens a new journal for a table and writes its header.
+     *
+     * @param directory Directory of the journal files
+     * @param tableId   Identifier of the table in the lobby
+     * @param numDecks  Number of decks in the shoe
+     * @param seed      Seed of the random generator of the table
+     * @return the journal
+     * @throws IOException if the file cannot be created
+     */
+    public static Journal open(final Path directory, final int tableId, final int numDecks, final long seed)
+            throws IOException {
+        final long now = System.currentTimeMillis();
+        final Path path = directory.resolve("table-" + tableId + "-" + now + ".journal");
+        // Not opened to append, since the header is written at its own position later on
+        final Journal journal = new Journal(path, FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE));
+
+        synchronized (journal) {
+            final ByteBuffer buffer = journal.reserve(HEADER, LAST_SNAPSHOT + 8 - 4 - 1);
+            buffer.putInt(MAGIC).putShort(VERSION).putInt(tableId).put((byte) numDecks).putLong(seed)
+                    .putInt(Card.getBaseScore()).putDouble(Card.MULT_EXP).putDouble(Card.MULT_GET).putLong(now)
+                    .putLong(0);
+        }
+        committer().add(journal);
+        return journal;
+    }
+
+    /**
+     * Opens the journal of a recovered table to go on appending to it. Anything
+     * after the last whole record is cut off first.
+     *
+     * @param path   Path of the journal file
+     * @param length Length of the whole records in the file
+     * @param seed   Seed of the new random generator of the table
+     * @return the journal
+     * @throws IOException if the file cannot be opened
+     */
+    public static Journal reopen(final Path path, final long length, final long seed) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+        channel.truncate(length);
+        channel.position(length);
+        final Journal journal = new Journal(path, channel);
+        journal.length = length;
+
+        synchronized (journal) {
+            journal.reserve(RECOVER, 8 + 8).putLong(seed).putLong(System.currentTimeMillis());
+        }
+        committer().add(journal);
+        return journal;
+    }
+
+    /**
+     * Maps a journal file for reading and checks the start of its header.
+     *
+     * @param path Path of the journal file
+     * @return the file, positioned at the table id in the header
+     * @throws IOException if the file cannot be read or is not a journal of this
+     *                     version
+     */
+    public static ByteBuffer map(final Path path) throws IOException {
+        final ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.remaining() < 4 + 1 + 4 + 2 || buffer.getInt() <= 0 || buffer.get() != HEADER
+                || buffer.getInt() != MAGIC || buffer.getShort() != VERSION)
+            throw new IOException(path + " is not a journal of version " + VERSION);
+        return buffer;
+    }
+
+    /**
+     * Records the start of a frame.
+     *
+     * @param frameNum Number of frames played before
+     * @param tradeGap Distance between a seat and the seat it passes to
+     */
+    public void startFrame(final int frameNum, final int tradeGap) {
+        if (stopped)
+            return;
+
+        synchronized (this) {
+            reserve(FRAME, 4 + 1 + 8).putInt(frameNum).put((byte) tradeGap).putLong(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Records an event that only names a seat.
+     *
+     * @param type Type of the record
+     * @param seat Seat of the event
+     */
+    public void record(final byte type, final int seat) {
+        if (stopped)
+            return;
+
+        synchronized (this) {
+            reserve(type, 1).put((byte) seat);
+        }
+    }
+
+    /**
+     * Records an event of a seat with cards.
+     *
+     * @param type  Type of the record
+     * @param seat  Seat of the event
+     * @param cards Cards of the event
+     */
+    public void record(final byte type, final int seat, final Collection<Card> cards) {
+        if (stopped)
+            return;
+
+        synchronized (this) {
+            final ByteBuffer buffer = reserve(type, 2 + cards.size()).put((byte) seat).put((byte) cards.size());
+            for (final Card card : cards)
+                buffer.put((byte) card.weight());
+        }
+    }
+
+    /**
+     * Creates a record of a seat with cards that are added one by one, so that
+     * a caller need not collect them first. Each caller needs its own, since
+     * one journal, {@link #OFF}, is shared by all tables that keep none.
+     *
+     * @return a record that adds to this journal
+     */
+    public CardRecord newCardRecord() {
+        return new CardRecord(this);
+    }
+
+    /**
+     * A record of a seat with cards under construction, owned by one caller.
+     */
+    public static class CardRecord {
+        private final Journal journal;
+        private final byte[] cards = new byte[2 * CardSet.NUM_KINDS];
+        private byte type;
+        private int seat;
+        private int numCards = 0;
+
+        private CardRecord(final Journal journal) {
+            this.journal = journal;
+        }
+
+        /**
+         * Starts the record over.
+         *
+         * @param type Type of the record
+         * @param seat Seat of the event
+         */
+        public void begin(final byte type, final int seat) {
+            if (journal.stopped)
+                return;
+
+            this.type = type;
+            this.seat = seat;
+            numCards = 0;
+        }
+
+        /**
+         * Adds a card to the record.
+         *
+         * @param card Card to add
+         */
+        public void add(final Card card) {
+            if (journal.stopped)
+                return;
+
+            cards[numCards++] = (byte) card.weight();
+        }
+
+        /**
+         * Appends the record to the journal.
+         */
+        public void end() {
+            if (journal.stopped)
+                return;
+
+            synchronized (journal) {
+                journal.reserve(type, 2 + numCards).put((byte) seat).put((byte) numCards).put(cards, 0, numCards);
+            }
+        }
+    }
+
+    /**
+     * Records a player taking a seat.
+     *
+     * @param seat     Seat taken
+     * @param avtIndex Index of the avatar of the player
+     * @param name     Name of the player
+     */
+    public void recordSeat(final int seat, final int avtIndex, final String name) {
+        if (stopped)
+            return;
+
+        final byte[] bytes = encode(name);
+        synchronized (this) {
+            reserve(SEAT, 1 + 1 + 1 + bytes.length).put((byte) seat).put((byte) avtIndex).put((byte) bytes.length)
+                    .put(bytes);
+        }
+    }
+
+    /**
+     * Records the state of the table that outlives frames.
+     *
+     * @param frameNum   Number of frames played since the totals were reset
+     * @param totals     Total score of each seat
+     * @param avtIndices Avatar index of each seat, or -1 if the seat is empty
+     * @param names      Name of each player, or {@code null} if the seat is empty
+     */
+    public void recordSnapshot(final int frameNum, final int[] totals, final int[] avtIndices, final String[] names) {
+        if (stopped)
+            return;
+
+        final byte[][] bytes = new byte[names.length][];
+        int numBytes = 4 + 4 * totals.length;
+        for (int i = 0; i < names.length; i++) {
+            bytes[i] = encode(names[i] == null ? "" : names[i]);
+            numBytes += 1 + 1 + bytes[i].length;
+        }
+
+        synchronized (this) {
+            lastSnapshot = length + filling.position();
+            final ByteBuffer buffer = reserve(SNAPSHOT, numBytes).putInt(frameNum);
+            for (final int total : totals)
+                buffer.putInt(total);
+            for (int i = 0; i < names.length; i++)
+                buffer.put((byte) (names[i] == null ? -1 : avtIndices[i])).put((byte) bytes[i].length).put(bytes[i]);
+        }
+    }
+
+    /**
+     * Encodes a name in UTF-8, cut to the length a record can hold.
+     */
+    private static byte[] encode(final String name) {
+        final byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return bytes.length <= 255 ? bytes : Arrays.copyOf(bytes, 255);
+    }
+
+    /**
+     * Records the scores of a frame.
+     *
+     * @param scores Score of each seat
+     */
+    public void recordScores(final int[] scores) {
+        if (stopped)
+            return;
+
+        synchronized (this) {
+            final ByteBuffer buffer = reserve(SCORES, 4 * scores.length);
+            for (final int score : scores)
+                buffer.putInt(score);
+        }
+    }
+
+    /**
+     * Marks the table as retired and closes the journal once the records so far
+     * are committed.
+     */
+    public synchronized void close() {
+        if (stopped || closed)
+            return;
+
+        reserve(CLOSE, 0);
+        closed = true;
+    }
+
+    /**
+     * Starts a record in the filling buffer, growing it if needed. Callers hold
+     * the lock of the journal.
+     *
+     * @return the buffer to put the fields in
+     */
+    private ByteBuffer reserve(final byte type, final int numBytes) {
+        if (filling.remaining() < 4 + 1 + numBytes) {
+            final ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * filling.capacity(),
+                    filling.position() + 4 + 1 + numBytes));
+            filling.flip();
+            filling = larger.put(filling);
+        }
+        return filling.putInt(1 + numBytes).put(type);
+    }
+
+    /**
+     * Writes the records taken so far without forcing them to disk, and points
+     * the header at the last snapshot among them. Only the committer calls
+     * this.
+     *
+     * @return {@code true} if anything was written
+     * @throws IOException if the file cannot be written
+     */
+    private boolean write() throws IOException {
+        final long snapshot;
+        synchronized (this) {
+            final ByteBuffer taken = filling;
+            filling = draining;
+            draining = taken;
+            length += draining.position();
+            snapshot = lastSnapshot;
+        }
+
+        // The header goes first, so that a reader who sees the records also sees it. Recovery checks that a
+        // snapshot is where it points, in case the records did not reach the disk.
+        boolean written = false;
+        if (snapshot != snapshotWritten) {
+            if (length == draining.position()) {
+                draining.putLong(LAST_SNAPSHOT, snapshot); // the header itself is among the records
+            } else {
+                final ByteBuffer offset = ByteBuffer.allocate(8).putLong(0, snapshot);
+                while (offset.hasRemaining())
+                    channel.write(offset, LAST_SNAPSHOT + offset.position());
+                written = true;
+            }
+            snapshotWritten = snapshot;
+        }
+
+        draining.flip();
+        written |= draining.hasRemaining();
+        while (draining.hasRemaining())
+            channel.write(draining);
+        draining.clear();
+        return written;
+    }
+
+    /**
+     * Stops keeping records after the file failed.
+     */
+    private void stop() {
+        stopped = true;
+        synchronized (this) {
+            filling.clear();
+        }
+        try {
+            channel.close();
+        } catch (final IOException e) {
+            // Nothing more can be done about a broken journal
+        }
+    }
+
+    private static synchronized Committer committer() {
+        if (committer == null) {
+            committer = new Committer();
+            final Thread thread = new Thread(committer, "journal-committer");
+            thread.setDaemon(true);
+            thread.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(committer::commit, "journal-shutdown"));
+        }
+        return committer;
+    }
+
+    /**
+     * The thread that commits all journals in groups.
+     */
+    private static class Committer implements Runnable {
+        private final ArrayList<Journal> journals = new ArrayList<>();
+        private final ArrayList<Journal> written = new ArrayList<>();
+
+        synchronized void add(final Journal journal) {
+            journals.add(journal);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    Thread.sleep(COMMIT_MILLIS);
+                } catch (final InterruptedException e) {
+                    return;
+                }
+                commit();
+            }
+        }
+
+        /**
+         * Writes every journal, then forces the ones written to disk, and drops
+         * the ones closed or broken.
+         */
+        synchronized void commit() {
+            written.clear();
+            final Iterator<Journal> iter = journals.iterator();
+            while (iter.hasNext()) {
+                final Journal journal = iter.next();
+                final boolean closed;
+                synchronized (journal) {
+                    closed = journal.closed;
+                }
+                try {
+                    if (journal.write())
+                        written.add(journal);
+                    if (closed) {
+                        journal.channel.force(false);
+                        journal.channel.close();
+                        iter.remove();
+                    }
+                } catch (final IOException e) {
+                    System.err.println("Warning: journal " + journal.name + " stopped: " + e.getMessage());
+                    journal.stop();
+                    iter.remove();
+                    written.remove(journal);
+                }
+            }
+
+            for (final Journal journal : written) {
+                try {
+                    if (journal.channel.isOpen())
+                        journal.channel.force(false);
+                } catch (final IOException e) {
+                    System.err.println("Warning: journal " + journal.name + " not forced: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
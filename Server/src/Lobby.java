@@ -0,0 +1,203 @@
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@code Lobby} manages all tables on the server. It sends each new player to
+ * the least-loaded open table, opens tables on demand and retires idle ones.
+ * All tables process their events on one small pool of workers, sized to the
+ * number of processors, and share one scheduler for delayed events.
+ * <p>
+ * When the server keeps journals, the lobby first recovers every table that
+ * was not retired before the server stopped. A recovered table keeps its seats
+ * for the players who sat in them, and new players join other tables: a player
+ * whose name matches a kept seat is sent on when it sits down. A recovered
+ * table that gave up waiting for its players is retired once it is idle,
+ * which closes its journal.
+ *
+ * @author Weizhao Tang
+ */
+public class Lobby {
+    private final int numDecks;
+    private final int maxTables;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService timer;
+    private final SplittableRandom seeds; // gives each table the seed of its own random generator
+
+    private final ArrayList<Table> tables = new ArrayList<>();
+    private int nextTableId = 0;
+
+    /**
+     * Constructor for Lobby object.
+     *
+     * @param numDecks  Number of decks used at each table
+     * @param maxTables Maximum number of tables open at the same time
+     * @param seed      Seed from which the seeds of the tables are drawn
+     */
+    public Lobby(final int numDecks, final int maxTables, final long seed) {
+        this.numDecks = numDecks;
+        this.maxTables = maxTables;
+        seeds = new SplittableRandom(seed);
+        workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        timer = Executors.newSingleThreadScheduledExecutor();
+
+        if (Server.journalDir != null)
+            recoverTables();
+        if (!tables.isEmpty()) {
+            // Retire the recovered tables left idle once they stop waiting for their players
+            timer.schedule(() -> {
+                synchronized (this) {
+                    retireIdleTables();
+                }
+            }, Server.recoverSeconds + 1, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Reopens the tables left in the journal directory by an earlier run. The
+     * journals of tables nobody was seated at are closed instead.
+     */
+    private void recoverTables() {
+        final long start = System.nanoTime();
+        int numJournals = 0;
+
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(Server.journalDir, "*.journal")) {
+            for (final Path path : paths) {
+                numJournals++;
+                final Recovery recovery;
+                try {
+                    recovery = Recovery.read(path);
+                } catch (final IOException | RuntimeException e) {
+                    System.err.println("Warning: journal " + path + " cannot be recovered: " + e);
+                    continue;
+                }
+
+                nextTableId = Math.max(nextTableId, recovery.tableId() + 1);
+                if (recovery.isClosed())
+                    continue;
+
+                final long tableSeed = seeds.nextLong();
+                final Journal journal;
+                try {
+                    journal = Journal.reopen(path, recovery.length(), tableSeed);
+                } catch (final IOException e) {
+                    System.err.println("Warning: journal " + path + " cannot be reopened: " + e.getMessage());
+                    continue;
+                }
+                if (!recovery.hasPlayers()) {
+                    journal.close();
+                    continue;
+                }
+
+                final Table table = new Table(recovery.tableId(), recovery.numDecks(), tableSeed, journal, workers,
+                        timer);
+                table.restore(recovery);
+                tables.add(table);
+                System.err.println("Recovered table " + table.getId() + " at frame " + recovery.frameNum()
+                        + (recovery.deal() != null ? " in flight" : "") + " with seed " + tableSeed);
+            }
+        } catch (final IOException e) {
+            System.err.println("Warning: journal directory cannot be read: " + e.getMessage());
+        }
+
+        System.err.printf("Recovered %d of %d tables in %.1f ms%n", tables.size(), numJournals,
+                (System.nanoTime() - start) / 1e6);
+    }
+
+    /**
+     * Picks a table for a new player. Callers add the player to the returned table
+     * before asking for the next one.
+     *
+     * @return the least-loaded open table, or {@code null} if every table is full
+     *         and no more tables can be opened
+     */
+    public synchronized Table assign() {
+        retireIdleTables();
+
+        // Recovered tables only take the players they keep seats for, who get there when they sit down
+        Table target = null;
+        for (final Table table : tables) {
+            final int numPlayers = table.numPlayers();
+            if (!table.isRecovering() && numPlayers < 4 && (target == null || numPlayers < target.numPlayers()))
+                target = table;
+        }
+
+        if (target == null && tables.size() < maxTables) {
+            final int tableId = nextTableId++;
+            final long tableSeed = seeds.nextLong();
+            target = new Table(tableId, numDecks, tableSeed, openJournal(tableId, tableSeed), workers, timer);
+            tables.add(target);
+            System.err.println("Opened table " + target.getId() + " with seed " + tableSeed + ", " + tables.size()
+                    + " running");
+        }
+        if (target == null) {
+            // With no other room left, a returning player can still sit down at its recovered table directly
+            for (final Table table : tables) {
+                if (table.isRecovering() && table.numPlayers() < 4)
+                    return table;
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Appends the state of every running table to a report.
+     *
+     * @param builder Report to append to
+     */
+    public synchronized void report(final StringBuilder builder) {
+        builder.append("tables ").append(tables.size()).append('\n');
+        for (final Table table : tables)
+            table.report(builder);
+    }
+
+    /**
+     * Opens the journal of a new table if the server keeps journals.
+     *
+     * @param tableId Identifier of the table
+     * @param seed    Seed of the random generator of the table
+     * @return the journal, or {@link Journal#OFF} if none is kept or the file
+     *         cannot be created
+     */
+    private Journal openJournal(final int tableId, final long seed) {
+        if (Server.journalDir == null)
+            return Journal.OFF;
+
+        try {
+            return Journal.open(Server.journalDir, tableId, numDecks, seed);
+        } catch (final IOException e) {
+            System.err.println("Warning: table " + tableId + " keeps no journal: " + e.getMessage());
+            return Journal.OFF;
+        }
+    }
+
+    /**
+     * Retires all tables nobody is connected to, except one kept for the next
+     * player. A recovered table that gave up waiting for its players is never
+     * the one kept.
+     */
+    private void retireIdleTables() {
+        boolean keptOne = false;
+        final Iterator<Table> iter = tables.iterator();
+
+        while (iter.hasNext()) {
+            final Table table = iter.next();
+            if (table.numPlayers() > 0 || table.isRecovering())
+                continue;
+
+            if (!keptOne && !table.isAbandoned()) {
+                keptOne = true;
+            } else {
+                iter.remove();
+                table.close();
+                System.err.println("Retired table " + table.getId() + ", " + tables.size() + " running");
+            }
+        }
+    }
+}
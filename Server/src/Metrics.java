@@ -0,0 +1,193 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Metrics keeps the latency histograms and message counters of the server,
+ * and serves them as plain text at {@code /metrics} on a local port.
+ * <p>
+ * Recording never locks, so tables record on every step. The histograms keep
+ * a few thousand counts each however many durations they record, in the way
+ * of HdrHistogram, and tell any duration apart from its neighbours to within
+ * about 3%.
+ *
+ * @author Weizhao Tang
+ */
+public class Metrics {
+    /**
+     * Timed steps of a frame.
+     */
+    public enum Span {
+        DEAL, // from DEAL until every seat has its hand
+        TRADE, // from TRADESTART until every seat has traded
+        EXPOSURE, // from EXHIBIT until every seat has shown
+        TRICK, // from the start of a trick until its winner is known
+        FRAME, // from DEAL until the scores are known
+    }
+
+    private static final Histogram[] histograms = new Histogram[Span.values().length];
+    private static final LongAdder messagesIn = new LongAdder();
+    private static final LongAdder messagesOut = new LongAdder();
+    private static final LongAdder connectionDrops = new LongAdder();
+    private static final long startTime = System.nanoTime();
+
+    static {
+        for (int i = 0; i < histograms.length; i++)
+            histograms[i] = new Histogram();
+    }
+
+    /**
+     * Records how long a step took.
+     *
+     * @param span  Step of the frame
+     * @param nanos Duration in nanoseconds
+     */
+    public static void record(final Span span, final long nanos) {
+        histograms[span.ordinal()].record(nanos);
+    }
+
+    public static void messageIn() {
+        messagesIn.increment();
+    }
+
+    public static void messageOut() {
+        messagesOut.increment();
+    }
+
+    public static void connectionDropped() {
+        connectionDrops.increment();
+    }
+
+    /**
+     * Serves the metrics and the state of every table at
+     * {@code http://localhost:port/metrics}. Only local clients can connect.
+     *
+     * @param port  Port to listen on
+     * @param lobby Lobby of the tables
+     * @throws IOException if the port cannot be bound
+     */
+    public static void serve(final int port, final Lobby lobby) throws IOException {
+        final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> {
+            final byte[] body = report(lobby).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    private static String report(final Lobby lobby) {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(String.format("uptime_seconds %.1f%n", (System.nanoTime() - startTime) / 1e9));
+        builder.append("messages_in ").append(messagesIn.sum()).append('\n');
+        builder.append("messages_out ").append(messagesOut.sum()).append('\n');
+        builder.append("connection_drops ").append(connectionDrops.sum()).append('\n');
+
+        builder.append(String.format("%n%-8s %8s %10s %10s %10s %10s %10s %10s  (ms)%n", "span", "count", "mean",
+                "p50", "p90", "p99", "p99.9", "max"));
+        for (final Span span : Span.values()) {
+            final Histogram histogram = histograms[span.ordinal()];
+            builder.append(String.format("%-8s %8d %10.3f %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+                    span.name().toLowerCase(), histogram.count(), histogram.mean() / 1e3,
+                    histogram.percentile(0.5) / 1e3, histogram.percentile(0.9) / 1e3,
+                    histogram.percentile(0.99) / 1e3, histogram.percentile(0.999) / 1e3, histogram.max() / 1e3));
+        }
+
+        builder.append('\n');
+        lobby.report(builder);
+        return builder.toString();
+    }
+
+    /**
+     * A histogram of durations in microseconds with buckets growing in powers
+     * of two, each split into 32 linear sub-buckets. Durations beyond about 19
+     * hours fall in the last bucket.
+     */
+    static class Histogram {
+        private static final int SUB_BITS = 5;
+        private static final int SUB_COUNT = 1 << SUB_BITS;
+        private static final int MAX_BITS = 36;
+        private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+
+        private final AtomicLongArray counts = new AtomicLongArray((MAX_BITS - SUB_BITS + 1) * SUB_COUNT);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * Records a duration.
+         *
+         * @param nanos Duration in nanoseconds
+         */
+        void record(final long nanos) {
+            final long micros = Math.min(Math.max(nanos / 1000, 0), MAX_VALUE);
+            counts.incrementAndGet(indexOf(micros));
+            count.increment();
+            sum.add(micros);
+            if (micros > max.get())
+                max.accumulateAndGet(micros, Math::max);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        double mean() {
+            final long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        /**
+         * Returns the duration at a percentile, rounded up to the end of its
+         * bucket.
+         *
+         * @param fraction Percentile as a fraction of 1
+         * @return duration in microseconds, or 0 if none is recorded
+         */
+        long percentile(final double fraction) {
+            final long total = count.sum();
+            if (total == 0)
+                return 0;
+
+            final long target = Math.max(1, (long) Math.ceil(fraction * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= target)
+                    return Math.min(highestIn(i), max.get());
+            }
+            return max.get();
+        }
+
+        private static int indexOf(final long micros) {
+            if (micros < SUB_COUNT)
+                return (int) micros;
+
+            final int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BITS;
+            return (shift + 1) * SUB_COUNT + (int) (micros >>> shift) - SUB_COUNT;
+        }
+
+        private static long highestIn(final int index) {
+            if (index < SUB_COUNT)
+                return index;
+
+            final int shift = index / SUB_COUNT - 1;
+            final long top = index % SUB_COUNT + SUB_COUNT;
+            return ((top + 1) << shift) - 1;
+        }
+    }
+}
@@ -1,7 +1,11 @@
 import java.io.*;
 import java.net.Socket;
 import java.util.*;
-import java.util.stream.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rule.Asset;
+import rule.Card;
+import rule.Rules;
 
 /**
  * A player object represents a player in Double Hearts.
@@ -9,42 +13,24 @@ import java.util.stream.*;
  * @author Weizhao Tang
  */
 
-public class Player implements Runnable {
+public class Player {
     private static final String timeLimitTrade = "-1";
     private static final String timeLimitShow = "-1";
     private static final String timeLimitPlay = "-1";
 
-    private final Table table; // table to join
+    private volatile Table table; // table to join, changed only when the player comes back to a held seat
     private BufferedReader in; // in to client
-    private PrintWriter out; // out from client
+    private Connection out; // out from client
 
     private int seatIndex = -1;
     private String name;
-    private Asset assets; // player hand to hold cards
-
-    private boolean normal = true;
-
-    private final CountUpDownLatch framePlayingLatch = new CountUpDownLatch(1);
-    private final CountUpDownLatch frameEndingLatch = new CountUpDownLatch(1);
-
-    private final CountUpDownLatch seatLatch = new CountUpDownLatch(1);
-    private final CountUpDownLatch readyLatch = new CountUpDownLatch(1);
-    private final CountUpDownLatch dealLatch = new CountUpDownLatch(1);
-    private final CountUpDownLatch tradeLatch = new CountUpDownLatch(1);
-    private final CountUpDownLatch showLatch = new CountUpDownLatch(1);
-    private final CountUpDownLatch cardLatch = new CountUpDownLatch(1);
+    private final Asset assets = new Asset(); // player hand to hold cards
+    private volatile boolean detached = false; // set once the client has gone offline
+    private final AtomicLong messagesIn = new AtomicLong(); // messages from the client
+    private final AtomicLong messagesOut = new AtomicLong(); // messages to the client
 
-    private final ArrayList<Card> playedCards = new ArrayList<>();
-
-    private WaitStatus status = WaitStatus.SITDOWN;
-
-    private Thread main;
     private final Thread listenerThread;
 
-    private enum WaitStatus {
-        SITDOWN, READY, ALLDEALT, TRADE, SHOW, PLAY,
-    }
-
     /**
      * Constructor for Player object.
      *
@@ -54,49 +40,55 @@ public class Player implements Runnable {
 
     public Player(final Socket socket, final Table table) {
         this.table = table;
-        listenerThread = new Thread(new Listener());
+        listenerThread = Server.newThread(new Listener());
         try {
             final InputStreamReader isr = new InputStreamReader(socket.getInputStream(), "UTF-8"); // input stream
                                                                                                    // reader from
             // socket
 
             in = new BufferedReader(isr);
-            out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"), true);
+            final PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"), true);
+            out = new Connection() {
+                @Override
+                public void send(final String line) {
+                    writer.println(line);
+                }
+
+                @Override
+                public void close() {
+                    try {
+                        socket.close(); // also ends the listener
+                    } catch (final IOException e) {
+                        // Nothing more can be done about the socket
+                    }
+                }
+            };
         } catch (final IOException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * Player thread run method.
+     * Constructor for Player object whose messages are read and written by a
+     * {@link SelectorFrontEnd}.
+     *
+     * @param connection Connection to the client
+     * @param table      Table the player joined
      */
 
-    @Override
-    public void run() {
-        sendToClient("WELCOME", String.valueOf(Card.baseScore), String.format("%.1f", Card.MULT_EXP),
-                String.format("%.1f", Card.MULT_GET));
-
-        main = Thread.currentThread();
-        assets = new Asset();
-
-        listenerThread.start();
-        resetFrame();
+    public Player(final Connection connection, final Table table) {
+        this.table = table;
+        listenerThread = null;
+        out = connection;
+    }
 
-        try {
-            seatLatch.await();
-        } catch (final InterruptedException e) {
-            e.printStackTrace();
-            return;
-        }
+    /**
+     * Starts reading messages from the client, if the player owns its socket.
+     */
 
-        do {
-            try {
-                playPigFrame();
-            } catch (final InterruptedException e) {
-                System.err.println("Player " + seatIndex + " \"" + name + "\" interrupted");
-                resetFrame();
-            }
-        } while (normal);
+    public void start() {
+        if (listenerThread != null)
+            listenerThread.start();
     }
 
     private class Listener implements Runnable {
@@ -104,132 +96,224 @@ public class Player implements Runnable {
             String clientMessage;
 
             try {
-                while (true) {
-                    if ((clientMessage = in.readLine()) != null) {
-                        parseMessage(clientMessage);
-                    }
+                while ((clientMessage = in.readLine()) != null) {
+                    receive(clientMessage);
                 }
             } catch (final IOException e) {
-                normal = false;
-                main.interrupt();
-                table.dealWithConnectionLoss(Player.this, seatIndex);
+                // A broken stream is handled the same as a closed one
             }
+            connectionLost();
         }
     }
 
+    /**
+     * Queues a message from the client to be processed by the table.
+     *
+     * @param clientMessage Message without line terminator
+     */
+    public void receive(final String clientMessage) {
+        table.execute(() -> parseMessage(clientMessage));
+    }
+
+    /**
+     * Queues the removal of the player after the client has gone offline.
+     */
+    public void connectionLost() {
+        final Table current = table;
+        current.execute(() -> current.dealWithConnectionLoss(this, seatIndex));
+    }
+
+    public long messagesIn() {
+        return messagesIn.get();
+    }
+
+    public long messagesOut() {
+        return messagesOut.get();
+    }
+
+    public Table getTable() {
+        return table;
+    }
+
+    /**
+     * Moves the player to the table of its session, or to the recovered table
+     * that keeps a seat for its name. Called by the table it leaves, before the
+     * player is added to the other one.
+     *
+     * @param other Table the player moves to
+     */
+    public void moveTo(final Table other) {
+        table = other;
+    }
+
+    /**
+     * Stops sending messages and closes the connection, once the client has
+     * gone offline and its seat is held for it, or another connection has
+     * taken the seat over.
+     */
+    public void detach() {
+        detached = true;
+        out.close();
+    }
+
+    public boolean isDetached() {
+        return detached;
+    }
+
+    /**
+     * Takes over the assets of the player whose seat this player comes back to.
+     *
+     * @param other Player that dropped offline
+     */
+    public void takeOver(final Player other) {
+        assets.cards.addAll(other.assets.cards);
+    }
+
+    /**
+     * Seats the player and tells the client, with the token that lets it take
+     * the seat back after a reconnection.
+     *
+     * @param seat Seat taken
+     * @param name Name of the player
+     */
+    public void takeSeat(final int seat, final String name) {
+        this.name = name;
+        seatIndex = seat;
+        sendToClient("TAKESEAT", String.valueOf(seat), table.sessionToken(seat));
+    }
+
     private void parseMessage(final String clientMessage) {
+        final TableEvents.Message event = new TableEvents.Message();
+        event.begin();
         final String[] items = clientMessage.split(Server.RECV_DELIM);
+        messagesIn.incrementAndGet();
+        Metrics.messageIn();
+        handleMessage(items);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.set(table, seatIndex);
+            event.type = items.length < 2 ? "" : items[1];
+            event.commit();
+        }
+    }
 
+    private void handleMessage(final String[] items) {
         if (Server.TEST_MODE)
             System.err.println("From Client: " + seatIndex + " \"" + name + "\": " + String.join(", ", items));
 
-        if (!status.toString().equals(items[1])) {
-            System.err.println("Warning: improbable message \"" + items[1] + "\" under status " + status);
+        if (items.length < 2) {
+            System.err.println("Warning: message not recognized");
+            return;
         }
 
         switch (items[1]) {
             case "SITDOWN":
                 final int seat = Integer.parseInt(items[2]);
                 final int avtIndex = Integer.parseInt(items[3]);
-                name = items[4];
-                if (table.sitDown(Player.this, seat, avtIndex, name)) {
-                    sendToClient("TAKESEAT", items[2]);
-                    seatIndex = seat;
+                if (seatIndex < 0 && table.sendToReservedSeat(this, avtIndex, items[4])) {
+                    break; // the recovered table keeping a seat for the name seats the player
+                } else if (seatIndex < 0 && table.sitDown(this, seat, avtIndex, items[4])) {
+                    takeSeat(seat, items[4]);
+                    if (table.awaitsReady())
+                        sendNewFrame();
                 } else {
-                    sendToClient("DONOTSIT");
+                    sendDoNotSit();
                 }
-                seatLatch.countDown();
+                break;
+            case "REJOIN":
+                if (seatIndex < 0 && items.length > 2)
+                    table.rejoin(this, items[2]);
+                else
+                    sendDoNotSit();
                 break;
             case "READY":
-                table.broadcastReady(seatIndex);
-                dealLatch.reset();
-                readyLatch.countDown();
+                table.onReady(seatIndex);
                 break;
             case "ALLDEALT":
-                tradeLatch.reset();
-                showLatch.reset();
-                dealLatch.countDown();
+                table.onAllDealt(seatIndex);
                 break;
             case "TRADE":
-                table.broadcastTradeReady(seatIndex);
-                for (int i = 0; i < 3; i++) {
-                    table.tradeOut[seatIndex][i] = items[2 + i];
-                }
-                showLatch.reset();
-                tradeLatch.countDown();
+                table.onTrade(seatIndex, getSubStrArray(items, 2));
                 break;
             case "SHOW":
-                table.broadcastExposed(seatIndex, getSubStrArray(items, 2));
-                cardLatch.reset();
-                showLatch.countDown();
+                table.onShow(seatIndex, getSubStrArray(items, 2));
                 break;
             case "PLAY":
-                playedCards.clear();
-                for (int i = 2; i < items.length; i++)
-                    playedCards.add(new Card(items[i]));
+                final ArrayList<Card> playedCards = new ArrayList<>();
+                try {
+                    for (int i = 2; i < items.length; i++)
+                        playedCards.add(Card.of(items[i]));
+                } catch (final NumberFormatException e) {
+                    System.err.println("Warning: illegal message \"PLAY\" from seat " + seatIndex + ": "
+                            + e.getMessage());
+                    sendIllegal("PLAY", Rules.Violation.NOT_IN_HAND.name());
+                    break;
+                }
 
-                cardLatch.countDown();
+                table.onPlay(seatIndex, playedCards);
                 break;
             default:
                 System.err.println("Warning: message not recognized");
         }
     }
 
-    private void playPigFrame() throws InterruptedException {
-        sendToClient("NEWFRAME");
-
-        status = WaitStatus.READY;
-        readyLatch.await();
-        table.roundReadyLatchCountDown();
-
-        status = WaitStatus.ALLDEALT;
-        dealLatch.await();
-        table.allCardsDealtLatchCountDown();
-
-        if (table.getTradeGap() != 0) {
-            status = WaitStatus.TRADE;
-            tradeLatch.await();
-            table.tradeLatchCountDown();
-        }
-
-        status = WaitStatus.SHOW;
-        showLatch.await();
-        table.exhibitionLatchCountDown();
-
-        framePlayingLatch.await();
-        status = WaitStatus.PLAY;
+    public void sendWelcome() {
+        sendToClient("WELCOME", String.valueOf(Card.getBaseScore()), String.format("%.1f", Card.MULT_EXP),
+                String.format("%.1f", Card.MULT_GET));
+    }
 
-        frameEndingLatch.await();
+    public void sendNewFrame() {
+        sendToClient("NEWFRAME");
+    }
 
-        resetFrame();
+    /**
+     * Tells the client that the table was recovered and the frame goes on. The
+     * messages that follow bring the client up to date without asking it to
+     * repeat moves it has made.
+     *
+     * @param phase      Phase of the frame, or DEALT if the seat already has its
+     *                   hand
+     * @param leader     Seat that leads the current round, or -1 if none yet
+     * @param numPlayed  Number of plays already made in the current round
+     * @param totalScore Total scores of all seats
+     */
+    public void sendResume(final String phase, final int leader, final int numPlayed, final String totalScore) {
+        sendToClient("RESUME", phase, String.valueOf(leader), String.valueOf(numPlayed), totalScore);
+    }
 
-        sendToClient("ENDFRAME", table.getTotalScore());
+    public void sendEndFrame(final String totalScore) {
+        sendToClient("ENDFRAME", totalScore);
     }
 
     public void addCard(final Card card) {
         sendToClient("ADD", card.fullAlias());
     }
 
+    /**
+     * Sends a whole hand in one message.
+     *
+     * @param compactHand Concatenated short aliases of all cards in the hand
+     */
+    public void sendHand(final String compactHand) {
+        sendToClient("HAND", compactHand);
+    }
+
     public void addAsset(final ArrayList<Card> cards) {
         for (final Card card : cards)
             assets.addAsset(card);
     }
 
+    public List<Card> getAssets() {
+        return assets.cards;
+    }
+
     public int getScore() {
         return assets.getScore(table.numDecks());
     }
 
-    private void resetFrame() {
+    public void resetFrame() {
         assets.clear();
-
-        framePlayingLatch.reset();
-        frameEndingLatch.reset();
-
-        readyLatch.reset();
-        dealLatch.reset();
-        tradeLatch.reset();
-        showLatch.reset();
-        cardLatch.reset();
     }
 
     public void sendSeating(final int seatIndex, final int avtIndex, final String name) {
@@ -277,22 +361,32 @@ public class Player implements Runnable {
         sendToClient("ASSET", timeLimitPlay, String.valueOf(seatIndex), Card.concatCards(Server.SEND_DELIM, cards));
     }
 
-    public void sendReset(final int seatIndex) {
-        sendToClient("CONNRESET", String.valueOf(seatIndex));
+    /**
+     * Tells the client that its move was turned down.
+     *
+     * @param message   Type of the rejected message
+     * @param violation Broken rule
+     */
+    public void sendIllegal(final String message, final String violation) {
+        sendToClient("ILLEGAL", message, violation);
     }
 
-    public ArrayList<Card> playTurn() throws InterruptedException {
-        cardLatch.await();
-        cardLatch.reset();
-        return playedCards;
+    public void sendDoNotSit() {
+        sendToClient("DONOTSIT");
     }
 
-    public void framePlayingLatchCountDown() {
-        framePlayingLatch.countDown();
+    /**
+     * Tells the client that a player dropped offline and its seat is held for
+     * it.
+     *
+     * @param seatIndex Seat of the dropped player
+     */
+    public void sendAway(final int seatIndex) {
+        sendToClient("AWAY", String.valueOf(seatIndex));
     }
 
-    public void frameEndingLatchCountDown() {
-        frameEndingLatch.countDown();
+    public void sendReset(final int seatIndex) {
+        sendToClient("CONNRESET", String.valueOf(seatIndex));
     }
 
     private String[] getSubStrArray(final String[] items, final int start) {
@@ -300,10 +394,29 @@ public class Player implements Runnable {
     }
 
     private void sendToClient(final String... msgs) {
+        if (detached)
+            return;
+
         if (!msgs[0].equals("ADD") && Server.TEST_MODE)
             System.err.println("To Client " + seatIndex + " \"" + name + "\": " + String.join(", ", msgs));
 
-        out.println(Stream.concat(Stream.of(Server.SEND_PREFIX), Arrays.asList(msgs).stream()).filter(m -> !m.isEmpty())
-                .collect(Collectors.joining(Server.SEND_DELIM)));
+        final StringBuilder builder = new StringBuilder(Server.SEND_PREFIX);
+        for (final String msg : msgs) {
+            if (!msg.isEmpty())
+                builder.append(Server.SEND_DELIM).append(msg);
+        }
+        final TableEvents.Message event = new TableEvents.Message();
+        event.begin();
+        out.send(builder.toString());
+        messagesOut.incrementAndGet();
+        Metrics.messageOut();
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.set(table, seatIndex);
+            event.type = msgs[0];
+            event.outgoing = true;
+            event.commit();
+        }
     }
-}
\ No newline at end of file
+}
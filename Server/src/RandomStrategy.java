@@ -0,0 +1,46 @@
+import java.util.*;
+
+import rule.Card;
+import rule.CardSet;
+
+/**
+ * A {@code RandomStrategy} passes random cards, shows nothing, and plays a
+ * random legal play. It is the baseline other strategies are measured against.
+ *
+ * @author Weizhao Tang
+ */
+public class RandomStrategy implements Strategy {
+    private final SplittableRandom random;
+
+    /**
+     * Constructor for RandomStrategy object.
+     *
+     * @param random Random generator, used by one thread only
+     */
+    public RandomStrategy(final SplittableRandom random) {
+        this.random = random;
+    }
+
+    @Override
+    public List<Card> trade(final Deal.View view, final int numCards) {
+        final CardSet hand = view.hand();
+        final ArrayList<Card> traded = new ArrayList<>(numCards);
+        while (traded.size() < numCards) {
+            final Card card = Card.fromWeight(random.nextInt(CardSet.NUM_KINDS));
+            if (hand.remove(card))
+                traded.add(card);
+        }
+        return traded;
+    }
+
+    @Override
+    public List<Card> show(final Deal.View view) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<Card> play(final Deal.View view) {
+        final ArrayList<List<Card>> plays = view.legalPlays();
+        return plays.get(random.nextInt(plays.size()));
+    }
+}
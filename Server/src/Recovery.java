@@ -0,0 +1,338 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+
+import rule.Card;
+import rule.CardSet;
+import rule.Rules;
+
+/**
+ * A {@code Recovery} reads what a table left in its {@link Journal} when the
+ * server stopped without retiring it: the seats, names and totals from the last
+ * snapshot, and the frame in flight from the records after it. The frame is
+ * played again on a {@link Deal}, which gives the hands, trades, shows, the
+ * round in progress and the assets, so that the table can go on where it
+ * stopped once its players are back. The header points at the last snapshot,
+ * so only the records after it are read, and a table is read in well under a
+ * millisecond however long it ran. A journal whose header points nowhere
+ * valid, as after a crash in the middle of a commit, is walked from its first
+ * record instead.
+ *
+ * @author Weizhao Tang
+ */
+public class Recovery {
+    private static final int NUM_SEATS = Deal.NUM_SEATS;
+
+    private final Path path;
+    private final int tableId;
+    private final int numDecks;
+    private long length; // length of the whole records in the file
+    private boolean closed = false;
+
+    private int frameNum = 0;
+    private final int[] totals = new int[NUM_SEATS];
+    private final int[] avtIndices = { -1, -1, -1, -1 };
+    private final String[] names = new String[NUM_SEATS];
+
+    // Frame in flight, if any
+    private boolean inFrame = false;
+    private int tradeGap;
+    private final CardSet[] dealt = new CardSet[NUM_SEATS];
+    private final ArrayList<Integer> tradeSeats = new ArrayList<>();
+    private final ArrayList<List<Card>> trades = new ArrayList<>();
+    private final ArrayList<Integer> showSeats = new ArrayList<>();
+    private final ArrayList<List<Card>> shows = new ArrayList<>();
+    private int firstLeader = -1;
+    private final ArrayList<List<Card>> plays = new ArrayList<>();
+    private int numTricks = 0;
+    private Deal deal;
+
+    private Recovery(final Path path, final int tableId, final int numDecks) {
+        this.path = path;
+        this.tableId = tableId;
+        this.numDecks = numDecks;
+        for (int i = 0; i < NUM_SEATS; i++)
+            dealt[i] = new CardSet();
+    }
+
+    /**
+     * Reads the journal of a table.
+     *
+     * @param path Path of the journal file
+     * @return what the table left
+     * @throws IOException if the file cannot be read or is not a journal
+     */
+    public static Recovery read(final Path path) throws IOException {
+        final ByteBuffer buffer = Journal.map(path);
+        final Recovery recovery = new Recovery(path, buffer.getInt(), buffer.get());
+        final int first = buffer.getInt(0) + 4;
+        if (first < Journal.LAST_SNAPSHOT + 8 || first > buffer.limit())
+            throw new IOException(path + " has no whole header");
+
+        // Find the end of the whole records by their lengths alone, from the last snapshot if the header points at
+        // one, and note any later snapshot on the way
+        final long snapshot = buffer.getLong(Journal.LAST_SNAPSHOT);
+        int start = isSnapshot(buffer, snapshot, first) ? (int) snapshot : first;
+        buffer.position(start);
+        while (buffer.remaining() >= 4 + 1) {
+            final int position = buffer.position();
+            final int length = buffer.getInt();
+            if (length < 1 || buffer.remaining() < length) {
+                buffer.position(position);
+                break;
+            }
+            if (buffer.get(buffer.position()) == Journal.SNAPSHOT)
+                start = position;
+            buffer.position(buffer.position() + length);
+        }
+        recovery.length = buffer.position();
+
+        buffer.position(start);
+        while (buffer.position() < recovery.length) {
+            final int end = buffer.getInt() + buffer.position();
+            recovery.apply(buffer.get(), buffer);
+            buffer.position(end);
+        }
+        recovery.replayFrame();
+        return recovery;
+    }
+
+    /**
+     * Tells if a whole snapshot record starts at an offset of a journal.
+     */
+    private static boolean isSnapshot(final ByteBuffer buffer, final long offset, final int first) {
+        if (offset < first || offset > buffer.limit() - 4 - 1)
+            return false;
+
+        final int length = buffer.getInt((int) offset);
+        return length >= 1 && length <= buffer.limit() - offset - 4
+                && buffer.get((int) offset + 4) == Journal.SNAPSHOT;
+    }
+
+    private void apply(final byte type, final ByteBuffer buffer) {
+        switch (type) {
+            case Journal.SNAPSHOT:
+                frameNum = buffer.getInt();
+                for (int i = 0; i < NUM_SEATS; i++)
+                    totals[i] = buffer.getInt();
+                for (int i = 0; i < NUM_SEATS; i++) {
+                    avtIndices[i] = buffer.get();
+                    final String name = readName(buffer);
+                    names[i] = avtIndices[i] < 0 ? null : name;
+                }
+                break;
+            case Journal.SEAT: {
+                final int seat = buffer.get();
+                avtIndices[seat] = buffer.get();
+                names[seat] = readName(buffer);
+                break;
+            }
+            case Journal.LEAVE: {
+                // Like Table.dealWithConnectionLoss
+                final int seat = buffer.get();
+                avtIndices[seat] = -1;
+                names[seat] = null;
+                frameNum = 0;
+                Arrays.fill(totals, 0);
+                inFrame = false;
+                break;
+            }
+            case Journal.ABORT:
+                inFrame = false;
+                break;
+            case Journal.FRAME:
+                inFrame = true;
+                frameNum = buffer.getInt();
+                tradeGap = buffer.get();
+                for (final CardSet hand : dealt)
+                    hand.clear();
+                tradeSeats.clear();
+                trades.clear();
+                showSeats.clear();
+                shows.clear();
+                firstLeader = -1;
+                plays.clear();
+                numTricks = 0;
+                break;
+            case Journal.DEAL: {
+                final int starter = buffer.get();
+                final int numCards = buffer.get() & 0xff;
+                for (int i = 0; i < numCards; i++)
+                    dealt[(starter + i) % NUM_SEATS].add(buffer.get());
+                break;
+            }
+            case Journal.TRADE:
+                tradeSeats.add((int) buffer.get());
+                trades.add(readCards(buffer));
+                break;
+            case Journal.SHOW:
+                showSeats.add((int) buffer.get());
+                shows.add(readCards(buffer));
+                break;
+            case Journal.LEADER:
+                firstLeader = buffer.get();
+                break;
+            case Journal.PLAY:
+                buffer.get();
+                plays.add(readCards(buffer));
+                break;
+            case Journal.TRICK:
+                numTricks++;
+                break;
+            case Journal.SCORES:
+                for (int i = 0; i < NUM_SEATS; i++)
+                    totals[i] += buffer.getInt();
+                frameNum++;
+                inFrame = false;
+                break;
+            case Journal.CLOSE:
+                closed = true;
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static String readName(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.get() & 0xff];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static List<Card> readCards(final ByteBuffer buffer) {
+        final int numCards = buffer.get() & 0xff;
+        final ArrayList<Card> cards = new ArrayList<>(numCards);
+        for (int i = 0; i < numCards; i++)
+            cards.add(Card.fromWeight(buffer.get()));
+        return cards;
+    }
+
+    /**
+     * Plays the frame in flight again. A frame whose deal was not recorded, or
+     * that does not play, is dropped, and the table waits for a new one.
+     */
+    private void replayFrame() {
+        if (!inFrame || dealt[0].isEmpty())
+            return;
+
+        deal = new Deal(numDecks, tradeGap, dealt);
+        try {
+            for (int i = 0; i < trades.size(); i++)
+                check(deal.trade(tradeSeats.get(i), trades.get(i)));
+            for (int i = 0; i < shows.size(); i++)
+                check(deal.show(showSeats.get(i), shows.get(i)));
+            if (firstLeader >= 0) {
+                deal.openPlay(firstLeader);
+                for (final List<Card> play : plays)
+                    check(deal.play(play));
+            }
+        } catch (final IllegalStateException e) {
+            System.err.println("Warning: frame in flight of " + path + " is dropped: " + e.getMessage());
+            deal = null;
+        }
+    }
+
+    private static void check(final Rules.Violation violation) {
+        if (violation != Rules.Violation.NONE)
+            throw new IllegalStateException("illegal move: " + violation);
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public int tableId() {
+        return tableId;
+    }
+
+    public int numDecks() {
+        return numDecks;
+    }
+
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Tells if the table was retired, so that there is nothing to recover.
+     *
+     * @return {@code true} if the journal was closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Tells if anybody was seated at the table when it stopped.
+     *
+     * @return {@code true} if some seat was taken
+     */
+    public boolean hasPlayers() {
+        return Arrays.stream(names).anyMatch(Objects::nonNull);
+    }
+
+    public int frameNum() {
+        return frameNum;
+    }
+
+    public int[] totals() {
+        return totals.clone();
+    }
+
+    public int avtIndex(final int seat) {
+        return avtIndices[seat];
+    }
+
+    public String name(final int seat) {
+        return names[seat];
+    }
+
+    /**
+     * Returns the frame in flight, played up to where the table stopped.
+     *
+     * @return the deal, or {@code null} if no frame was in flight
+     */
+    public Deal deal() {
+        return deal;
+    }
+
+    public int tradeGap() {
+        return tradeGap;
+    }
+
+    public CardSet dealt(final int seat) {
+        return new CardSet(dealt[seat]);
+    }
+
+    public List<Integer> tradeSeats() {
+        return Collections.unmodifiableList(tradeSeats);
+    }
+
+    public List<List<Card>> trades() {
+        return Collections.unmodifiableList(trades);
+    }
+
+    public List<Integer> showSeats() {
+        return Collections.unmodifiableList(showSeats);
+    }
+
+    public List<List<Card>> shows() {
+        return Collections.unmodifiableList(shows);
+    }
+
+    public int firstLeader() {
+        return firstLeader;
+    }
+
+    /**
+     * Tells if the last round of the frame in flight was played out but its
+     * winner was not recorded.
+     *
+     * @return {@code true} if the winner of the last round is missing
+     */
+    public boolean isTrickUnrecorded() {
+        return deal != null && plays.size() / Deal.NUM_SEATS > numTricks;
+    }
+}
@@ -0,0 +1,552 @@
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+import rule.Asset;
+import rule.Card;
+import rule.CardSet;
+import rule.Rules;
+
+/**
+ * A {@code Replay} rebuilds the frames recorded in a {@link Journal} by playing
+ * them again on a {@link Deal}, which resolves rounds by
+ * {@link Card#roundResult} and scores assets by {@link Asset#getScore} just like
+ * a table, and checks the recorded winners and scores along the way. A copy of
+ * the deal is kept every {@link #SNAPSHOT_INTERVAL} rounds, so the state at any
+ * round boundary is found by copying the snapshot before it and playing at most
+ * that many rounds.
+ * <p>
+ * From the command line, a replay either prints the state at a round, or serves
+ * the frames from that round on over the server protocol at any speed, so that
+ * the GUI client or a headless bot can watch them from the seat it takes.
+ *
+ * @author Weizhao Tang
+ */
+public class Replay {
+    public static final int SNAPSHOT_INTERVAL = 4; // rounds between snapshots of a frame
+
+    private static final int NUM_SEATS = Deal.NUM_SEATS;
+    private static final long PLAY_MILLIS = 800; // pause between plays at speed 1
+    private static final String NO_LIMIT = "-1"; // time limit sent with each step, as a table does
+
+    private final int tableId;
+    private final int numDecks;
+    private final long seed;
+    private final ArrayList<Frame> frames = new ArrayList<>();
+
+    private Replay(final int tableId, final int numDecks, final long seed) {
+        this.tableId = tableId;
+        this.numDecks = numDecks;
+        this.seed = seed;
+    }
+
+    /**
+     * A frame as recorded, with snapshots of its state during play.
+     */
+    public static class Frame {
+        private final int frameNum;
+        private final int tradeGap;
+        private final CardSet[] dealt = new CardSet[NUM_SEATS];
+        private final ArrayList<Integer> tradeSeats = new ArrayList<>(); // in the order the table took them
+        private final ArrayList<List<Card>> trades = new ArrayList<>();
+        private final ArrayList<Integer> showSeats = new ArrayList<>();
+        private final ArrayList<List<Card>> shows = new ArrayList<>();
+        private int firstLeader = -1;
+        private final ArrayList<Integer> playSeats = new ArrayList<>();
+        private final ArrayList<List<Card>> plays = new ArrayList<>();
+        private final ArrayList<Integer> winners = new ArrayList<>();
+        private int[] scores; // null unless the frame was finished
+        private final int[] totals = new int[NUM_SEATS]; // total scores after the frame, since the last abort
+        private final ArrayList<Deal> snapshots = new ArrayList<>();
+
+        private Frame(final int frameNum, final int tradeGap) {
+            this.frameNum = frameNum;
+            this.tradeGap = tradeGap;
+            for (int i = 0; i < NUM_SEATS; i++)
+                dealt[i] = new CardSet();
+        }
+
+        public int frameNum() {
+            return frameNum;
+        }
+
+        public int numRounds() {
+            return plays.size() / NUM_SEATS;
+        }
+
+        public boolean isFinished() {
+            return scores != null;
+        }
+
+        public int[] scores() {
+            return scores == null ? null : scores.clone();
+        }
+    }
+
+    /**
+     * Reads a journal and rebuilds its frames. The scoring settings of the
+     * journal are applied to {@link Card}, since a replay runs on its own. A
+     * record cut short at the end, as left by a crash, ends the journal.
+     *
+     * @param path Path of the journal file
+     * @return the replay
+     * @throws IOException if the file cannot be read or is not a journal
+     */
+    public static Replay load(final Path path) throws IOException {
+        final ByteBuffer buffer = Journal.map(path);
+        final Replay replay = new Replay(buffer.getInt(), buffer.get(), buffer.getLong());
+        Card.setBaseScore(buffer.getInt());
+        Card.MULT_EXP = buffer.getDouble();
+        Card.MULT_GET = buffer.getDouble();
+        buffer.getLong();
+
+        Frame frame = null;
+        final int[] totals = new int[NUM_SEATS];
+        while (buffer.remaining() >= 4) {
+            final int length = buffer.getInt();
+            if (length < 1 || buffer.remaining() < length) {
+                System.err.println("Warning: journal " + path + " ends with a partial record");
+                break;
+            }
+
+            final int end = buffer.position() + length;
+            final byte type = buffer.get();
+            if (frame == null && type != Journal.FRAME && type != Journal.LEAVE) {
+                buffer.position(end);
+                continue;
+            }
+            switch (type) {
+                case Journal.FRAME:
+                    replay.finish(frame);
+                    frame = new Frame(buffer.getInt(), buffer.get());
+                    break;
+                case Journal.DEAL: {
+                    final int starter = buffer.get();
+                    final List<Card> cards = readCards(buffer);
+                    for (int i = 0; i < cards.size(); i++)
+                        frame.dealt[(starter + i) % NUM_SEATS].add(cards.get(i));
+                    break;
+                }
+                case Journal.TRADE:
+                    frame.tradeSeats.add((int) buffer.get());
+                    frame.trades.add(readCards(buffer));
+                    break;
+                case Journal.SHOW:
+                    frame.showSeats.add((int) buffer.get());
+                    frame.shows.add(readCards(buffer));
+                    break;
+                case Journal.LEADER:
+                    frame.firstLeader = buffer.get();
+                    break;
+                case Journal.PLAY:
+                    frame.playSeats.add((int) buffer.get());
+                    frame.plays.add(readCards(buffer));
+                    break;
+                case Journal.TRICK:
+                    frame.winners.add((int) buffer.get());
+                    break;
+                case Journal.SCORES:
+                    frame.scores = new int[NUM_SEATS];
+                    for (int i = 0; i < NUM_SEATS; i++) {
+                        frame.scores[i] = buffer.getInt();
+                        totals[i] += frame.scores[i];
+                    }
+                    System.arraycopy(totals, 0, frame.totals, 0, NUM_SEATS);
+                    break;
+                case Journal.ABORT:
+                    break;
+                case Journal.LEAVE:
+                    Arrays.fill(totals, 0);
+                    break;
+                case Journal.SEAT:
+                case Journal.SNAPSHOT:
+                case Journal.CLOSE:
+                case Journal.RECOVER:
+                    break;
+                default:
+                    System.err.println("Warning: journal " + path + " has a record of unknown type " + type);
+                    break;
+            }
+            buffer.position(end);
+        }
+        replay.finish(frame);
+        return replay;
+    }
+
+    private static List<Card> readCards(final ByteBuffer buffer) {
+        final int numCards = buffer.get() & 0xff;
+        final ArrayList<Card> cards = new ArrayList<>(numCards);
+        for (int i = 0; i < numCards; i++)
+            cards.add(Card.fromWeight(buffer.get()));
+        return cards;
+    }
+
+    /**
+     * Plays a frame again, taking snapshots, and keeps it if it agrees with the
+     * record.
+     */
+    private void finish(final Frame frame) {
+        if (frame == null || frame.firstLeader < 0)
+            return;
+
+        try {
+            final Deal deal = new Deal(numDecks, frame.tradeGap, frame.dealt);
+            for (int i = 0; i < frame.trades.size(); i++)
+                check(deal.trade(frame.tradeSeats.get(i), frame.trades.get(i)), "trade");
+            for (int i = 0; i < frame.shows.size(); i++)
+                check(deal.show(frame.showSeats.get(i), frame.shows.get(i)), "show");
+            deal.openPlay(frame.firstLeader);
+
+            final Deal.View view = deal.view(0);
+            for (int round = 0; round <= frame.numRounds(); round++) {
+                if (round % SNAPSHOT_INTERVAL == 0)
+                    frame.snapshots.add(new Deal(deal));
+                if (round == frame.numRounds())
+                    break;
+
+                for (int i = round * NUM_SEATS; i < (round + 1) * NUM_SEATS; i++) {
+                    if (deal.turn() != frame.playSeats.get(i))
+                        throw new IllegalStateException("seat " + frame.playSeats.get(i) + " played out of turn");
+                    check(deal.play(frame.plays.get(i)), "play");
+                }
+                if (round < frame.winners.size() && view.leader() != frame.winners.get(round))
+                    throw new IllegalStateException("round " + round + " won by seat " + view.leader()
+                            + " instead of " + frame.winners.get(round));
+            }
+
+            if (frame.isFinished() && !Arrays.equals(deal.scores(), frame.scores))
+                throw new IllegalStateException("scores " + Arrays.toString(deal.scores()) + " instead of "
+                        + Arrays.toString(frame.scores));
+        } catch (final IllegalStateException e) {
+            System.err.println("Warning: frame " + frame.frameNum + " of table " + tableId + " does not replay: "
+                    + e.getMessage());
+            return;
+        }
+        frames.add(frame);
+    }
+
+    private static void check(final Rules.Violation violation, final String move) {
+        if (violation != Rules.Violation.NONE)
+            throw new IllegalStateException("illegal " + move + ": " + violation);
+    }
+
+    public int numFrames() {
+        return frames.size();
+    }
+
+    public Frame frame(final int index) {
+        return frames.get(index);
+    }
+
+    /**
+     * Returns the state of a frame at the start of a round, or after its last
+     * round.
+     *
+     * @param index Index of the frame in the journal
+     * @param round Number of rounds played before, from 0 to
+     *              {@link Frame#numRounds}
+     * @return a deal in that state, which the caller may play on
+     */
+    public Deal seek(final int index, final int round) {
+        final Frame frame = frames.get(index);
+        if (round < 0 || round > frame.numRounds())
+            throw new IndexOutOfBoundsException("Round " + round + " of " + frame.numRounds());
+
+        final int snapshot = round / SNAPSHOT_INTERVAL;
+        final Deal deal = new Deal(frame.snapshots.get(snapshot));
+        for (int i = snapshot * SNAPSHOT_INTERVAL * NUM_SEATS; i < round * NUM_SEATS; i++)
+            deal.play(frame.plays.get(i));
+        return deal;
+    }
+
+    /**
+     * Prints the state of a frame at the start of a round.
+     *
+     * @param index Index of the frame in the journal
+     * @param round Number of rounds played before
+     */
+    public void print(final int index, final int round) {
+        final Frame frame = frames.get(index);
+        final Deal deal = seek(index, round);
+        System.out.printf("Table %d with seed %d: frame %d of %d (number %d), round %d of %d%n", tableId, seed,
+                index, frames.size(), frame.frameNum, round, frame.numRounds());
+        for (int seat = 0; seat < NUM_SEATS; seat++) {
+            final Deal.View view = deal.view(seat);
+            System.out.printf("Seat %d%s: hand %s, shown %s, assets %s, score %d%n", seat,
+                    view.leader() == seat ? " (leads)" : "", view.hand(), view.shown(seat),
+                    Card.concatCards(" ", view.assets(seat)), Asset.getScore(view.assets(seat), numDecks));
+        }
+        if (frame.isFinished())
+            System.out.println("Recorded scores " + Arrays.toString(frame.scores) + ", totals "
+                    + Arrays.toString(frame.totals));
+    }
+
+    /**
+     * Serves the frames to every client that connects, starting at a round.
+     *
+     * @param port  Port to listen on
+     * @param index Index of the first frame
+     * @param round Round of the first frame to start at
+     * @param speed Speed relative to a table at play
+     * @throws IOException if the port cannot be listened on
+     */
+    public void serve(final int port, final int index, final int round, final double speed) throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(port)) {
+            System.out.println("Replaying " + frames.size() + " frames of table " + tableId + " on port " + port);
+            while (true) {
+                final Socket socket = serverSocket.accept();
+                Server.newThread(new Session(socket, index, round, speed)).start();
+            }
+        }
+    }
+
+    /**
+     * The connection of one watching client, which sits at a seat and is sent
+     * what a player at that seat was sent.
+     */
+    private class Session implements Runnable {
+        private final Socket socket;
+        private final int firstIndex;
+        private final int firstRound;
+        private final long pauseMillis;
+        private PrintWriter out;
+        private int seat = -1;
+
+        Session(final Socket socket, final int firstIndex, final int firstRound, final double speed) {
+            this.socket = socket;
+            this.firstIndex = firstIndex;
+            this.firstRound = firstRound;
+            pauseMillis = (long) (PLAY_MILLIS / speed);
+        }
+
+        @Override
+        public void run() {
+            try (socket) {
+                final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+                out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"), true);
+
+                send("WELCOME", String.valueOf(Card.getBaseScore()), String.format("%.1f", Card.MULT_EXP),
+                        String.format("%.1f", Card.MULT_GET));
+                if (!await(in, "SITDOWN"))
+                    return;
+                if (!await(in, "READY"))
+                    return;
+
+                // Whatever else the client says is not needed
+                final Thread drain = Server.newThread(() -> {
+                    try {
+                        while (in.readLine() != null)
+                            ;
+                    } catch (final IOException e) {
+                        // The stream is closed with the socket
+                    }
+                });
+                drain.setDaemon(true);
+                drain.start();
+
+                for (int index = firstIndex; index < frames.size() && !out.checkError(); index++)
+                    stream(index, index == firstIndex ? firstRound : 0);
+            } catch (final IOException | InterruptedException e) {
+                // The client left
+            }
+        }
+
+        /**
+         * Reads messages until one of a type, answering a seat request on the
+         * way.
+         *
+         * @return {@code true} if the message came; {@code false} if the client
+         *         left
+         */
+        private boolean await(final BufferedReader in, final String type) throws IOException {
+            String line;
+            while ((line = in.readLine()) != null) {
+                final String[] items = line.split(Server.RECV_DELIM);
+                if (items.length < 2)
+                    continue;
+
+                if (items[1].equals("SITDOWN") && seat < 0 && items.length >= 5) {
+                    try {
+                        seat = Integer.parseInt(items[2]);
+                    } catch (final NumberFormatException e) {
+                        continue;
+                    }
+                    if (seat < 0 || seat >= NUM_SEATS) {
+                        seat = -1;
+                        send("DONOTSIT");
+                        continue;
+                    }
+                    send("TAKESEAT", items[2]);
+                    send("NEWFRAME");
+                    for (int i = 0; i < NUM_SEATS; i++) {
+                        if (i != seat)
+                            send("PLAYERINFO", String.valueOf(i), String.valueOf(i), "Seat " + i);
+                    }
+                }
+                if (items[1].equals(type))
+                    return true;
+            }
+            return false;
+        }
+
+        /**
+         * Sends a frame from a round on, the way a table sent it to the seat.
+         */
+        private void stream(final int index, final int round) throws InterruptedException {
+            final Frame frame = frames.get(index);
+            final Deal deal = seek(index, round);
+            final Deal.View view = deal.view(seat);
+
+            for (int i = 0; i < NUM_SEATS; i++)
+                send("ISREADY", String.valueOf(i));
+            send("DEAL", String.valueOf(frame.dealt[seat].size()), String.valueOf(numDecks));
+            if (round == 0) {
+                send("HAND", frame.dealt[seat].toString());
+                if (frame.tradeGap != 0) {
+                    send("TRADESTART", NO_LIMIT, String.valueOf(frame.tradeGap));
+                    for (int i = 0; i < frame.trades.size(); i++) {
+                        send("TRADEREADY", String.valueOf(frame.tradeSeats.get(i)));
+                        if ((frame.tradeSeats.get(i) + frame.tradeGap) % NUM_SEATS == seat)
+                            send("TRADEIN", Card.concatCards(Server.SEND_DELIM, frame.trades.get(i)));
+                    }
+                }
+                send("EXHIBIT", NO_LIMIT);
+            } else {
+                send("HAND", view.hand().toString());
+            }
+
+            // Cards shown after another seat showed the same card carry the suffix of one more level
+            final HashSet<String> exposed = new HashSet<>();
+            for (int i = 0; i < frame.shows.size(); i++) {
+                final ArrayList<String> aliases = new ArrayList<>();
+                for (final Card card : frame.shows.get(i))
+                    aliases.add(card.alias() + (exposed.contains(card.alias()) ? "x" : ""));
+                frame.shows.get(i).forEach(card -> exposed.add(card.alias()));
+                send("SHOWN", String.valueOf(frame.showSeats.get(i)), String.join(Server.SEND_DELIM, aliases));
+            }
+            send("OPENING", NO_LIMIT, String.valueOf(view.leader()));
+            if (round > 0) {
+                // The client takes the seat of the last assets as the leader
+                for (int i = 1; i <= NUM_SEATS; i++) {
+                    final int other = (view.leader() + i) % NUM_SEATS;
+                    if (i == NUM_SEATS || !view.assets(other).isEmpty())
+                        send("ASSET", NO_LIMIT, String.valueOf(other),
+                                Card.concatCards(Server.SEND_DELIM, view.assets(other)));
+                }
+            }
+
+            final ArrayList<Card> asset = new ArrayList<>();
+            for (int i = round * NUM_SEATS; i < frame.plays.size() && !out.checkError(); i++) {
+                Thread.sleep(pauseMillis);
+                final int player = deal.turn();
+                final ArrayList<Card> cards = new ArrayList<>();
+                for (final Card card : frame.plays.get(i)) {
+                    cards.add(Card.fromWeight(card.weight(), view.level(card)));
+                    if (card.isScored())
+                        asset.add(cards.get(cards.size() - 1));
+                }
+                deal.play(frame.plays.get(i));
+                send(i % NUM_SEATS == 0 ? "LEAD" : "FOLLOW", NO_LIMIT, String.valueOf(player),
+                        Card.concatCards(Server.SEND_DELIM, cards));
+
+                if (i % NUM_SEATS == NUM_SEATS - 1) {
+                    Thread.sleep(pauseMillis);
+                    send("ASSET", NO_LIMIT, String.valueOf(view.leader()), Card.concatCards(Server.SEND_DELIM, asset));
+                    asset.clear();
+                }
+            }
+
+            if (frame.isFinished()) {
+                Thread.sleep(pauseMillis);
+                final ArrayList<String> totals = new ArrayList<>();
+                for (final int total : frame.totals)
+                    totals.add(String.valueOf(total));
+                send("ENDFRAME", String.join(Server.SEND_DELIM, totals));
+                send("NEWFRAME");
+            }
+        }
+
+        private void send(final String... items) {
+            final StringBuilder builder = new StringBuilder(Server.SEND_PREFIX);
+            for (final String item : items)
+                builder.append(Server.SEND_DELIM).append(item);
+            out.println(builder.toString());
+        }
+    }
+
+    /**
+     * Main method of the replay tool.
+     *
+     * @param args String array of arguments passed to the tool
+     */
+    public static void main(final String[] args) {
+        final String usage = "Options: -j journalFile [-f frame] [-k round] [-p port] [-x speed]";
+        Path journal = null;
+        int index = 0, round = 0, port = -1;
+        double speed = 1;
+
+        for (int i = 0; i < args.length; i += 2) {
+            final String option = args[i];
+            String argument = null;
+            try {
+                argument = args[i + 1];
+            } catch (final ArrayIndexOutOfBoundsException e) {
+                System.err.println(usage);
+                System.exit(1);
+            }
+            try {
+                switch (option) {
+                    case "-j":
+                        journal = Paths.get(argument);
+                        break;
+                    case "-f":
+                        index = Integer.parseInt(argument);
+                        break;
+                    case "-k":
+                        round = Integer.parseInt(argument);
+                        break;
+                    case "-p":
+                        port = Integer.parseInt(argument);
+                        break;
+                    case "-x":
+                        speed = Double.parseDouble(argument);
+                        if (speed <= 0)
+                            throw new NumberFormatException();
+                        break;
+                    default:
+                        System.err.println(usage);
+                        System.exit(1);
+                        break;
+                }
+            } catch (final NumberFormatException e) {
+                System.err.println("Option " + option + " must be a number, and speed positive");
+                System.exit(1);
+            }
+        }
+        if (journal == null) {
+            System.err.println(usage);
+            System.exit(1);
+        }
+
+        try {
+            final Replay replay = Replay.load(journal);
+            if (index < 0 || index >= replay.numFrames() || round < 0 || round > replay.frame(index).numRounds()) {
+                System.err.println("The journal has " + replay.numFrames() + " frames to replay, and frame " + index
+                        + " does not have round " + round);
+                System.exit(1);
+            }
+
+            if (port < 0)
+                replay.print(index, round);
+            else
+                replay.serve(port, index, round, speed);
+        } catch (final IOException e) {
+            System.err.println("Could not replay " + journal + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@code SelectorFrontEnd} accepts and serves all client connections on one
+ * thread with a non-blocking {@link Selector}. Incoming bytes are framed into
+ * lines and handed to the players as complete messages, so a connection costs
+ * no thread of its own.
+ * <p>
+ * A failure while serving one connection closes that connection only, and a
+ * client that stops reading is dropped once {@link #MAX_OUTBOX_BYTES} bytes
+ * wait for it, so that no client can stop the thread or fill the heap.
+ *
+ * @author Weizhao Tang
+ */
+public class SelectorFrontEnd implements Runnable {
+    private static final int READ_BUFFER_SIZE = 4096;
+    private static final int MAX_LINE_LENGTH = 65536;
+    private static final int MAX_OUTBOX_BYTES = 1 << 20; // unsent bytes at which a client that does not read is dropped
+
+    private final Lobby lobby;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final ConcurrentLinkedQueue<ChannelConnection> pendingFlushes = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Constructor for SelectorFrontEnd object.
+     *
+     * @param serverPort Server port
+     * @param lobby      Lobby that assigns accepted players to tables
+     * @throws IOException if the server channel cannot be bound
+     */
+    public SelectorFrontEnd(final int serverPort, final Lobby lobby) throws IOException {
+        this.lobby = lobby;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(serverPort));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Selector thread run method.
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                selector.select();
+
+                ChannelConnection connection;
+                while ((connection = pendingFlushes.poll()) != null)
+                    serve(connection, null);
+
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable())
+                        accept();
+                    else
+                        serve((ChannelConnection) key.attachment(), key);
+                }
+            }
+        } catch (final IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reads from and flushes one connection, and closes it if that fails.
+     *
+     * @param connection Connection to serve
+     * @param key        Key selected for the connection, or {@code null} to
+     *                   flush only
+     */
+    private void serve(final ChannelConnection connection, final SelectionKey key) {
+        try {
+            if (key != null && key.isReadable())
+                connection.read();
+            if (key == null || key.isValid() && key.isWritable())
+                connection.flush();
+        } catch (final RuntimeException e) {
+            System.err.println("Warning: connection from port " + connection.port + " failed: " + e);
+            e.printStackTrace();
+            connection.closeChannel();
+        }
+    }
+
+    private void accept() {
+        final SocketChannel channel;
+        try {
+            channel = serverChannel.accept();
+        } catch (final IOException e) {
+            System.err.println("Warning: connection cannot be accepted: " + e.getMessage());
+            return;
+        }
+        if (channel == null)
+            return;
+
+        ChannelConnection connection = null;
+        try {
+            System.out.println("Received request from port " + channel.socket().getPort());
+            final Table table = lobby.assign();
+            if (table == null) {
+                System.err.println("All tables are full, rejected port " + channel.socket().getPort());
+                channel.close();
+                return;
+            }
+
+            channel.configureBlocking(false);
+            connection = new ChannelConnection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connection.player = new Player(connection, table);
+            Server.admit(connection.player, table);
+        } catch (final IOException | RuntimeException e) {
+            System.err.println("Warning: connection cannot be set up: " + e);
+            if (connection != null && connection.key != null) {
+                connection.closeChannel();
+            } else {
+                try {
+                    channel.close();
+                } catch (final IOException closing) {
+                    // Nothing more can be done about the channel
+                }
+            }
+        }
+    }
+
+    /**
+     * A {@code ChannelConnection} buffers the bytes of one client in both
+     * directions. Reading and flushing happen on the selector thread only, while
+     * messages may be sent from any thread.
+     */
+    private class ChannelConnection implements Connection {
+        private final SocketChannel channel;
+        private final int port;
+        private SelectionKey key;
+        private Player player;
+        private boolean closed = false;
+
+        private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final ConcurrentLinkedQueue<ByteBuffer> outbox = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger outboxBytes = new AtomicInteger(); // bytes in the outbox not yet written
+        private volatile boolean dropped = false; // set once nothing more is queued: closed, or the client is too far behind
+        private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+
+        ChannelConnection(final SocketChannel channel) {
+            this.channel = channel;
+            port = channel.socket().getPort();
+        }
+
+        @Override
+        public void send(final String line) {
+            if (dropped)
+                return;
+
+            final byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+            if (outboxBytes.addAndGet(bytes.length) > MAX_OUTBOX_BYTES) {
+                System.err.println("Warning: client on port " + port + " does not read its messages, dropped");
+                close();
+                return;
+            }
+            outbox.add(ByteBuffer.wrap(bytes));
+            requestFlush();
+        }
+
+        @Override
+        public void close() {
+            dropped = true; // the selector thread closes the channel at its next flush
+            requestFlush();
+        }
+
+        private void requestFlush() {
+            if (flushRequested.compareAndSet(false, true)) {
+                pendingFlushes.add(this);
+                selector.wakeup();
+            }
+        }
+
+        private void read() {
+            try {
+                if (channel.read(readBuffer) < 0) {
+                    closeChannel();
+                    return;
+                }
+            } catch (final IOException e) {
+                closeChannel();
+                return;
+            }
+
+            readBuffer.flip();
+            final byte[] bytes = readBuffer.array();
+            int start = 0;
+            for (int i = 0; i < readBuffer.limit(); i++) {
+                if (bytes[i] != '\n')
+                    continue;
+
+                final int end = i > start && bytes[i - 1] == '\r' ? i - 1 : i;
+                player.receive(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+                start = i + 1;
+            }
+            readBuffer.position(start);
+            readBuffer.compact();
+
+            if (!readBuffer.hasRemaining()) {
+                if (readBuffer.capacity() >= MAX_LINE_LENGTH) {
+                    System.err.println("Warning: message from port " + port + " is too long");
+                    closeChannel();
+                    return;
+                }
+                final ByteBuffer largerBuffer = ByteBuffer.allocate(2 * readBuffer.capacity());
+                readBuffer.flip();
+                largerBuffer.put(readBuffer);
+                readBuffer = largerBuffer;
+            }
+        }
+
+        private void flush() {
+            if (!key.isValid())
+                return;
+
+            flushRequested.set(false);
+            if (dropped) {
+                closeChannel();
+                return;
+            }
+            try {
+                ByteBuffer buffer;
+                while ((buffer = outbox.peek()) != null) {
+                    channel.write(buffer);
+                    if (buffer.hasRemaining())
+                        break;
+                    outbox.poll();
+                    outboxBytes.addAndGet(-buffer.capacity());
+                }
+            } catch (final IOException e) {
+                closeChannel();
+                return;
+            }
+            key.interestOps(outbox.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        /**
+         * Closes the channel on the selector thread and tells the player.
+         */
+        private void closeChannel() {
+            if (closed)
+                return;
+
+            closed = true;
+            dropped = true;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (final IOException e) {
+                e.printStackTrace();
+            }
+            outbox.clear();
+            if (player != null)
+                player.connectionLost();
+        }
+    }
+}
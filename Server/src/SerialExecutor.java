@@ -0,0 +1,47 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@code SerialExecutor} runs submitted tasks one at a time in submission
+ * order on a shared pool. Many serial executors can share a few pool threads,
+ * while each of them behaves like a single-threaded executor.
+ *
+ * @author Weizhao Tang
+ */
+public class SerialExecutor implements Executor {
+    private final Executor pool;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    /**
+     * Constructor for SerialExecutor object.
+     *
+     * @param pool Shared pool that runs the tasks
+     */
+    public SerialExecutor(final Executor pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+        tasks.add(task);
+        if (scheduled.compareAndSet(false, true))
+            pool.execute(this::drain);
+    }
+
+    private void drain() {
+        do {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (final RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+            scheduled.set(false);
+            // Keep draining if a task arrived after the queue was found empty
+        } while (!tasks.isEmpty() && scheduled.compareAndSet(false, true));
+    }
+}
@@ -1,6 +1,13 @@
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ThreadFactory;
+
+import rule.Card;
+import rule.Protocol;
 
 /**
  * Server objects allow clients to connect to play Double Hearts as a new
@@ -11,16 +18,34 @@ import java.net.Socket;
 
 public class Server {
     private static final int DEFAULT_PORT = 23366; // default server port
+    private static final int DEFAULT_MAX_TABLES = 256; // default maximum number of running tables
 
     private final int serverPort; // server port
 
-    public static final String SEND_PREFIX = "SERVERMESSAGE";
-    public static final String SEND_DELIM = "==";
-    public static final String RECV_DELIM = "~~";
+    public static final String SEND_PREFIX = Protocol.SERVER_PREFIX;
+    public static final String SEND_DELIM = Protocol.SERVER_DELIM;
+    public static final String RECV_DELIM = Protocol.CLIENT_DELIM;
 
     public static int numDecks = 2;
+    public static int maxTables = DEFAULT_MAX_TABLES;
+    public static long seed = System.nanoTime(); // seeds the random generators of the tables
+    public static Path journalDir = null; // directory of the table journals, or null to keep none
+    public static int graceSeconds = 30; // time a dropped player has to come back, or 0 to reset the table at once
+    public static int recoverSeconds = 300; // time the players of a recovered table have to come back
+    public static int metricsPort = 0; // local port of the metrics endpoint, or 0 to serve none
     public static int numCards = 26;
     public static boolean TEST_MODE = false;
+    public static IoMode ioMode = IoMode.BLOCKING;
+    public static boolean BULK_DEAL = true; // send each hand in one message instead of one card per message
+
+    private static ThreadFactory threadFactory = Thread::new; // creates the thread that serves each connection
+
+    /**
+     * Ways to serve client connections.
+     */
+    public enum IoMode {
+        BLOCKING, NIO, VIRTUAL,
+    }
 
     /**
      * Constructor for Server object.
@@ -36,7 +61,29 @@ public class Server {
      */
 
     public void start() {
-        System.out.println("Starting Blackjack server\nServer port: " + serverPort);
+        System.out.println("Starting Blackjack server\nServer port: " + serverPort + "\nSeed: " + seed);
+        final Lobby lobby = new Lobby(numDecks, maxTables, seed);
+        if (metricsPort > 0) {
+            try {
+                Metrics.serve(metricsPort, lobby);
+                System.out.println("Serving metrics at http://localhost:" + metricsPort + "/metrics");
+            } catch (final IOException e) {
+                System.err.println("Warning: metrics cannot be served on port " + metricsPort + ": " + e.getMessage());
+            }
+        }
+
+        if (ioMode == IoMode.NIO) {
+            try {
+                System.out.println("Listening on port " + serverPort + " with a selector");
+                new SelectorFrontEnd(serverPort, lobby).run();
+            } catch (final IOException e) {
+                System.err.println("Could not start Blackjack server on port " + serverPort);
+                System.exit(1);
+            }
+            System.err.println("Server Ended");
+            return;
+        }
+
         ServerSocket serverSocket = null;
         try {
             System.out.println("Creating server socket");
@@ -47,19 +94,16 @@ public class Server {
         }
         try {
             System.out.println("Listening on port " + serverPort);
-            final Table newTable = new Table(numDecks);
-            final Thread newTableThread = new Thread(newTable);
-            newTable.setTabThread(newTableThread);
-            newTableThread.start();
             while (true) {
                 final Socket socket = serverSocket.accept();
                 System.out.println("Received request from port " + socket.getPort());
-                final Player newPlayer = new Player(socket, newTable);
-                newTable.addPlayer(newPlayer);
-                final Thread newPlayerThread = new Thread(newPlayer);
-                newPlayerThread.start();
-                newTable.setPlayerThread(newPlayer, newPlayerThread);
-                newTable.sendExistingSeatedPlayers(newPlayer);
+                final Table table = lobby.assign();
+                if (table == null) {
+                    System.err.println("All tables are full, rejected port " + socket.getPort());
+                    socket.close();
+                    continue;
+                }
+                admit(new Player(socket, table), table);
             }
         } catch (final IOException e) {
             e.printStackTrace();
@@ -67,6 +111,44 @@ public class Server {
         System.err.println("Server Ended");
     }
 
+    /**
+     * Adds a newly connected player to a table and starts it.
+     *
+     * @param newPlayer Player to add
+     * @param table     Table the player joined
+     */
+
+    public static void admit(final Player newPlayer, final Table table) {
+        table.join(newPlayer);
+        newPlayer.start();
+    }
+
+    /**
+     * Creates an unstarted thread that serves one connection, of the kind
+     * chosen by the IO mode. The table workers are fixed in number and stay
+     * platform threads, since virtual ones would gain them nothing.
+     *
+     * @param runnable Task run by the thread
+     * @return the new thread
+     */
+
+    public static Thread newThread(final Runnable runnable) {
+        return threadFactory.newThread(runnable);
+    }
+
+    /**
+     * Looks up the virtual thread factory, which is only present on Java 21 or
+     * later.
+     *
+     * @return factory of virtual threads
+     * @throws ReflectiveOperationException if virtual threads are not supported
+     */
+
+    private static ThreadFactory virtualThreadFactory() throws ReflectiveOperationException {
+        final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+        return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+    }
+
     /**
      * Main method of the server that creates objects and executes other methods.
      *
@@ -84,7 +166,9 @@ public class Server {
                 argument = args[i + 1];
             } catch (final ArrayIndexOutOfBoundsException e) {
                 System.err.println(
-                        "Options: [-p serverPort] [-b baseScore] [-e exposureMult] [-g obtainingMult] [-d numDecks]");
+                        "Options: [-p serverPort] [-b baseScore] [-e exposureMult] [-g obtainingMult] [-d numDecks]"
+                                + " [-m (bulk|single)] [-i (blocking|nio|virtual)] [-x maxTables] [-s seed]"
+                                + " [-j journalDir] [-r graceSeconds] [-w recoverSeconds] [-h metricsPort]");
                 System.exit(1);
             }
             switch (option) {
@@ -121,10 +205,11 @@ public class Server {
                     break;
                 case "-b":
                     try {
-                        Card.baseScore = Integer.parseInt(argument);
-                        if (Card.baseScore <= 0) {
+                        final int baseScore = Integer.parseInt(argument);
+                        if (baseScore <= 0) {
                             throw new NumberFormatException();
                         }
+                        Card.setBaseScore(baseScore);
                     } catch (final NumberFormatException e) {
                         System.err.println("Base score must be a positive int");
                         System.exit(1);
@@ -152,9 +237,95 @@ public class Server {
                         System.exit(1);
                     }
                     break;
+                case "-m":
+                    if (argument.equals("bulk"))
+                        BULK_DEAL = true;
+                    else if (argument.equals("single"))
+                        BULK_DEAL = false;
+                    else {
+                        System.err.println("Dealing mode must be bulk or single");
+                        System.exit(1);
+                    }
+                    break;
+                case "-i":
+                    try {
+                        ioMode = IoMode.valueOf(argument.toUpperCase());
+                        if (ioMode == IoMode.VIRTUAL)
+                            threadFactory = virtualThreadFactory();
+                    } catch (final IllegalArgumentException e) {
+                        System.err.println("IO mode must be blocking, nio or virtual");
+                        System.exit(1);
+                    } catch (final ReflectiveOperationException e) {
+                        System.err.println("Virtual threads require Java 21 or later");
+                        System.exit(1);
+                    }
+                    break;
+                case "-x":
+                    try {
+                        maxTables = Integer.parseInt(argument);
+                        if (maxTables <= 0) {
+                            throw new NumberFormatException();
+                        }
+                    } catch (final NumberFormatException e) {
+                        System.err.println("Max tables must be a positive int");
+                        System.exit(1);
+                    }
+                    break;
+                case "-j":
+                    journalDir = Paths.get(argument);
+                    try {
+                        Files.createDirectories(journalDir);
+                    } catch (final IOException e) {
+                        System.err.println("Journal directory " + argument + " cannot be created");
+                        System.exit(1);
+                    }
+                    break;
+                case "-r":
+                    try {
+                        graceSeconds = Integer.parseInt(argument);
+                        if (graceSeconds < 0) {
+                            throw new NumberFormatException();
+                        }
+                    } catch (final NumberFormatException e) {
+                        System.err.println("Grace seconds must be a non-negative int");
+                        System.exit(1);
+                    }
+                    break;
+                case "-w":
+                    try {
+                        recoverSeconds = Integer.parseInt(argument);
+                        if (recoverSeconds <= 0) {
+                            throw new NumberFormatException();
+                        }
+                    } catch (final NumberFormatException e) {
+                        System.err.println("Recover seconds must be a positive int");
+                        System.exit(1);
+                    }
+                    break;
+                case "-h":
+                    try {
+                        metricsPort = Integer.parseInt(argument);
+                        if (metricsPort <= 0) {
+                            throw new NumberFormatException();
+                        }
+                    } catch (final NumberFormatException e) {
+                        System.err.println("Metrics port must be a positive int");
+                        System.exit(1);
+                    }
+                    break;
+                case "-s":
+                    try {
+                        seed = Long.parseLong(argument);
+                    } catch (final NumberFormatException e) {
+                        System.err.println("Seed must be an integer");
+                        System.exit(1);
+                    }
+                    break;
                 default:
                     System.err.println(
-                            "Options: [-p serverPort] [-b baseScore] [-e exposureMult] [-g obtainingMult] [-d numDecks]");
+                            "Options: [-p serverPort] [-b baseScore] [-e exposureMult] [-g obtainingMult] [-d numDecks]"
+                                + " [-m (bulk|single)] [-i (blocking|nio|virtual)] [-x maxTables] [-s seed]"
+                                + " [-j journalDir] [-r graceSeconds] [-w recoverSeconds] [-h metricsPort]");
                     System.exit(1);
                     break;
             }
@@ -1,13 +1,24 @@
 import java.util.*;
 
+import rule.Card;
+import rule.CardSet;
+
 /**
- * Shoe objects represent a shoe that holds decks of cards.
+ * Shoe objects represent a shoe that holds decks of cards. The cards are kept
+ * as weights in one array that is shuffled in place, so a shoe can be reused
+ * frame after frame without allocating, and every shuffle is decided by the
+ * random generator alone.
  *
  * @author Jordan Segalman
  */
 
 public class Shoe {
-    private ArrayList<Card> shoe = new ArrayList<>(); // holds the cards in the shoe
+    // cards that the test mode always deals, twice each
+    private static final String[] TEST_ALIASES = { Card.OPENER, Card.TRANS, Card.SHEEP, Card.PIG, "KH", Card.ACEH };
+    private static final long TEST_CARDS = testCards();
+
+    private final int[] shoe; // holds the weights of the cards in the shoe, dealt from the end
+    private final int numDecks;
     private int numCards = 0;
 
     /**
@@ -17,49 +28,80 @@ public class Shoe {
      */
 
     public Shoe(final int numDecks) {
-        for (final Card.Suit suit : Card.Suit.values()) {
-            for (final Card.Rank rank : Card.Rank.values()) {
-                for (int i = 0; i < numDecks; i++) {
-                    shoe.add(new Card(rank, suit));
-                    numCards++;
-                }
-            }
+        this.numDecks = numDecks;
+        shoe = new int[numDecks * CardSet.NUM_KINDS];
+        refill();
+    }
+
+    /**
+     * Puts all cards back into the shoe in order.
+     */
+
+    private void refill() {
+        numCards = 0;
+        for (int weight = 0; weight < CardSet.NUM_KINDS; weight++) {
+            for (int i = 0; i < numDecks; i++)
+                shoe[numCards++] = weight;
         }
+    }
+
+    /**
+     * Puts all cards back into the shoe and shuffles it with given random
+     * generator, so that a deal can be reproduced from its seed. In test mode
+     * only the test cards and enough random others are kept.
+     *
+     * @param random Random generator
+     */
+
+    public void shuffle(final SplittableRandom random) {
+        refill();
+        shuffle(random, numCards);
 
         if (Server.TEST_MODE) {
-            int numAdded = 0;
-
-            shuffle();
-            numCards = 4 * Server.numCards;
-
-            ArrayList<Card> newShoe = new ArrayList<>();
-
-            HashSet<String> filtered = new HashSet<>(
-                    Arrays.asList(Card.OPENER, Card.TRANS, Card.SHEEP, Card.PIG, "KH", Card.ACEH));
-
-            for (String alias : filtered) {
-                newShoe.add(new Card(alias));
-                newShoe.add(new Card(alias));
-                numAdded += 2;
-            }
-
-            Card newCard;
-            while (numAdded < numCards) {
-                if (!filtered.contains((newCard = shoe.remove(0)).alias())) {
-                    newShoe.add(newCard);
-                    numAdded++;
-                }
-            }
-            shoe = newShoe;
+            keepTestCards();
+            shuffle(random, numCards);
+        }
+    }
+
+    /**
+     * Shuffles the first cards of the shoe by Fisher-Yates.
+     */
+
+    private void shuffle(final SplittableRandom random, final int size) {
+        for (int i = size - 1; i > 0; i--) {
+            final int j = random.nextInt(i + 1);
+            final int weight = shoe[i];
+            shoe[i] = shoe[j];
+            shoe[j] = weight;
         }
     }
 
     /**
-     * Shuffles the shoe.
+     * Keeps two copies of each test card followed by the first other cards of
+     * the shoe, {@code 4 * Server.numCards} cards in all if there are enough.
      */
 
-    public void shuffle() {
-        Collections.shuffle(shoe);
+    private void keepTestCards() {
+        final int numTest = 2 * TEST_ALIASES.length;
+
+        // Move the other cards to the front in order, then make room for the test cards
+        int numOthers = 0;
+        for (int i = 0; i < numCards; i++) {
+            if ((TEST_CARDS & CardSet.bit(shoe[i])) == 0)
+                shoe[numOthers++] = shoe[i];
+        }
+        numCards = Math.min(4 * Server.numCards, numTest + numOthers);
+        System.arraycopy(shoe, 0, shoe, numTest, Math.max(0, numCards - numTest));
+
+        for (int i = 0; i < TEST_ALIASES.length; i++)
+            shoe[2 * i] = shoe[2 * i + 1] = Card.of(TEST_ALIASES[i]).weight();
+    }
+
+    private static long testCards() {
+        long bits = 0;
+        for (final String alias : TEST_ALIASES)
+            bits |= CardSet.bit(Card.of(alias).weight());
+        return bits;
     }
 
     /**
@@ -72,7 +114,7 @@ public class Shoe {
         if (numCards == 0)
             return null;
 
-        return shoe.remove(--numCards);
+        return Card.fromWeight(shoe[--numCards]);
     }
 
     /**
@@ -84,4 +126,4 @@ public class Shoe {
     public int remainingCards() {
         return numCards;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,161 @@
+import java.util.List;
+import java.util.SplittableRandom;
+
+import rule.Card;
+import rule.Rules;
+
+/**
+ * A {@code Simulator} plays whole deals in memory between four strategies,
+ * without sockets, players or delays. Simulators share no state, so several
+ * of them can run on separate threads at once.
+ *
+ * @author Weizhao Tang
+ */
+public class Simulator {
+    private final int numDecks;
+    private final Strategy[] strategies;
+    private final SplittableRandom random;
+
+    private int frameNum = 0;
+
+    /**
+     * Constructor for Simulator object.
+     *
+     * @param numDecks   Number of decks in the shoe
+     * @param strategies Strategy of each seat
+     * @param random     Random generator of shuffling and opening
+     */
+    public Simulator(final int numDecks, final Strategy[] strategies, final SplittableRandom random) {
+        if (strategies.length != Deal.NUM_SEATS)
+            throw new IllegalArgumentException("Need " + Deal.NUM_SEATS + " strategies, got " + strategies.length);
+
+        this.numDecks = numDecks;
+        this.strategies = strategies.clone();
+        this.random = random;
+    }
+
+    /**
+     * Plays the next deal from shuffling to scoring.
+     *
+     * @return the score of each seat
+     */
+    public int[] playDeal() {
+        return playDeal(numDecks, frameNum++, strategies, random);
+    }
+
+    /**
+     * Plays one deal from shuffling to scoring.
+     *
+     * @param numDecks   Number of decks in the shoe
+     * @param frameNum   Number of frames played before, which decides the trade
+     *                   gap
+     * @param strategies Strategy of each seat
+     * @param random     Random generator of shuffling and opening
+     * @return the score of each seat
+     */
+    public static int[] playDeal(final int numDecks, final int frameNum, final Strategy[] strategies,
+            final SplittableRandom random) {
+        final Deal deal = Deal.deal(numDecks, frameNum, random);
+
+        if (deal.stage() == Deal.Stage.TRADING) {
+            for (int seat = 0; seat < Deal.NUM_SEATS; seat++)
+                check(strategies, seat, "TRADE",
+                        deal.trade(seat, strategies[seat].trade(deal.view(seat), Table.tradeSize)));
+        }
+        for (int seat = 0; seat < Deal.NUM_SEATS; seat++)
+            check(strategies, seat, "SHOW", deal.show(seat, strategies[seat].show(deal.view(seat))));
+
+        deal.openPlay(random);
+        int seat;
+        while ((seat = deal.turn()) >= 0) {
+            final List<Card> cards = strategies[seat].play(deal.view(seat));
+            check(strategies, seat, "PLAY", deal.play(cards));
+        }
+        return deal.scores();
+    }
+
+    private static void check(final Strategy[] strategies, final int seat, final String move,
+            final Rules.Violation violation) {
+        if (violation != Rules.Violation.NONE)
+            throw new IllegalStateException(strategies[seat].name() + " at seat " + seat + " made an illegal move \""
+                    + move + "\": " + violation);
+    }
+
+    /**
+     * Main method of the simulator, which plays deals between random strategies
+     * and reports the mean scores.
+     *
+     * @param args String array of arguments passed to the simulator
+     */
+    public static void main(final String[] args) {
+        int numDeals = 10000;
+        long seed = System.nanoTime();
+
+        for (int i = 0; i < args.length; i += 2) {
+            final String option = args[i];
+            String argument = null;
+            try {
+                argument = args[i + 1];
+            } catch (final ArrayIndexOutOfBoundsException e) {
+                System.err.println("Options: [-n numDeals] [-s seed] [-d numDecks] [-b baseScore] [-e exposureMult]"
+                        + " [-g obtainingMult]");
+                System.exit(1);
+            }
+            try {
+                switch (option) {
+                    case "-n":
+                        numDeals = Integer.parseInt(argument);
+                        break;
+                    case "-s":
+                        seed = Long.parseLong(argument);
+                        break;
+                    case "-d":
+                        Server.numDecks = Integer.parseInt(argument);
+                        if (Server.numDecks != 1 && Server.numDecks != 2) {
+                            System.err.println("Num Decks must be 1 or 2");
+                            System.exit(1);
+                        }
+                        break;
+                    case "-b":
+                        Card.setBaseScore(Integer.parseInt(argument));
+                        break;
+                    case "-e":
+                        Card.MULT_EXP = Double.parseDouble(argument);
+                        break;
+                    case "-g":
+                        Card.MULT_GET = Double.parseDouble(argument);
+                        break;
+                    default:
+                        System.err.println("Options: [-n numDeals] [-s seed] [-d numDecks] [-b baseScore]"
+                                + " [-e exposureMult] [-g obtainingMult]");
+                        System.exit(1);
+                        break;
+                }
+            } catch (final NumberFormatException e) {
+                System.err.println("Option " + option + " must be a number");
+                System.exit(1);
+            }
+        }
+
+        final SplittableRandom random = new SplittableRandom(seed);
+        final Strategy[] strategies = new Strategy[Deal.NUM_SEATS];
+        for (int seat = 0; seat < Deal.NUM_SEATS; seat++)
+            strategies[seat] = new RandomStrategy(random.split());
+
+        final Simulator simulator = new Simulator(Server.numDecks, strategies, random);
+        final long[] totalScores = new long[Deal.NUM_SEATS];
+        final long startTime = System.nanoTime();
+
+        for (int i = 0; i < numDeals; i++) {
+            final int[] scores = simulator.playDeal();
+            for (int seat = 0; seat < Deal.NUM_SEATS; seat++)
+                totalScores[seat] += scores[seat];
+        }
+
+        final double seconds = (System.nanoTime() - startTime) / 1e9;
+        System.out.printf("Seed %d: %d deals in %.2f s (%.0f deals/s)%n", seed, numDeals, seconds, numDeals / seconds);
+        for (int seat = 0; seat < Deal.NUM_SEATS; seat++)
+            System.out.printf("Seat %d %-16s mean score %8.1f%n", seat, strategies[seat].name(),
+                    (double) totalScores[seat] / numDeals);
+    }
+}
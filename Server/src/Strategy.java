@@ -0,0 +1,41 @@
+import java.util.List;
+
+import rule.Card;
+
+/**
+ * A {@code Strategy} makes the decisions of one seat in a simulated
+ * {@link Deal}. It sees the deal only through the {@link Deal.View} of its
+ * seat, and answers with unexposed cards; the deal applies exposure itself.
+ *
+ * @author Weizhao Tang
+ */
+public interface Strategy {
+    /**
+     * Chooses the cards to pass in trading.
+     *
+     * @param view     View of the seat
+     * @param numCards Number of cards to pass
+     * @return the cards to pass
+     */
+    List<Card> trade(Deal.View view, int numCards);
+
+    /**
+     * Chooses the cards to expose.
+     *
+     * @param view View of the seat
+     * @return the cards to show, possibly none
+     */
+    List<Card> show(Deal.View view);
+
+    /**
+     * Chooses the cards to play when the seat is in turn.
+     *
+     * @param view View of the seat
+     * @return the cards to play
+     */
+    List<Card> play(Deal.View view);
+
+    default String name() {
+        return getClass().getSimpleName();
+    }
+}
@@ -1,15 +1,39 @@
-import java.io.IOException;
 import java.util.*;
 import java.util.stream.*;
+import java.security.SecureRandom;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import rule.Card;
+import rule.CardSet;
+import rule.Rules;
 
 /**
  * Table objects represent a table that players can join.
+ * <p>
+ * A table is a state machine driven by events: client messages, connections
+ * and timers. All events of a table run one at a time on its own
+ * {@link SerialExecutor}, so the state needs no locking and no thread ever
+ * blocks waiting for players. Many tables share a small pool of workers.
+ * <p>
+ * A seated player who drops offline keeps the seat for
+ * {@code Server.graceSeconds} seconds, and takes it back by reconnecting with
+ * the session token it was given when it sat down. The frame waits for it in
+ * the meantime, and only a player who does not come back resets the table.
+ * <p>
+ * A table recovered after a restart keeps its seats for the players who sat
+ * in them. A player who sits down under one of their names is sent to that
+ * table from whichever table it joined. Seats still empty after
+ * {@code Server.recoverSeconds} seconds are freed and the frame in flight is
+ * dropped.
  *
  * @author Weizhao Tang
  */
-public class Table implements Runnable {
+public class Table {
     public static final int tradeSize = 3;
     public static final int tradeOrder[] = new int[] { 1, 2, 3, 0 };
 
@@ -17,76 +41,273 @@ public class Table implements Runnable {
     private static final int frameEndDelay = 1000;
     private static final int endShowingDelay = 2000;
 
-    private Thread tabThread;
+    private static final Map<String, Table> sessions = new ConcurrentHashMap<>(); // table of each session token
+    private static final Map<String, Table> reservations = new ConcurrentHashMap<>(); // recovered table of each kept name
+    private static final SecureRandom tokenRandom = new SecureRandom();
+
+    private final int id;
+    private final SplittableRandom random; // decides every deal, so that a frame can be reproduced from the seed
+    private final Shoe shoe;
+    private final Journal journal;
+    private final Journal.CardRecord dealRecord; // the cards dealt, recorded as they go
+    private final Executor executor;
+    private final ScheduledExecutorService timer;
+    private final AtomicInteger numConnected = new AtomicInteger(0);
 
     private final ArrayList<Player> table = new ArrayList<>(); // holds the players at the table
     private final Player[] seats;
-    private final ConcurrentHashMap<Player, Thread> threadMap = new ConcurrentHashMap<>();
-    private final Thread[] playerThreads = new Thread[4];
     private final int[] avtIndices;
     private final String[] names;
-
-    private final AtomicBoolean[] isReady = new AtomicBoolean[4];
-    private final ConcurrentHashMap<String, Integer> numCardsExposed = new ConcurrentHashMap<>();
-    private final AtomicInteger numPlayersShown = new AtomicInteger(0);
+    private final String[] reserved = new String[4]; // names of the players a recovered table waits for
+    private final String[] sessionTokens = new String[4];
+    private final boolean[] away = new boolean[4]; // seats held for dropped players
+    private final int[] holds = new int[4]; // incremented when a seat is held or its hold ends, to cancel the grace timer
+    private volatile boolean recovering = false;
+    private volatile boolean abandoned = false; // set once a recovered table stopped waiting for its players
+    private Deal recovered; // frame in flight when the table was recovered
+
+    private final boolean[] isReady = new boolean[4];
+    private final boolean[] acknowledged = new boolean[4];
+    private int numAcknowledged = 0;
+    private final HashMap<String, Integer> numCardsExposed = new HashMap<>();
+    private int numPlayersShown = 0;
+    private final ArrayList<Integer> shownSeats = new ArrayList<>();
+    private final ArrayList<String[]> shownAliases = new ArrayList<>();
 
     public String[][] tradeOut;
 
-    private final CountUpDownLatch roundReadyLatch = new CountUpDownLatch(4); // latch to wait for all
-    private final CountUpDownLatch allCardsDealtLatch = new CountUpDownLatch(4);
-    private final CountUpDownLatch tradeLatch = new CountUpDownLatch(4);
-    private final CountUpDownLatch exhibitionLatch = new CountUpDownLatch(4);
+    private final int[] totalScore = new int[4];
 
-    private AtomicInteger[] totalScore = new AtomicInteger[4];
+    private Phase phase = Phase.WAITING;
+    private TableEvents.Phase phaseEvent; // recorded when the phase ends
+    private int epoch = 0; // incremented when a frame is aborted to cancel its delayed steps
+    private boolean paused = false;
 
     private int frameNum = 0;
     private int tradeGap;
     private int numberOfDecks;
-    private boolean waitingForReady = false;
+    private int[] twoClubHolders;
+
+    private final CardSet[] hands = new CardSet[4]; // cards each seat holds, kept to check its moves
+
+    private int leader;
+    private int turned;
+    private boolean firstRound;
+    private int cardsRemain;
+    private final ArrayList<ArrayList<Card>> cardSeq = new ArrayList<>();
+    private final ArrayList<ArrayList<Card>> pendingPlays = new ArrayList<>(Collections.nCopies(4, null));
+
+    private final long[] spanStarts = new long[Metrics.Span.values().length]; // 0 if the span is not running
+    private final AtomicLongArray lastSpans = new AtomicLongArray(Metrics.Span.values().length); // in nanoseconds
+
+    /**
+     * Phases of a frame.
+     */
+    private enum Phase {
+        WAITING, DEALING, TRADING, SHOWING, PLAYING, SCORING,
+    }
 
     /**
      * Constructor for Table object.
+     *
+     * @param id       Identifier of the table in the lobby
+     * @param numDecks Number of decks in the shoe
+     * @param seed     Seed of the random generator that shuffles and picks the
+     *                 leaders
+     * @param journal  Journal that records the frames of the table
+     * @param workers  Shared pool that processes the events of the table
+     * @param timer    Shared scheduler of delayed events
      */
 
-    public Table(int numDecks) {
+    public Table(final int id, final int numDecks, final long seed, final Journal journal, final Executor workers,
+            final ScheduledExecutorService timer) {
+        this.id = id;
+        random = new SplittableRandom(seed);
+        shoe = new Shoe(numDecks);
+        this.journal = journal;
+        dealRecord = journal.newCardRecord();
+        this.timer = timer;
+        executor = new SerialExecutor(workers);
         numberOfDecks = numDecks;
         seats = new Player[4];
         names = new String[4];
         avtIndices = new int[] { -1, -1, -1, -1 };
         for (int i = 0; i < 4; i++)
-            isReady[i] = new AtomicBoolean(false);
+            hands[i] = new CardSet();
+        initAll();
+        beginPhaseEvent();
     }
 
     public int numDecks() {
         return numberOfDecks;
     }
 
-    public void setTabThread(final Thread tabThread) {
-        this.tabThread = tabThread;
+    public int getId() {
+        return id;
+    }
+
+    public int frameNum() {
+        return frameNum;
+    }
+
+    public String phaseName() {
+        return phase.name();
     }
 
-    public void setPlayerThread(final Player player, final Thread playerThread) {
-        threadMap.put(player, playerThread);
+    public int numPlayers() {
+        return numConnected.get();
     }
 
     /**
-     * Table thread run method.
+     * Tells if the table was recovered after a restart and still waits for some
+     * of its players to come back.
+     *
+     * @return {@code true} if some seats are kept for returning players
      */
+    public boolean isRecovering() {
+        return recovering;
+    }
 
-    @Override
-    public void run() {
-        do {
-            gameSetup();
-            try {
-                while (true) {
-                    gameFrame();
+    /**
+     * Tells if the table was recovered but its players did not all come back
+     * in time. Such a table is retired as soon as nobody is connected to it.
+     *
+     * @return {@code true} if the table gave up waiting for its players
+     */
+    public boolean isAbandoned() {
+        return abandoned;
+    }
+
+    /**
+     * Tells if players that sit down are asked to get ready, which is not the
+     * case while a frame is going on or the table is being recovered.
+     *
+     * @return {@code true} if the table waits for players to get ready
+     */
+    public boolean awaitsReady() {
+        return phase == Phase.WAITING && !recovering;
+    }
+
+    /**
+     * Puts the table back in the state its journal left it in. The seats are
+     * kept for the players who sat in them, and the frame in flight goes on once
+     * all of them are back. Called before any player joins.
+     *
+     * @param recovery What the journal of the table left
+     */
+    public void restore(final Recovery recovery) {
+        frameNum = recovery.frameNum();
+        System.arraycopy(recovery.totals(), 0, totalScore, 0, 4);
+        for (int i = 0; i < 4; i++) {
+            reserved[i] = recovery.name(i);
+            if (reserved[i] != null)
+                reservations.put(reserved[i], this);
+        }
+        recovering = true;
+        timer.schedule(() -> execute(this::stopRecovering), Server.recoverSeconds, TimeUnit.SECONDS);
+
+        recovered = recovery.deal();
+        if (recovered == null)
+            return;
+
+        tradeGap = recovered.tradeGap();
+        final int opener = Card.of(Card.OPENER).weight();
+        twoClubHolders = new int[4];
+        for (int i = 0; i < 4; i++) {
+            hands[i].set(recovered.view(i).hand());
+            twoClubHolders[i] = (recovered.stage() == Deal.Stage.TRADING ? recovery.dealt(i) : hands[i]).count(opener);
+        }
+
+        final List<Integer> tradeSeats = recovery.tradeSeats();
+        final List<Integer> showSeats = recovery.showSeats();
+        if (tradeSeats.isEmpty() && showSeats.isEmpty()) {
+            enterPhase(Phase.DEALING);
+        } else if (recovered.stage() == Deal.Stage.TRADING) {
+            enterPhase(Phase.TRADING);
+            for (int i = 0; i < tradeSeats.size(); i++) {
+                final int seat = tradeSeats.get(i);
+                acknowledged[seat] = true;
+                numAcknowledged++;
+                tradeOut[seat] = recovery.trades().get(i).stream().map(Card::alias).toArray(String[]::new);
+            }
+        } else {
+            enterPhase(recovered.stage() == Deal.Stage.SHOWING ? Phase.SHOWING : Phase.PLAYING);
+            for (int i = 0; i < showSeats.size(); i++) {
+                final int seat = showSeats.get(i);
+                if (phase == Phase.SHOWING) {
+                    acknowledged[seat] = true;
+                    numAcknowledged++;
                 }
-            } catch (final IOException e) {
-                e.printStackTrace();
-            } catch (final InterruptedException e) {
-                System.err.println("\nTable thread interrupted possibly because of a on-table client dropping offline");
+                expose(seat, recovery.shows().get(i).stream().map(Card::alias).toArray(String[]::new));
             }
-        } while (true);
+        }
+
+        final Deal.View view = recovered.view(0);
+        leader = recovered.stage() == Deal.Stage.PLAYING || recovered.stage() == Deal.Stage.OVER ? view.leader() : -1;
+        firstRound = view.isFirstRound();
+        cardSeq.clear();
+        view.trick().forEach(cards -> cardSeq.add(new ArrayList<>(cards)));
+        turned = cardSeq.size();
+        cardsRemain = leader < 0 ? recovery.dealt(0).size() : hands[leader].size();
+        if (recovery.isTrickUnrecorded())
+            journal.record(Journal.TRICK, leader);
+    }
+
+    /**
+     * Closes the journal of the table after all events queued so far.
+     */
+    public void close() {
+        execute(journal::close);
+    }
+
+    /**
+     * Queues an event to be processed after all events queued before it.
+     *
+     * @param event Event handler
+     */
+    public void execute(final Runnable event) {
+        final TableEvents.Wait wait = new TableEvents.Wait();
+        if (!wait.isEnabled()) {
+            executor.execute(event);
+            return;
+        }
+
+        wait.begin();
+        executor.execute(() -> {
+            commitWait(wait, -1);
+            event.run();
+        });
+    }
+
+    private void commitWait(final TableEvents.Wait wait, final int seat) {
+        wait.end();
+        if (wait.shouldCommit()) {
+            wait.set(this, seat);
+            wait.commit();
+        }
+    }
+
+    /**
+     * Queues an event to be processed after a delay, unless the frame is aborted
+     * in the meantime. Plays are held back until the event is processed.
+     *
+     * @param delay Delay in milliseconds
+     * @param event Event handler
+     */
+    private void after(final int delay, final Runnable event) {
+        final int scheduledEpoch = epoch;
+        final TableEvents.Wait wait = new TableEvents.Wait();
+        wait.delayed = true;
+        wait.begin();
+        paused = true;
+        timer.schedule(() -> execute(() -> {
+            if (scheduledEpoch != epoch)
+                return;
+
+            commitWait(wait, -1);
+            paused = false;
+            event.run();
+        }), delay, TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -99,126 +320,430 @@ public class Table implements Runnable {
             numCardsExposed.put(exposable, 0);
 
         for (int i = 0; i < 4; i++)
-            totalScore[i] = new AtomicInteger(0);
-
-        resetLatches();
-    }
-
-    private void gameSetup() {
-        System.err.println("Setting up");
-        waitingForReady = true;
-        frameNum = 0;
-        initAll();
+            totalScore[i] = 0;
     }
 
     private void resetFrame() {
-        waitingForReady = true;
+        enterPhase(Phase.WAITING);
         resetReady();
-        resetLatches();
-        numPlayersShown.set(0);
+        numPlayersShown = 0;
+        shownSeats.clear();
+        shownAliases.clear();
+        paused = false;
+        Arrays.fill(spanStarts, 0);
         tradeOut = new String[4][tradeSize];
         for (String exposable : Card.exposables)
             numCardsExposed.put(exposable, 0);
 
-        for (final Player player : table)
-            player.frameEndingLatchCountDown();
+        for (int i = 0; i < 4; i++) {
+            pendingPlays.set(i, null);
+            hands[i].clear();
+        }
+    }
+
+    private void startSpan(final Metrics.Span span) {
+        spanStarts[span.ordinal()] = System.nanoTime();
+    }
+
+    /**
+     * Records the duration of a step, unless it did not start in this frame,
+     * as after a recovery.
+     *
+     * @param span Step of the frame
+     */
+    private void endSpan(final Metrics.Span span) {
+        final long start = spanStarts[span.ordinal()];
+        if (start == 0)
+            return;
+
+        final long nanos = System.nanoTime() - start;
+        spanStarts[span.ordinal()] = 0;
+        lastSpans.set(span.ordinal(), nanos);
+        Metrics.record(span, nanos);
     }
 
-    private void resetLatches() {
-        roundReadyLatch.reset();
-        allCardsDealtLatch.reset();
-        tradeLatch.reset();
-        exhibitionLatch.reset();
+    private void enterPhase(final Phase nextPhase) {
+        phaseEvent.commit();
+        phase = nextPhase;
+        numAcknowledged = 0;
+        Arrays.fill(acknowledged, false);
+        beginPhaseEvent();
+    }
 
-        for (int i = 0; i < 4; i++) {
-            if (isReady[i].get())
-                roundReadyLatchCountDown();
+    private void beginPhaseEvent() {
+        phaseEvent = new TableEvents.Phase();
+        phaseEvent.begin();
+        if (phaseEvent.isEnabled())
+            phaseEvent.set(this, -1);
+    }
+
+    /**
+     * Records that a seat has answered the current phase.
+     *
+     * @param expected Phase the message belongs to
+     * @param seat     Seat of the sender
+     * @param message  Message type, for the warning
+     * @return {@code true} if the answer is expected; {@code false} if it is
+     *         ignored
+     */
+    private boolean acknowledge(final Phase expected, final int seat, final String message) {
+        if (!expects(expected, seat, message))
+            return false;
+
+        acknowledged[seat] = true;
+        numAcknowledged++;
+        return true;
+    }
+
+    /**
+     * Tells if a seat is yet to answer the current phase, without recording an
+     * answer.
+     *
+     * @param expected Phase the message belongs to
+     * @param seat     Seat of the sender
+     * @param message  Message type, for the warning
+     * @return {@code true} if an answer is expected; {@code false} otherwise
+     */
+    private boolean expects(final Phase expected, final int seat, final String message) {
+        if (phase != expected || seat < 0 || acknowledged[seat]) {
+            System.err.println("Warning: improbable message \"" + message + "\" from seat " + seat + " under phase "
+                    + phase);
+            return false;
         }
+        return true;
+    }
+
+    /**
+     * Turns down a move that breaks the rules. The sender is told, and the table
+     * keeps waiting for a legal move.
+     *
+     * @param seat      Seat of the sender
+     * @param message   Message type
+     * @param violation Broken rule
+     */
+    private void reject(final int seat, final String message, final Rules.Violation violation) {
+        System.err.println("Warning: illegal message \"" + message + "\" from seat " + seat + " on table " + id
+                + ": " + violation);
+        seats[seat].sendIllegal(message, violation.name());
+    }
+
+    /**
+     * Parses card aliases sent by a seat.
+     *
+     * @param seat    Seat of the sender
+     * @param message Message type
+     * @param aliases Card aliases
+     * @return the cards, or {@code null} if an alias is malformed
+     */
+    private ArrayList<Card> parseCards(final int seat, final String message, final String[] aliases) {
+        final ArrayList<Card> cards = new ArrayList<>(aliases.length);
+        try {
+            for (final String alias : aliases)
+                cards.add(Card.of(alias));
+        } catch (final NumberFormatException e) {
+            reject(seat, message, Rules.Violation.NOT_IN_HAND);
+            return null;
+        }
+        return cards;
     }
 
     private void setReady(final int seat) {
-        isReady[seat].set(true);
+        isReady[seat] = true;
     }
 
     private void resetReady() {
         for (int i = 0; i < 4; i++)
-            isReady[i].set(false);
+            isReady[i] = false;
+    }
+
+    public void onReady(final int seat) {
+        if (phase != Phase.WAITING || seat < 0 || isReady[seat]) {
+            System.err.println("Warning: improbable message \"READY\" from seat " + seat + " under phase " + phase);
+            return;
+        }
 
-        roundReadyLatch.reset();
+        broadcastReady(seat);
+        for (int i = 0; i < 4; i++) {
+            if (!isReady[i])
+                return;
+        }
+        startFrame();
     }
 
-    private void gameFrame() throws IOException, InterruptedException {
+    private void startFrame() {
         tradeGap = tradeOrder[Math.floorMod(frameNum, tradeOrder.length)];
-        final Shoe shoe = new Shoe(numberOfDecks);
-        shoe.shuffle();
+        shoe.shuffle(random);
         int numCards = shoe.remainingCards();
+        journal.recordSnapshot(frameNum, totalScore, avtIndices, names);
+        journal.startFrame(frameNum, tradeGap);
 
-        roundReadyLatch.await();
-        waitingForReady = false;
-
+        enterPhase(Phase.DEALING);
+        startSpan(Metrics.Span.FRAME);
+        startSpan(Metrics.Span.DEAL);
+        cardsRemain = numCards / 4;
         broadcastDeal(numCards / 4, numberOfDecks);
-        final int[] twoClubHolders = dealAllCards(shoe, (new Random()).nextInt(4));
-        allCardsDealtLatch.await();
+        twoClubHolders = dealAllCards(shoe, random.nextInt(4));
+    }
+
+    public void onAllDealt(final int seat) {
+        if (!acknowledge(Phase.DEALING, seat, "ALLDEALT") || numAcknowledged < 4)
+            return;
 
+        endSpan(Metrics.Span.DEAL);
         if (tradeGap != 0) {
+            enterPhase(Phase.TRADING);
+            startSpan(Metrics.Span.TRADE);
             broadcastTradeStart(tradeGap);
-            tradeLatch.await();
-            for (int i = 0; i < 4; i++) {
-                final int target = Math.floorMod(i + tradeGap, 4);
-                for (final String cardAlias : tradeOut[i]) {
-                    if (Card.OPENER.equals(cardAlias)) {
-                        twoClubHolders[i]--;
-                        twoClubHolders[target]++;
-                    }
+        } else {
+            startShowing();
+        }
+    }
+
+    public void onTrade(final int seat, final String[] cardAliases) {
+        if (!expects(Phase.TRADING, seat, "TRADE"))
+            return;
+
+        final ArrayList<Card> cards = parseCards(seat, "TRADE", cardAliases);
+        if (cards == null)
+            return;
+
+        final Rules.Violation violation = Rules.checkTrade(hands[seat], cards, tradeSize);
+        if (violation != Rules.Violation.NONE) {
+            reject(seat, "TRADE", violation);
+            return;
+        }
+
+        acknowledge(Phase.TRADING, seat, "TRADE");
+        journal.record(Journal.TRADE, seat, cards);
+        cards.forEach(hands[seat]::remove);
+        broadcastTradeReady(seat);
+        for (int i = 0; i < tradeSize; i++) {
+            tradeOut[seat][i] = cardAliases[i];
+        }
+        if (numAcknowledged < 4)
+            return;
+
+        endSpan(Metrics.Span.TRADE);
+        for (int i = 0; i < 4; i++) {
+            final int target = Math.floorMod(i + tradeGap, 4);
+            for (final String cardAlias : tradeOut[i]) {
+                if (Card.OPENER.equals(cardAlias)) {
+                    twoClubHolders[i]--;
+                    twoClubHolders[target]++;
                 }
-                seats[target].sendTradeIn(tradeOut[i]);
+                hands[target].add(Card.of(cardAlias));
             }
+            seats[target].sendTradeIn(tradeOut[i]);
         }
+        startShowing();
+    }
 
+    private void startShowing() {
+        enterPhase(Phase.SHOWING);
+        startSpan(Metrics.Span.EXPOSURE);
         broadcastExhibition();
-        exhibitionLatch.await();
+    }
 
-        for (final Player player : table) {
-            player.framePlayingLatchCountDown();
+    public void onShow(final int seat, final String[] cardAliases) {
+        if (!expects(Phase.SHOWING, seat, "SHOW"))
+            return;
+
+        final ArrayList<Card> cards = parseCards(seat, "SHOW", cardAliases);
+        if (cards == null)
+            return;
+
+        final Rules.Violation violation = Rules.checkShow(hands[seat], cards);
+        if (violation != Rules.Violation.NONE) {
+            reject(seat, "SHOW", violation);
+            return;
+        }
+
+        acknowledge(Phase.SHOWING, seat, "SHOW");
+        journal.record(Journal.SHOW, seat, cards);
+
+        broadcastExposed(seat, cardAliases);
+        if (numAcknowledged < 4)
+            return;
+
+        endSpan(Metrics.Span.EXPOSURE);
+        enterPhase(Phase.PLAYING);
+        if (numPlayersShown > 0)
+            after(endShowingDelay, this::openPlay);
+        else
+            openPlay();
+    }
+
+    private void openPlay() {
+        leader = pickLeader(twoClubHolders);
+        turned = 0;
+        firstRound = true;
+        cardSeq.clear();
+        journal.record(Journal.LEADER, leader);
+        broadcastFirstLeader(leader);
+        startSpan(Metrics.Span.TRICK);
+        advanceTrick();
+    }
+
+    public void onPlay(final int seat, final ArrayList<Card> cards) {
+        if (phase != Phase.PLAYING || seat < 0 || pendingPlays.get(seat) != null || cards.isEmpty()) {
+            System.err.println("Warning: improbable message \"PLAY\" from seat " + seat + " under phase " + phase);
+            return;
         }
 
-        if (numPlayersShown.get() > 0)
-            Thread.sleep(endShowingDelay);
+        pendingPlays.set(seat, cards);
+        advanceTrick();
+    }
+
+    /**
+     * Takes the plays of the current trick in turn for as long as the player in
+     * turn has played, and resolves the trick once everyone has played.
+     */
+    private void advanceTrick() {
+        while (!paused && phase == Phase.PLAYING) {
+            if (turned == 4) {
+                finishTrick();
+                return;
+            }
+
+            final int iPlayer = (leader + turned) % 4;
+            final ArrayList<Card> cards = pendingPlays.get(iPlayer);
+            if (cards == null)
+                return;
+
+            pendingPlays.set(iPlayer, null);
+            Rules.Violation violation = settleLevels(cards);
+            if (violation == Rules.Violation.NONE)
+                violation = Rules.checkPlay(hands[iPlayer], cards,
+                        turned == 0 ? Collections.emptyList() : cardSeq.get(0), firstRound);
+            if (violation != Rules.Violation.NONE) {
+                reject(iPlayer, "PLAY", violation);
+                return;
+            }
+
+            journal.record(Journal.PLAY, iPlayer, cards);
+            cards.forEach(hands[iPlayer]::remove);
+            if (turned == 0)
+                cardsRemain -= cards.size();
+
+            cardSeq.add(cards);
+            broadcastPlayed(turned == 0, iPlayer, cards);
+            turned++;
 
-        final int roundLeader = pickLeader(twoClubHolders);
-        broadcastFirstLeader(roundLeader);
+            if (cardsRemain == 0)
+                after(lastRoundDelay, this::advanceTrick);
+        }
+    }
 
-        playInTurns(numCards / 4, roundLeader);
+    /**
+     * Puts each played card at the exposure level the table counts for it, so
+     * that the trick is scored by the shows the table has seen, as a replay of
+     * the journal scores it. A bare alias takes that level; an alias whose
+     * suffix claims another level is turned down.
+     *
+     * @param cards Played cards, replaced in place
+     * @return the broken rule, or {@link Rules.Violation#NONE} if every level
+     *         matches
+     */
+    private Rules.Violation settleLevels(final ArrayList<Card> cards) {
+        for (int i = 0; i < cards.size(); i++) {
+            final Card card = cards.get(i);
+            final int level = level(card);
+            if (card.exposed() != 0 && card.exposed() != level)
+                return Rules.Violation.WRONG_EXPOSURE;
+
+            cards.set(i, Card.fromWeight(card.weight(), level));
+        }
+        return Rules.Violation.NONE;
+    }
 
+    private int level(final Card card) {
+        final Integer numExposed = numCardsExposed.get(card.exposerAlias());
+        return numExposed == null ? 0 : Math.min(numExposed, Card.MAX_EXPOSED);
+    }
+
+    private void finishTrick() {
+        final ArrayList<Card> asset = new ArrayList<>();
+
+        endSpan(Metrics.Span.TRICK);
+        leader = Card.roundResult(cardSeq, leader);
+        journal.record(Journal.TRICK, leader);
+        cardSeq.forEach(s -> s.stream().filter(c -> c.isScored()).forEach(c -> asset.add(c)));
+        seats[leader].addAsset(asset);
+
+        after(lastRoundDelay, () -> {
+            broadcastAsset(leader, asset);
+            turned = 0;
+            firstRound = false;
+            cardSeq.clear();
+
+            if (cardsRemain > 0) {
+                startSpan(Metrics.Span.TRICK);
+                advanceTrick();
+            } else {
+                endFrame();
+            }
+        });
+    }
+
+    private void endFrame() {
+        final int[] frameScores = new int[4];
         for (int i = 0; i < 4; i++) {
-            totalScore[i].addAndGet(seats[i].getScore());
+            frameScores[i] = seats[i].getScore();
+            totalScore[i] += frameScores[i];
         }
+        journal.recordScores(frameScores);
+        endSpan(Metrics.Span.FRAME);
 
-        Thread.sleep(frameEndDelay);
+        enterPhase(Phase.SCORING);
+        after(frameEndDelay, () -> {
+            frameNum++;
+            resetFrame();
 
-        frameNum++;
-        resetFrame();
+            final String scores = getTotalScore();
+            for (final Player player : seats) {
+                player.resetFrame();
+                player.sendEndFrame(scores);
+                player.sendNewFrame();
+            }
+        });
     }
 
     private int[] dealAllCards(final Shoe shoe, int starter) {
         Card nextCard;
         final int i = 0;
         final int[] leaders = new int[] { 0, 0, 0, 0 };
+        final StringBuilder[] compactHands = new StringBuilder[4];
+
+        for (int seat = 0; seat < 4; seat++)
+            compactHands[seat] = new StringBuilder(2 * shoe.remainingCards() / 4);
 
+        dealRecord.begin(Journal.DEAL, starter);
         while ((nextCard = shoe.dealCard()) != null) {
+            dealRecord.add(nextCard);
             if (nextCard.weakEquals(Card.OPENER) && i < numberOfDecks) {
                 leaders[starter]++;
             }
 
-            seats[starter].addCard(nextCard);
+            hands[starter].add(nextCard);
+            if (Server.BULK_DEAL)
+                compactHands[starter].append(nextCard.alias());
+            else
+                seats[starter].addCard(nextCard);
             starter = Math.floorMod(starter + 1, 4);
         }
+
+        dealRecord.end();
+
+        if (Server.BULK_DEAL) {
+            for (int seat = 0; seat < 4; seat++)
+                seats[seat].sendHand(compactHands[seat].toString());
+        }
         return leaders;
     }
 
     private int pickLeader(final int[] twoClubHolders) {
         int sum = IntStream.of(twoClubHolders).sum();
-        int randi = (new Random()).nextInt(sum);
+        int randi = random.nextInt(sum);
 
         for (int i = 0; i < twoClubHolders.length; i++) {
             if ((randi -= twoClubHolders[i]) < 0)
@@ -228,235 +753,518 @@ public class Table implements Runnable {
         return twoClubHolders.length - 1;
     }
 
-    private void playInTurns(int cardsRemain, int leader) throws IOException, InterruptedException {
-        final ArrayList<ArrayList<Card>> cardSeq = new ArrayList<>();
-        final ArrayList<Card> asset = new ArrayList<>();
+    /**
+     * Adds a newly connected player to the table and welcomes it. The player
+     * counts towards the load of the table immediately.
+     *
+     * @param player Player to add to table
+     */
 
-        while (cardsRemain > 0) {
-            int roundSize = 0;
-            cardSeq.clear();
-            asset.clear();
+    public void join(final Player player) {
+        numConnected.incrementAndGet();
+        execute(() -> {
+            table.add(player);
+            player.sendWelcome();
+            sendExistingSeatedPlayers(player);
+        });
+    }
 
-            for (int turned = 0; turned < 4; turned++) {
-                final int iPlayer = (leader + turned) % 4;
-                final ArrayList<Card> cards = seats[iPlayer].playTurn();
+    /**
+     * Removes a player from the table.
+     *
+     * @param player Player to remove from table
+     * @return {@code true} if the player was at the table; {@code false} otherwise
+     */
 
-                if (roundSize == 0) {
-                    roundSize = cards.size();
-                    cardsRemain -= roundSize;
-                }
+    public boolean removePlayer(final Player player) {
+        if (!table.remove(player))
+            return false;
 
-                cardSeq.add(cards);
-                broadcastPlayed(turned == 0, iPlayer, cards);
+        numConnected.decrementAndGet();
+        return true;
+    }
 
-                if (cardsRemain == 0)
-                    Thread.sleep(lastRoundDelay);
-            }
+    public boolean sitDown(final Player player, final int seat, final int avtIndex, final String name) {
+        if (seat < 0 || seat >= 4 || seats[seat] != null || reserved[seat] != null && !reserved[seat].equals(name))
+            return false;
+
+        seats[seat] = player;
+        avtIndices[seat] = avtIndex;
+        names[seat] = new String(name);
+        journal.recordSeat(seat, avtIndex, name);
+        if (Server.graceSeconds > 0) {
+            sessionTokens[seat] = newSessionToken();
+            sessions.put(sessionTokens[seat], this);
+        }
 
-            leader = Card.roundResult(cardSeq, leader);
-            cardSeq.forEach(s -> s.stream().filter(c -> c.isScored()).forEach(c -> asset.add(c)));
-            seats[leader].addAsset(asset);
-            Thread.sleep(lastRoundDelay);
-            broadcastAsset(leader, asset);
+        table.forEach(p -> p.sendSeating(seat, avtIndex, name));
+        if (recovering && reserved[seat] != null) {
+            reserved[seat] = null;
+            if (!Arrays.asList(reserved).contains(name))
+                reservations.remove(name, this);
+            if (Arrays.stream(reserved).allMatch(Objects::isNull))
+                execute(this::resume);
         }
+        return true;
+    }
+
+    private static String newSessionToken() {
+        final byte[] bytes = new byte[16];
+        tokenRandom.nextBytes(bytes);
+        final StringBuilder builder = new StringBuilder(2 * bytes.length);
+        for (final byte b : bytes)
+            builder.append(String.format("%02x", b));
+        return builder.toString();
     }
 
     /**
-     * Adds a player to the table.
+     * Returns the token a player gives to take its seat back after a
+     * reconnection.
      *
-     * @param player Player to add to table
+     * @param seat Seat of the player
+     * @return the session token, or an empty string if none is given out
      */
+    public String sessionToken(final int seat) {
+        return sessionTokens[seat] == null ? "" : sessionTokens[seat];
+    }
 
-    public void addPlayer(final Player player) {
-        synchronized (table) {
-            table.add(player);
+    /**
+     * Gives a seat back to a player who reconnected with its session token. The
+     * old connection is dropped if the loss of it has not been noticed yet. A
+     * player connected to another table is moved to the table of the session
+     * first. The player is brought up to date the way players of a recovered
+     * table are, and the frame goes on.
+     *
+     * @param player Reconnected player, not yet seated
+     * @param token  Session token of the seat
+     */
+    public void rejoin(final Player player, final String token) {
+        final Table target = sessions.get(token);
+        if (target == null) {
+            player.sendDoNotSit();
+            return;
+        }
+        if (target != this) {
+            removePlayer(player);
+            target.numConnected.incrementAndGet();
+            player.moveTo(target);
+            target.execute(() -> {
+                target.table.add(player);
+                target.rejoin(player, token);
+            });
+            return;
+        }
+
+        int seat = 0;
+        while (seat < 4 && !token.equals(sessionTokens[seat]))
+            seat++;
+        if (seat == 4) {
+            player.sendDoNotSit();
+            return;
         }
+
+        final Player old = seats[seat];
+        if (!away[seat]) {
+            table.remove(old);
+            old.detach();
+        }
+        player.takeOver(old);
+        seats[seat] = player;
+        away[seat] = false;
+        holds[seat]++;
+        numConnected.decrementAndGet(); // the old connection counted as a player until now
+        System.err.println("Player (" + seat + ", " + names[seat] + ") on table " + id + " came back");
+
+        player.takeSeat(seat, names[seat]);
+        sendExistingSeatedPlayers(player);
+        final int backSeat = seat;
+        table.forEach(p -> {
+            if (p != player)
+                p.sendSeating(backSeat, avtIndices[backSeat], names[backSeat]);
+        });
+        sendState(seat);
     }
 
     /**
-     * Removes a player from the table.
+     * Sends a player who sits down to the recovered table that keeps a seat
+     * for its name, if that is another table. The player is moved there the
+     * way a player rejoining its session is, and sits down in the first seat
+     * kept for the name.
      *
-     * @param player Player to remove from table
+     * @param player   Player sitting down, not yet seated
+     * @param avtIndex Avatar of the player
+     * @param name     Name of the player
+     * @return {@code true} if the player was sent to another table
+     */
+    public boolean sendToReservedSeat(final Player player, final int avtIndex, final String name) {
+        final Table target = reservations.get(name);
+        if (target == null || target == this)
+            return false;
+
+        removePlayer(player);
+        target.numConnected.incrementAndGet();
+        player.moveTo(target);
+        target.execute(() -> {
+            target.table.add(player);
+            target.sitDownReserved(player, avtIndex, name);
+        });
+        return true;
+    }
+
+    private void sitDownReserved(final Player player, final int avtIndex, final String name) {
+        sendExistingSeatedPlayers(player);
+        int seat = 0;
+        while (seat < 4 && !(name.equals(reserved[seat]) && seats[seat] == null))
+            seat++;
+        if (seat < 4 && sitDown(player, seat, avtIndex, name))
+            player.takeSeat(seat, name);
+        else
+            player.sendDoNotSit();
+    }
+
+    /**
+     * Stops waiting for the players of a recovered table who are not back by
+     * the deadline. Their seats are freed and the frame in flight is dropped,
+     * as if they had dropped offline for good.
      */
+    private void stopRecovering() {
+        if (!recovering)
+            return;
 
-    public void removePlayer(final Player player) {
-        synchronized (table) {
-            table.remove(player);
-            threadMap.remove(player);
+        System.err.println("Table " + id + " stopped waiting for its players after " + Server.recoverSeconds + " s");
+        final boolean inFlight = phase != Phase.WAITING;
+        final boolean[] missing = new boolean[4];
+        for (int seat = 0; seat < 4; seat++)
+            missing[seat] = reserved[seat] != null;
+        for (int seat = 0; seat < 4; seat++) {
+            if (missing[seat])
+                vacate(seat);
+        }
+        if (!inFlight) {
+            // Players back already were not asked to get ready, which vacate only does for a frame in flight
+            for (final Player seated : seats) {
+                if (seated != null)
+                    seated.sendNewFrame();
+            }
         }
+        abandoned = true;
     }
 
-    public boolean sitDown(final Player player, final int seat, final int avtIndex, final String name) {
-        synchronized (seats) {
-            if (seats[seat] != null)
-                return false;
+    /**
+     * Brings the players of a recovered table up to date once all of them are
+     * back, and goes on with the frame in flight.
+     */
+    private void resume() {
+        recovering = false;
+        System.err.println("Table " + id + " resumed frame " + frameNum + " under phase " + phase);
+
+        if (recovered != null) {
+            for (int seat = 0; seat < 4; seat++)
+                seats[seat].addAsset(new ArrayList<>(recovered.view(seat).assets(seat)));
+            recovered = null;
+        }
+        for (int seat = 0; seat < 4; seat++)
+            sendState(seat);
+
+        if (phase != Phase.PLAYING)
+            return;
 
-            seats[seat] = player;
-            avtIndices[seat] = avtIndex;
-            names[seat] = new String(name);
-            playerThreads[seat] = threadMap.get(player);
+        if (leader < 0)
+            openPlay();
+        else if (cardsRemain == 0 && turned == 0)
+            endFrame();
+        else
+            advanceTrick();
+    }
 
-            table.forEach(p -> p.sendSeating(seat, avtIndex, name));
-            return true;
+    /**
+     * Sends a player the state of the frame: the phase and the totals, its
+     * current hand, and what it needs of the public moves so far to act in the
+     * current phase.
+     *
+     * @param seat Seat of the player
+     */
+    private void sendState(final int seat) {
+        final Player player = seats[seat];
+        final int roundLeader = phase == Phase.PLAYING ? leader : -1;
+        // A seat that has its hand is not asked to confirm it again
+        player.sendResume(phase == Phase.DEALING && acknowledged[seat] ? "DEALT" : phase.name(), roundLeader, turned,
+                getTotalScore());
+        if (phase == Phase.WAITING) {
+            if (!isReady[seat])
+                player.sendNewFrame();
+            return;
         }
+        if (phase == Phase.SCORING)
+            return;
+
+        player.sendDeal(hands[seat].size(), numberOfDecks);
+        if (!hands[seat].isEmpty())
+            player.sendHand(compact(hands[seat]));
+
+        if (phase == Phase.TRADING) {
+            if (!acknowledged[seat])
+                player.sendTradeStart(tradeGap);
+            for (int i = 0; i < 4; i++) {
+                if (acknowledged[i])
+                    player.sendTradeReady(i);
+            }
+            return;
+        }
+
+        if (phase == Phase.SHOWING && !acknowledged[seat])
+            player.sendExhibition();
+        for (int i = 0; i < shownSeats.size(); i++)
+            player.sendShown(shownSeats.get(i), shownAliases.get(i));
+
+        if (roundLeader < 0)
+            return;
+
+        if (firstRound) {
+            player.sendFirstLeader(leader);
+        } else {
+            // The leader of the round comes last, since clients take it from the last asset
+            for (int i = 1; i <= 4; i++) {
+                final int other = (leader + i) % 4;
+                player.sendAsset(other, seats[other].getAssets());
+            }
+        }
+        for (int i = 0; i < turned; i++)
+            player.sendPlayed(i == 0, (leader + i) % 4, cardSeq.get(i));
     }
 
-    public void removeFromSeat(final int seat) {
-        synchronized (seats) {
-            isReady[seat].set(false);
-            seats[seat] = null;
-            playerThreads[seat] = null;
-            avtIndices[seat] = -1;
-            names[seat] = null;
+    private static String compact(final CardSet hand) {
+        final StringBuilder builder = new StringBuilder(2 * hand.size());
+        for (int weight = 0; weight < CardSet.NUM_KINDS; weight++) {
+            for (int i = hand.count(weight); i > 0; i--)
+                builder.append(Card.fromWeight(weight).alias());
         }
+        return builder.toString();
+    }
+
+    public void removeFromSeat(final int seat) {
+        if (sessionTokens[seat] != null)
+            sessions.remove(sessionTokens[seat]);
+        sessionTokens[seat] = null;
+        away[seat] = false;
+        holds[seat]++;
+        isReady[seat] = false;
+        seats[seat] = null;
+        avtIndices[seat] = -1;
+        names[seat] = null;
     }
 
     public void dealWithConnectionLoss(final Player player, final int seat) {
+        if (player.getTable() != this) {
+            // The player was moved to another table after the loss was queued here
+            player.connectionLost();
+            return;
+        }
+        if (player.isDetached())
+            return; // the connection was closed by the table, after its seat was held or taken over
+        Metrics.connectionDropped();
+        final TableEvents.ConnectionLoss event = new TableEvents.ConnectionLoss();
+        if (event.shouldCommit()) {
+            event.set(this, seat);
+            event.commit();
+        }
+
+        if (seat >= 0 && seats[seat] == player && sessionTokens[seat] != null) {
+            holdSeat(player, seat);
+            return;
+        }
+
+        if (!removePlayer(player))
+            return;
+
         if (seat < 0) {
             System.err.println("A player off table dropped offline");
-            removePlayer(player);
             return;
         }
 
-        System.err.println("Player (" + seat + ", " + names[seat] + ") on table dropped offline");
+        System.err.println("Player (" + seat + ", " + names[seat] + ") on table " + id + " dropped offline");
+        vacate(seat);
+    }
 
-        removePlayer(player);
+    /**
+     * Holds the seat of a dropped player for the grace time, while the frame
+     * waits for it. The seat still counts as a player, so that the lobby sends
+     * no one else to take it.
+     *
+     * @param player Dropped player
+     * @param seat   Seat of the player
+     */
+    private void holdSeat(final Player player, final int seat) {
+        table.remove(player);
+        player.detach();
+        away[seat] = true;
+        System.err.println("Player (" + seat + ", " + names[seat] + ") on table " + id + " dropped offline, seat held for "
+                + Server.graceSeconds + " s");
+        table.forEach(p -> p.sendAway(seat));
+
+        // A later hold of the same seat starts its own grace time
+        final int hold = ++holds[seat];
+        timer.schedule(() -> execute(() -> {
+            if (hold != holds[seat])
+                return;
+
+            numConnected.decrementAndGet();
+            System.err.println("Player (" + seat + ", " + names[seat] + ") on table " + id + " did not come back");
+            vacate(seat);
+        }), Server.graceSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Frees the seat of a player who is gone for good. The totals are reset and
+     * the frame, if any, is aborted.
+     *
+     * @param seat Seat of the player
+     */
+    private void vacate(final int seat) {
+        journal.record(Journal.LEAVE, seat);
+        if (recovering) {
+            // The recovered frame cannot go on without the player
+            recovering = false;
+            recovered = null;
+            for (int i = 0; i < 4; i++) {
+                if (reserved[i] != null)
+                    reservations.remove(reserved[i], this);
+                reserved[i] = null;
+            }
+        }
+        frameNum = 0;
         initAll();
         removeFromSeat(seat);
         broadcastReset(seat);
 
-        if (!waitingForReady) {
-            resetReady();
-            for (int i = 0; i < 4; i++) {
-                if (playerThreads[i] != null) {
-                    playerThreads[i].interrupt();
+        if (phase != Phase.WAITING) {
+            System.err.println("Table " + id + " aborted its frame because of a on-table client dropping offline");
+            journal.record(Journal.ABORT, seat);
+            epoch++;
+            resetFrame();
+            for (final Player seated : seats) {
+                if (seated != null) {
+                    seated.resetFrame();
+                    seated.sendNewFrame();
                 }
             }
         }
-        tabThread.interrupt();
     }
 
     public void broadcastReady(final int seat) {
         setReady(seat);
-        synchronized (table) {
-            for (final Player player : table)
-                player.sendReady(seat);
-        }
+        for (final Player player : table)
+            player.sendReady(seat);
     }
 
     public void broadcastDeal(final int numCards, final int numDecks) {
-        synchronized (seats) {
-            for (final Player player : seats)
-                player.sendDeal(numCards, numDecks);
-        }
+        for (final Player player : seats)
+            player.sendDeal(numCards, numDecks);
     }
 
     public void broadcastTradeStart(final int tradeGap) {
-        synchronized (seats) {
-            for (final Player player : seats) {
-                player.sendTradeStart(tradeGap);
-            }
+        for (final Player player : seats) {
+            player.sendTradeStart(tradeGap);
         }
     }
 
     public void broadcastTradeReady(final int seat) {
-        synchronized (seats) {
-            for (final Player player : seats) {
-                player.sendTradeReady(seat);
-            }
+        for (final Player player : seats) {
+            player.sendTradeReady(seat);
         }
     }
 
     public void broadcastExhibition() {
-        synchronized (seats) {
-            for (final Player player : seats)
-                player.sendExhibition();
-        }
+        for (final Player player : seats)
+            player.sendExhibition();
     }
 
     public void broadcastExposed(final int seat, final String[] cardAliases) {
-        synchronized (numCardsExposed) {
-            if (cardAliases != null && cardAliases.length != 0) {
-                numPlayersShown.incrementAndGet();
-            }
-
-            for (int i = 0; i < cardAliases.length; i++) {
-                String shortAlias = cardAliases[i].substring(0, 2);
-                cardAliases[i] = shortAlias + (numCardsExposed.get(shortAlias) == 0 ? "" : "x");
-            }
+        expose(seat, cardAliases);
+        for (final Player player : seats)
+            player.sendShown(seat, cardAliases);
+    }
 
-            for (final Player player : seats)
-                player.sendShown(seat, cardAliases);
+    /**
+     * Counts the cards a seat has shown, and marks the aliases of the cards
+     * already exposed by an earlier show.
+     *
+     * @param seat        Seat showing the cards
+     * @param cardAliases Aliases of the cards shown, marked in place
+     */
+    private void expose(final int seat, final String[] cardAliases) {
+        if (cardAliases != null && cardAliases.length != 0) {
+            numPlayersShown++;
+        }
 
-            for (String alias : cardAliases)
-                numCardsExposed.compute(alias.substring(0, 2), (k, v) -> v == null ? 1 : v + 1);
+        for (int i = 0; i < cardAliases.length; i++) {
+            String shortAlias = cardAliases[i].substring(0, 2);
+            cardAliases[i] = shortAlias + (numCardsExposed.get(shortAlias) == 0 ? "" : "x");
         }
+
+        for (String alias : cardAliases)
+            numCardsExposed.compute(alias.substring(0, 2), (k, v) -> v == null ? 1 : v + 1);
+
+        shownSeats.add(seat);
+        shownAliases.add(cardAliases);
     }
 
     public void broadcastFirstLeader(final int seat) {
-        synchronized (seats) {
-            for (final Player player : seats) {
-                player.sendFirstLeader(seat);
-            }
+        for (final Player player : seats) {
+            player.sendFirstLeader(seat);
         }
     }
 
     public void broadcastPlayed(final boolean lead, final int seat, final Collection<Card> cards) {
-        synchronized (seats) {
-            for (final Player player : seats)
-                player.sendPlayed(lead, seat, cards);
-        }
+        for (final Player player : seats)
+            player.sendPlayed(lead, seat, cards);
     }
 
     public void broadcastAsset(final int seat, final Collection<Card> asset) {
-        synchronized (seats) {
-            for (final Player player : seats) {
-                player.sendAsset(seat, asset);
-            }
+        for (final Player player : seats) {
+            player.sendAsset(seat, asset);
         }
     }
 
     public void broadcastReset(final int seat) {
-        synchronized (table) {
-            for (final Player player : table) {
-                player.sendReset(seat);
-            }
+        for (final Player player : table) {
+            player.sendReset(seat);
         }
     }
 
     public void sendExistingSeatedPlayers(final Player player) {
-        synchronized (avtIndices) {
-            for (int seat = 0; seat < 4; seat++) {
-                if (seats[seat] != null) {
-                    player.sendSeating(seat, avtIndices[seat], names[seat]);
-                    if (isReady[seat].get())
-                        player.sendReady(seat);
-                }
+        for (int seat = 0; seat < 4; seat++) {
+            if (seats[seat] != null) {
+                player.sendSeating(seat, avtIndices[seat], names[seat]);
+                if (isReady[seat])
+                    player.sendReady(seat);
             }
         }
     }
 
-    public String getTotalScore() {
-        return Arrays.asList(totalScore).stream().map(s -> s.toString()).collect(Collectors.joining(Server.SEND_DELIM));
-    }
-
-    public int getTradeGap() {
-        return tradeGap;
-    }
-
-    public void allCardsDealtLatchCountDown() {
-        allCardsDealtLatch.countDown();
-    }
-
-    public void roundReadyLatchCountDown() {
-        roundReadyLatch.countDown();
-    }
-
-    public void tradeLatchCountDown() {
-        tradeLatch.countDown();
+    /**
+     * Appends the state of the table to a report: the phase, the last duration
+     * of each step of a frame and the messages of each seat. Called from another
+     * thread while the table goes on, so the figures may lag by an event.
+     *
+     * @param builder Report to append to
+     */
+    public void report(final StringBuilder builder) {
+        builder.append(String.format("table %d frame %d phase %s players %d last", id, frameNum, phase,
+                numConnected.get()));
+        for (final Metrics.Span span : Metrics.Span.values())
+            builder.append(String.format(" %s %.3f", span.name().toLowerCase(), lastSpans.get(span.ordinal()) / 1e6));
+        builder.append(" (ms)\n");
+
+        for (int seat = 0; seat < 4; seat++) {
+            final Player player = seats[seat];
+            if (player != null)
+                builder.append(String.format("  seat %d %s in %d out %d%s%n", seat, names[seat], player.messagesIn(),
+                        player.messagesOut(), away[seat] ? " away" : ""));
+        }
     }
 
-    public void exhibitionLatchCountDown() {
-        exhibitionLatch.countDown();
+    public String getTotalScore() {
+        return IntStream.of(totalScore).mapToObj(String::valueOf).collect(Collectors.joining(Server.SEND_DELIM));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,86 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder events of the tables. They cost next to nothing unless a
+ * recording is running, and then show in JDK Mission Control under Double
+ * Hearts, next to the GC pauses and lock contention of the same moments.
+ * <p>
+ * Start a recording with
+ * {@code java -XX:StartFlightRecording=filename=server.jfr -jar Server/target/DoubleHeartsServer.jar}.
+ *
+ * @author Weizhao Tang
+ */
+public class TableEvents {
+    private TableEvents() {
+    }
+
+    /**
+     * Fields shared by all events of a table.
+     */
+    @Category("Double Hearts")
+    @StackTrace(false)
+    abstract static class TableEvent extends Event {
+        @Label("Table")
+        int tableId;
+
+        @Label("Seat")
+        @Description("Seat of the player, or -1 if none")
+        int seat;
+
+        @Label("Frame")
+        int frameNum;
+
+        @Label("Phase")
+        String phase;
+
+        /**
+         * Fills in the table fields. Called on the thread of the table.
+         *
+         * @param table Table of the event
+         * @param seat  Seat of the player, or -1 if none
+         */
+        void set(final Table table, final int seat) {
+            tableId = table.getId();
+            this.seat = seat;
+            frameNum = table.frameNum();
+            phase = table.phaseName();
+        }
+    }
+
+    @Name("doublehearts.Phase")
+    @Label("Table Phase")
+    @Description("A phase of a frame, from the step that starts it to the step that ends it")
+    static class Phase extends TableEvent {
+    }
+
+    @Name("doublehearts.Message")
+    @Label("Message")
+    @Description("Handling a message from a client, or sending one to it")
+    static class Message extends TableEvent {
+        @Label("Type")
+        String type;
+
+        @Label("Outgoing")
+        boolean outgoing;
+    }
+
+    @Name("doublehearts.ConnectionLoss")
+    @Label("Connection Loss")
+    static class ConnectionLoss extends TableEvent {
+    }
+
+    @Name("doublehearts.Wait")
+    @Label("Table Wait")
+    @Description("Time an event of the table waited: behind the events queued before it, or for a delay the table"
+            + " pauses for")
+    static class Wait extends TableEvent {
+        @Label("Delayed")
+        @Description("Set if the wait is a delay rather than a queue")
+        boolean delayed;
+    }
+}
@@ -0,0 +1,259 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+import rule.Card;
+
+/**
+ * A {@code Tournament} plays many independent simulated games between
+ * strategies on a {@link ForkJoinPool}. The games are split in halves until
+ * they are few enough for one worker, each part with its own
+ * {@link SplittableRandom}, and the statistics of the parts are merged on the
+ * way back. Strategies rotate through the seats so that no seat is favoured.
+ *
+ * @author Weizhao Tang
+ */
+public class Tournament {
+    private static final int GAMES_PER_TASK = 256;
+
+    private static final Map<String, Function<SplittableRandom, Strategy>> registry = new LinkedHashMap<>();
+
+    static {
+        registry.put("random", RandomStrategy::new);
+        registry.put("duck", random -> new DuckStrategy());
+        // Tournament workers already fill the processors, so each search is single-threaded and capped by
+        // iterations rather than time, which keeps the results repeatable for a seed
+        registry.put("ismcts", random -> new IsmctsStrategy(random, 1, IsmctsStrategy.DEFAULT_BUDGET_MILLIS, 300));
+    }
+
+    private final int numDecks;
+    private final String[] entrants; // name of the strategy that starts at each seat
+
+    /**
+     * Constructor for Tournament object.
+     *
+     * @param numDecks Number of decks in the shoe
+     * @param entrants Registered names of the four strategies
+     */
+    public Tournament(final int numDecks, final String[] entrants) {
+        if (entrants.length != Deal.NUM_SEATS)
+            throw new IllegalArgumentException("Need " + Deal.NUM_SEATS + " strategies, got " + entrants.length);
+        for (final String entrant : entrants) {
+            if (!registry.containsKey(entrant))
+                throw new IllegalArgumentException("Unknown strategy \"" + entrant + "\", known are "
+                        + registry.keySet());
+        }
+
+        this.numDecks = numDecks;
+        this.entrants = entrants.clone();
+    }
+
+    /**
+     * Registers a strategy under a name, so that tournaments can enter it.
+     *
+     * @param name    Name of the strategy
+     * @param factory Creates an instance for one worker from its random
+     *                generator
+     */
+    public static void register(final String name, final Function<SplittableRandom, Strategy> factory) {
+        registry.put(name, factory);
+    }
+
+    /**
+     * Statistics of the games of one entrant.
+     */
+    public static class Tally {
+        private long games;
+        private double wins; // ties for the best score share the win
+        private long totalScore;
+        private double totalSquares;
+
+        private void add(final int score, final double win) {
+            games++;
+            wins += win;
+            totalScore += score;
+            totalSquares += (double) score * score;
+        }
+
+        private void merge(final Tally other) {
+            games += other.games;
+            wins += other.wins;
+            totalScore += other.totalScore;
+            totalSquares += other.totalSquares;
+        }
+
+        public long games() {
+            return games;
+        }
+
+        public double winRate() {
+            return games == 0 ? 0 : wins / games;
+        }
+
+        public double meanScore() {
+            return games == 0 ? 0 : (double) totalScore / games;
+        }
+
+        public double stdDev() {
+            final double mean = meanScore();
+            return games == 0 ? 0 : Math.sqrt(Math.max(0, totalSquares / games - mean * mean));
+        }
+    }
+
+    /**
+     * Plays a range of games on one worker or splits it in two.
+     */
+    private class Games extends RecursiveTask<Tally[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final SplittableRandom random;
+
+        Games(final int from, final int to, final SplittableRandom random) {
+            this.from = from;
+            this.to = to;
+            this.random = random;
+        }
+
+        @Override
+        protected Tally[] compute() {
+            if (to - from > GAMES_PER_TASK) {
+                final int middle = (from + to) >>> 1;
+                final Games left = new Games(from, middle, random.split());
+                left.fork();
+                final Tally[] tallies = new Games(middle, to, random).compute();
+                final Tally[] leftTallies = left.join();
+                for (int i = 0; i < tallies.length; i++)
+                    tallies[i].merge(leftTallies[i]);
+                return tallies;
+            }
+
+            final Strategy[] players = new Strategy[Deal.NUM_SEATS];
+            for (int i = 0; i < Deal.NUM_SEATS; i++)
+                players[i] = registry.get(entrants[i]).apply(random.split());
+
+            final Tally[] tallies = newTallies();
+            final Strategy[] seated = new Strategy[Deal.NUM_SEATS];
+            for (int game = from; game < to; game++) {
+                final int shift = game % Deal.NUM_SEATS;
+                for (int seat = 0; seat < Deal.NUM_SEATS; seat++)
+                    seated[seat] = players[(seat + shift) % Deal.NUM_SEATS];
+
+                final int[] scores = Simulator.playDeal(numDecks, game / Deal.NUM_SEATS, seated, random);
+                final int best = Arrays.stream(scores).max().getAsInt();
+                final long numBest = Arrays.stream(scores).filter(score -> score == best).count();
+                for (int seat = 0; seat < Deal.NUM_SEATS; seat++)
+                    tallies[(seat + shift) % Deal.NUM_SEATS].add(scores[seat],
+                            scores[seat] == best ? 1.0 / numBest : 0);
+            }
+            return tallies;
+        }
+    }
+
+    private static Tally[] newTallies() {
+        final Tally[] tallies = new Tally[Deal.NUM_SEATS];
+        for (int i = 0; i < tallies.length; i++)
+            tallies[i] = new Tally();
+        return tallies;
+    }
+
+    /**
+     * Plays the games of the tournament.
+     *
+     * @param numGames Number of games
+     * @param seed     Seed of the random generators
+     * @param pool     Pool of workers
+     * @return statistics of the entrant that starts at each seat
+     */
+    public Tally[] run(final int numGames, final long seed, final ForkJoinPool pool) {
+        return pool.invoke(new Games(0, numGames, new SplittableRandom(seed)));
+    }
+
+    /**
+     * Main method of the tournament runner.
+     *
+     * @param args String array of arguments passed to the runner
+     */
+    public static void main(final String[] args) {
+        final String usage = "Options: [-n numGames] [-s seed] [-w numWorkers] [-p strategy,strategy,strategy,strategy]"
+                + " [-d numDecks] [-b baseScore] [-e exposureMult] [-g obtainingMult]";
+        int numGames = 100000;
+        long seed = System.nanoTime();
+        int numWorkers = Runtime.getRuntime().availableProcessors();
+        String[] entrants = { "duck", "random", "duck", "random" };
+
+        for (int i = 0; i < args.length; i += 2) {
+            final String option = args[i];
+            String argument = null;
+            try {
+                argument = args[i + 1];
+            } catch (final ArrayIndexOutOfBoundsException e) {
+                System.err.println(usage);
+                System.exit(1);
+            }
+            try {
+                switch (option) {
+                    case "-n":
+                        numGames = Integer.parseInt(argument);
+                        break;
+                    case "-s":
+                        seed = Long.parseLong(argument);
+                        break;
+                    case "-w":
+                        numWorkers = Integer.parseInt(argument);
+                        break;
+                    case "-p":
+                        entrants = argument.split(",");
+                        break;
+                    case "-d":
+                        Server.numDecks = Integer.parseInt(argument);
+                        if (Server.numDecks != 1 && Server.numDecks != 2) {
+                            System.err.println("Num Decks must be 1 or 2");
+                            System.exit(1);
+                        }
+                        break;
+                    case "-b":
+                        Card.setBaseScore(Integer.parseInt(argument));
+                        break;
+                    case "-e":
+                        Card.MULT_EXP = Double.parseDouble(argument);
+                        break;
+                    case "-g":
+                        Card.MULT_GET = Double.parseDouble(argument);
+                        break;
+                    default:
+                        System.err.println(usage);
+                        System.exit(1);
+                        break;
+                }
+            } catch (final NumberFormatException e) {
+                System.err.println("Option " + option + " must be a number");
+                System.exit(1);
+            }
+        }
+
+        Tournament tournament = null;
+        try {
+            tournament = new Tournament(Server.numDecks, entrants);
+        } catch (final IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(numWorkers);
+        final long startTime = System.nanoTime();
+        final Tally[] tallies = tournament.run(numGames, seed, pool);
+        final double seconds = (System.nanoTime() - startTime) / 1e9;
+        pool.shutdown();
+
+        System.out.printf("Seed %d: %d games with %d decks on %d workers in %.2f s (%.0f games/s)%n", seed, numGames,
+                Server.numDecks, numWorkers, seconds, numGames / seconds);
+        System.out.printf("%-6s %-16s %10s %9s %11s %9s%n", "Entry", "Strategy", "Games", "Win rate", "Mean score",
+                "Std dev");
+        for (int i = 0; i < Deal.NUM_SEATS; i++)
+            System.out.printf("%-6d %-16s %10d %8.2f%% %11.1f %9.1f%n", i, entrants[i], tallies[i].games(),
+                    100 * tallies[i].winRate(), tallies[i].meanScore(), tallies[i].stdDev());
+    }
+}
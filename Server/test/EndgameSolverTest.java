@@ -0,0 +1,90 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import rule.Card;
+import rule.Rules;
+
+/**
+ * Tests the solver against a plain minimax over copies of the {@link Deal},
+ * with the seat in turn maximizing its final score and the others minimizing
+ * it, on endgames of a few cards a hand.
+ *
+ * @author Weizhao Tang
+ */
+class EndgameSolverTest {
+    private static final int NUM_CARDS = 4;
+
+    @Test
+    void agreesWithMinimaxOnOneDeck() {
+        agreeWithMinimax(1, 11, 40);
+    }
+
+    @Test
+    void agreesWithMinimaxOnTwoDecks() {
+        agreeWithMinimax(2, 12, 40);
+    }
+
+    private static void agreeWithMinimax(final int numDecks, final long seed, final int numPositions) {
+        final SplittableRandom random = new SplittableRandom(seed);
+        final EndgameSolver solver = new EndgameSolver(12);
+        for (int n = 0; n < numPositions; n++) {
+            final Deal deal = endgame(numDecks, random);
+            final int root = deal.turn();
+            final EndgameSolver.Solution solution = solver.solve(deal);
+            assertEquals(minimax(deal, root), solution.score(), "position " + n);
+
+            final Deal next = new Deal(deal);
+            assertEquals(Rules.Violation.NONE, next.play(solution.play()), "position " + n);
+            assertEquals(solution.score(), minimax(next, root), "play of position " + n);
+        }
+    }
+
+    /**
+     * Deals a frame with random exposures and plays it with random legal moves
+     * until each hand holds at most {@link #NUM_CARDS} cards, sometimes into
+     * the next round.
+     */
+    private static Deal endgame(final int numDecks, final SplittableRandom random) {
+        final Deal deal = Deal.deal(numDecks, 3, random);
+        for (int seat = 0; seat < Deal.NUM_SEATS; seat++) {
+            final ArrayList<Card> shown = new ArrayList<>();
+            for (final String alias : Card.exposables) {
+                if (deal.view(seat).hand().contains(Card.of(alias).weight()) && random.nextBoolean())
+                    shown.add(Card.of(alias));
+            }
+            deal.show(seat, shown);
+        }
+        deal.openPlay(random);
+
+        while (!deal.view(0).trick().isEmpty() || deal.view(deal.turn()).hand().size() > NUM_CARDS)
+            playRandom(deal, random);
+        for (int i = random.nextInt(Deal.NUM_SEATS); i > 0; i--)
+            playRandom(deal, random);
+        return deal;
+    }
+
+    private static void playRandom(final Deal deal, final SplittableRandom random) {
+        final List<List<Card>> plays = deal.legalPlays();
+        deal.play(plays.get(random.nextInt(plays.size())));
+    }
+
+    private static int minimax(final Deal deal, final int root) {
+        if (deal.stage() == Deal.Stage.OVER)
+            return deal.scores()[root];
+
+        final boolean maximizing = deal.turn() == root;
+        int best = maximizing ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        for (final List<Card> play : deal.legalPlays()) {
+            final Deal next = new Deal(deal);
+            next.play(play);
+            final int value = minimax(next, root);
+            best = maximizing ? Math.max(best, value) : Math.min(best, value);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,83 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A parser of journal files written apart from {@link Recovery}, which only
+ * follows the layout described in {@link Journal}: every record is its length
+ * as an int, followed by its type and its fields.
+ *
+ * @author Weizhao Tang
+ */
+class JournalRecords {
+    /**
+     * One record of a journal.
+     */
+    static class Record {
+        final int start; // offset of the length of the record
+        final int end; // offset just past the record
+        final byte type;
+        final ByteBuffer fields;
+
+        Record(final int start, final int end, final byte type, final ByteBuffer fields) {
+            this.start = start;
+            this.end = end;
+            this.type = type;
+            this.fields = fields;
+        }
+    }
+
+    private JournalRecords() {
+    }
+
+    /**
+     * Reads the whole records of a journal file, the header first.
+     *
+     * @param path Path of the journal file
+     * @return the records in file order
+     * @throws IOException if the file cannot be read
+     */
+    static List<Record> parse(final Path path) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        final ArrayList<Record> records = new ArrayList<>();
+        while (buffer.remaining() >= 4 + 1) {
+            final int start = buffer.position();
+            final int length = buffer.getInt();
+            if (length < 1 || buffer.remaining() < length)
+                break;
+            final int end = buffer.position() + length;
+            final byte type = buffer.get();
+            records.add(new Record(start, end, type, buffer.slice(buffer.position(), end - buffer.position())));
+            buffer.position(end);
+        }
+        return records;
+    }
+
+    /**
+     * Waits until the committer has written the journal up to its
+     * {@link Journal#CLOSE} record.
+     *
+     * @param directory Directory holding the only journal file
+     * @return the path of the journal file
+     */
+    static Path awaitClosed(final Path directory) throws IOException, InterruptedException {
+        final long deadline = System.nanoTime() + 10_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            final List<Path> files;
+            try (Stream<Path> stream = Files.list(directory)) {
+                files = stream.toList();
+            }
+            if (files.size() == 1) {
+                final List<Record> records = parse(files.get(0));
+                if (!records.isEmpty() && records.get(records.size() - 1).type == Journal.CLOSE)
+                    return files.get(0);
+            }
+            Thread.sleep(Journal.COMMIT_MILLIS);
+        }
+        throw new AssertionError("journal in " + directory + " was not committed");
+    }
+}
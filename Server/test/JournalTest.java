@@ -0,0 +1,130 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import rule.Card;
+
+/**
+ * Tests that every kind of record reaches the file in the layout that
+ * {@link Journal} describes.
+ *
+ * @author Weizhao Tang
+ */
+class JournalTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void writesTheDocumentedLayout() throws Exception {
+        final Journal journal = Journal.open(directory, 42, 2, 0x1234_5678_9abcL);
+        journal.recordSeat(1, 3, "Ann");
+        journal.recordSnapshot(5, new int[] { 10, -20, 30, -40 }, new int[] { -1, 3, -1, -1 },
+                new String[] { null, "Ann", null, null });
+        journal.startFrame(5, 2);
+        final Journal.CardRecord deal = journal.newCardRecord();
+        deal.begin(Journal.DEAL, 3);
+        deal.add(Card.of("2C"));
+        deal.add(Card.of("QS"));
+        deal.end();
+        journal.record(Journal.TRADE, 1, List.of(Card.of("QS"), Card.of("AH"), Card.of("5D")));
+        journal.record(Journal.SHOW, 2, List.of());
+        journal.record(Journal.LEADER, 3);
+        journal.record(Journal.PLAY, 3, List.of(Card.of("2C"), Card.of("2C")));
+        journal.record(Journal.TRICK, 0);
+        journal.recordScores(new int[] { 1, 2, 3, -6 });
+        journal.record(Journal.ABORT, 2);
+        journal.record(Journal.LEAVE, 2);
+        journal.close();
+
+        final List<JournalRecords.Record> records = JournalRecords.parse(JournalRecords.awaitClosed(directory));
+        final byte[] types = { Journal.HEADER, Journal.SEAT, Journal.SNAPSHOT, Journal.FRAME, Journal.DEAL,
+                Journal.TRADE, Journal.SHOW, Journal.LEADER, Journal.PLAY, Journal.TRICK, Journal.SCORES,
+                Journal.ABORT, Journal.LEAVE, Journal.CLOSE };
+        assertEquals(types.length, records.size());
+        for (int i = 0; i < types.length; i++)
+            assertEquals(types[i], records.get(i).type, "type of record " + i);
+
+        ByteBuffer fields = records.get(0).fields;
+        assertEquals(Journal.MAGIC, fields.getInt());
+        assertEquals(Journal.VERSION, fields.getShort());
+        assertEquals(42, fields.getInt());
+        assertEquals(2, fields.get());
+        assertEquals(0x1234_5678_9abcL, fields.getLong());
+        assertEquals(Card.getBaseScore(), fields.getInt());
+        assertEquals(Card.MULT_EXP, fields.getDouble());
+        assertEquals(Card.MULT_GET, fields.getDouble());
+        assertTrue(fields.getLong() > 0);
+        assertEquals(records.get(2).start, fields.getLong());
+        assertFalse(fields.hasRemaining());
+
+        fields = records.get(1).fields;
+        assertEquals(1, fields.get());
+        assertEquals(3, fields.get());
+        assertEquals("Ann", name(fields));
+
+        fields = records.get(2).fields;
+        assertEquals(5, fields.getInt());
+        for (final int total : new int[] { 10, -20, 30, -40 })
+            assertEquals(total, fields.getInt());
+        for (int seat = 0; seat < 4; seat++) {
+            assertEquals(seat == 1 ? 3 : -1, fields.get());
+            assertEquals(seat == 1 ? "Ann" : "", name(fields));
+        }
+        assertFalse(fields.hasRemaining());
+
+        fields = records.get(3).fields;
+        assertEquals(5, fields.getInt());
+        assertEquals(2, fields.get());
+        assertEquals(8, fields.remaining());
+
+        assertCards(records.get(4).fields, 3, "2C", "QS");
+        assertCards(records.get(5).fields, 1, "QS", "AH", "5D");
+        assertCards(records.get(6).fields, 2);
+        assertSeat(records.get(7).fields, 3);
+        assertCards(records.get(8).fields, 3, "2C", "2C");
+        assertSeat(records.get(9).fields, 0);
+
+        fields = records.get(10).fields;
+        for (final int score : new int[] { 1, 2, 3, -6 })
+            assertEquals(score, fields.getInt());
+        assertFalse(fields.hasRemaining());
+
+        assertSeat(records.get(11).fields, 2);
+        assertSeat(records.get(12).fields, 2);
+        assertFalse(records.get(13).fields.hasRemaining());
+    }
+
+    @Test
+    void refusesOtherFiles() throws Exception {
+        final Path path = directory.resolve("not.journal");
+        Files.write(path, new byte[] { 0, 0, 0, 1, 0 });
+        assertThrows(IOException.class, () -> Journal.map(path));
+    }
+
+    private static String name(final ByteBuffer fields) {
+        final byte[] bytes = new byte[fields.get() & 0xff];
+        fields.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void assertSeat(final ByteBuffer fields, final int seat) {
+        assertEquals(seat, fields.get());
+        assertFalse(fields.hasRemaining());
+    }
+
+    private static void assertCards(final ByteBuffer fields, final int seat, final String... aliases) {
+        assertEquals(seat, fields.get());
+        assertEquals(aliases.length, fields.get());
+        for (final String alias : aliases)
+            assertEquals(Card.of(alias).weight(), fields.get());
+        assertFalse(fields.hasRemaining());
+    }
+}
@@ -0,0 +1,231 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import rule.Card;
+import rule.CardSet;
+import rule.Rules;
+
+/**
+ * Tests that a journal cut after any record, or in the middle of one, is read
+ * back as the table stood after the last whole record.
+ *
+ * @author Weizhao Tang
+ */
+class RecoveryTest {
+    private static final String[] NAMES = { "Ann", "Bob", "Cid", "Dee" };
+
+    @TempDir
+    Path directory;
+
+    /**
+     * What {@link Recovery} should report after each record.
+     */
+    private static class Expected {
+        final int frameNum;
+        final int[] totals;
+        final String[] names;
+        final Deal deal;
+        final boolean trickUnrecorded;
+
+        Expected(final int frameNum, final int[] totals, final String[] names, final Deal deal,
+                final boolean trickUnrecorded) {
+            this.frameNum = frameNum;
+            this.totals = totals.clone();
+            this.names = names.clone();
+            this.deal = deal == null ? null : new Deal(deal);
+            this.trickUnrecorded = trickUnrecorded;
+        }
+    }
+
+    @Test
+    void recoversEveryCutOfOneDeck() throws Exception {
+        recoverEveryCut(1, 3);
+    }
+
+    @Test
+    void recoversEveryCutOfTwoDecks() throws Exception {
+        recoverEveryCut(2, 4);
+    }
+
+    private void recoverEveryCut(final int numDecks, final long seed) throws Exception {
+        final Path written = directory.resolve("written");
+        Files.createDirectory(written);
+        final List<Expected> expected = writeFrames(written, numDecks, seed);
+        final Path path = JournalRecords.awaitClosed(written);
+        final byte[] bytes = Files.readAllBytes(path);
+        final List<JournalRecords.Record> records = JournalRecords.parse(path);
+        assertEquals(expected.size() + 1, records.size(), "records before the close");
+
+        final Path cut = directory.resolve("cut.journal");
+        for (int i = 0; i < expected.size(); i++) {
+            final int end = records.get(i).end;
+            final int nextEnd = records.get(i + 1).end;
+            for (final int length : new int[] { end, end + 3, (end + nextEnd) / 2, nextEnd - 1 }) {
+                Files.write(cut, Arrays.copyOf(bytes, length));
+                final Recovery recovery = Recovery.read(cut);
+                final String where = "cut at " + length + " after record " + i + " of type " + records.get(i).type;
+                assertEquals(end, recovery.length(), where);
+                assertEquals(numDecks, recovery.numDecks(), where);
+                assertFalse(recovery.isClosed(), where);
+                assertRecovered(expected.get(i), recovery, where);
+            }
+        }
+
+        final Recovery whole = Recovery.read(path);
+        assertTrue(whole.isClosed());
+        assertEquals(bytes.length, whole.length());
+    }
+
+    @Test
+    void readsNothingBeforeTheLastSnapshot() throws Exception {
+        final List<Expected> expected = writeFrames(directory, 2, 5);
+        final Path path = JournalRecords.awaitClosed(directory);
+        final byte[] bytes = Files.readAllBytes(path);
+        final List<JournalRecords.Record> records = JournalRecords.parse(path);
+
+        // A record before the last snapshot that cannot be read, as if the walk had to stop there
+        ByteBuffer.wrap(bytes).putInt(records.get(1).start, -1);
+        Files.write(path, bytes);
+        final Recovery recovery = Recovery.read(path);
+        assertEquals(bytes.length, recovery.length());
+        assertTrue(recovery.isClosed());
+        assertRecovered(expected.get(expected.size() - 1), recovery, "damaged before the last snapshot");
+    }
+
+    /**
+     * Writes the journal of a table that seats four players, plays a whole
+     * frame and stops in the trading of the next, and notes after each record
+     * what should be recovered from it.
+     */
+    private static List<Expected> writeFrames(final Path directory, final int numDecks, final long seed)
+            throws Exception {
+        final SplittableRandom random = new SplittableRandom(seed);
+        final Journal journal = Journal.open(directory, 7, numDecks, seed);
+        final Journal.CardRecord dealRecord = journal.newCardRecord();
+        final ArrayList<Expected> expected = new ArrayList<>();
+        final String[] names = new String[Deal.NUM_SEATS];
+        final int[] totals = new int[Deal.NUM_SEATS];
+        final int[] avtIndices = new int[Deal.NUM_SEATS];
+        expected.add(new Expected(0, totals, names, null, false));
+
+        for (int seat = 0; seat < Deal.NUM_SEATS; seat++) {
+            names[seat] = NAMES[seat];
+            avtIndices[seat] = seat;
+            journal.recordSeat(seat, seat, names[seat]);
+            expected.add(new Expected(0, totals, names, null, false));
+        }
+
+        for (int frameNum = 0; frameNum < 2; frameNum++) {
+            final Deal deal = Deal.deal(numDecks, frameNum, random);
+            journal.recordSnapshot(frameNum, totals, avtIndices, names);
+            expected.add(new Expected(frameNum, totals, names, null, false));
+            journal.startFrame(frameNum, deal.tradeGap());
+            expected.add(new Expected(frameNum, totals, names, null, false));
+
+            final List<Card>[] hands = hands(deal);
+            dealRecord.begin(Journal.DEAL, 0);
+            for (int i = 0; i < hands[0].size(); i++) {
+                for (int seat = 0; seat < Deal.NUM_SEATS; seat++)
+                    dealRecord.add(hands[seat].get(i));
+            }
+            dealRecord.end();
+            expected.add(new Expected(frameNum, totals, names, deal, false));
+
+            for (int seat = 0; seat < Deal.NUM_SEATS; seat++) {
+                if (frameNum == 1 && seat == 2)
+                    break; // the server stops in the trading of the second frame
+                final List<Card> hand = hands(deal)[seat];
+                final List<Card> traded = new ArrayList<>();
+                for (int i = 0; i < Table.tradeSize; i++)
+                    traded.add(hand.remove(random.nextInt(hand.size())));
+                assertEquals(Rules.Violation.NONE, deal.trade(seat, traded));
+                journal.record(Journal.TRADE, seat, traded);
+                expected.add(new Expected(frameNum, totals, names, deal, false));
+            }
+            if (frameNum == 1)
+                break;
+
+            for (int seat = 0; seat < Deal.NUM_SEATS; seat++) {
+                final ArrayList<Card> shown = new ArrayList<>();
+                for (final Card card : hands(deal)[seat]) {
+                    if (card.isExposable() && random.nextBoolean())
+                        shown.add(card);
+                }
+                assertEquals(Rules.Violation.NONE, deal.show(seat, shown));
+                journal.record(Journal.SHOW, seat, shown);
+                expected.add(new Expected(frameNum, totals, names, deal, false));
+            }
+
+            deal.openPlay(random);
+            journal.record(Journal.LEADER, deal.turn());
+            expected.add(new Expected(frameNum, totals, names, deal, false));
+
+            while (deal.stage() == Deal.Stage.PLAYING) {
+                for (int i = 0; i < Deal.NUM_SEATS; i++) {
+                    final int seat = deal.turn();
+                    final List<List<Card>> plays = deal.legalPlays();
+                    final List<Card> play = plays.get(random.nextInt(plays.size()));
+                    assertEquals(Rules.Violation.NONE, deal.play(play));
+                    journal.record(Journal.PLAY, seat, play);
+                    expected.add(new Expected(frameNum, totals, names, deal, i == Deal.NUM_SEATS - 1));
+                }
+                journal.record(Journal.TRICK, deal.view(0).leader());
+                expected.add(new Expected(frameNum, totals, names, deal, false));
+            }
+
+            final int[] scores = deal.scores();
+            journal.recordScores(scores);
+            for (int seat = 0; seat < Deal.NUM_SEATS; seat++)
+                totals[seat] += scores[seat];
+            expected.add(new Expected(frameNum + 1, totals, names, null, false));
+        }
+        journal.close();
+        return expected;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Card>[] hands(final Deal deal) {
+        final List<Card>[] hands = new List[Deal.NUM_SEATS];
+        for (int seat = 0; seat < Deal.NUM_SEATS; seat++) {
+            hands[seat] = new ArrayList<>();
+            final CardSet hand = deal.view(seat).hand();
+            for (int weight = 0; weight < CardSet.NUM_KINDS; weight++) {
+                for (int i = hand.count(weight); i > 0; i--)
+                    hands[seat].add(Card.fromWeight(weight));
+            }
+        }
+        return hands;
+    }
+
+    private static void assertRecovered(final Expected expected, final Recovery recovery, final String where) {
+        assertEquals(expected.frameNum, recovery.frameNum(), where);
+        assertArrayEquals(expected.totals, recovery.totals(), where);
+        for (int seat = 0; seat < Deal.NUM_SEATS; seat++)
+            assertEquals(expected.names[seat], recovery.name(seat), where);
+        assertEquals(expected.trickUnrecorded, recovery.isTrickUnrecorded(), where);
+
+        final Deal deal = recovery.deal();
+        if (expected.deal == null) {
+            assertNull(deal, where);
+            return;
+        }
+        assertNotNull(deal, where);
+        assertEquals(expected.deal.stage(), deal.stage(), where);
+        assertEquals(expected.deal.turn(), deal.turn(), where);
+        assertArrayEquals(expected.deal.scores(), deal.scores(), where);
+        for (int seat = 0; seat < Deal.NUM_SEATS; seat++) {
+            assertEquals(expected.deal.view(seat).hand(), deal.view(seat).hand(), where);
+            assertEquals(expected.deal.stateKey(seat), deal.stateKey(seat), where);
+        }
+    }
+}
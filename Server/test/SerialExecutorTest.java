@@ -0,0 +1,141 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Stress tests of the serial executors that run the events of the tables,
+ * many of them sharing one pool as in the lobby.
+ *
+ * @author Weizhao Tang
+ */
+class SerialExecutorTest {
+    private static final int NUM_WORKERS = 4;
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(NUM_WORKERS);
+    private final AtomicReference<Throwable> thrown = new AtomicReference<>();
+
+    /**
+     * Starts a daemon thread whose exceptions fail the test.
+     */
+    private Thread start(final String name, final Runnable task) {
+        final Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.setUncaughtExceptionHandler((t, e) -> thrown.compareAndSet(null, e));
+        thread.start();
+        return thread;
+    }
+
+    @AfterEach
+    void shutDown() {
+        pool.shutdownNow();
+        assertNull(thrown.get(), () -> "a thread threw " + thrown.get());
+    }
+
+    /**
+     * Several threads submit to many executors at once, the way connections
+     * and timers submit to the tables. No two tasks of one executor may
+     * overlap, and the tasks of each submitter must run in its order.
+     */
+    @Test
+    void runsTheTasksOfEachExecutorOneAtATimeInOrder() throws Exception {
+        final int numExecutors = 16;
+        final int numSubmitters = 4;
+        final int numTasks = 50_000;
+        final SerialExecutor[] executors = new SerialExecutor[numExecutors];
+        final AtomicBoolean[] running = new AtomicBoolean[numExecutors];
+        final int[][] lastSeen = new int[numExecutors][numSubmitters]; // only touched by the tasks of one executor
+        final AtomicInteger overlaps = new AtomicInteger();
+        final AtomicInteger outOfOrder = new AtomicInteger();
+        final CountDownLatch finished = new CountDownLatch(numSubmitters * numTasks);
+        for (int e = 0; e < numExecutors; e++) {
+            executors[e] = new SerialExecutor(pool);
+            running[e] = new AtomicBoolean();
+        }
+
+        final List<Thread> submitters = new ArrayList<>();
+        for (int s = 0; s < numSubmitters; s++) {
+            final int submitter = s;
+            submitters.add(start("submitter-" + s, () -> {
+                for (int n = 1; n <= numTasks; n++) {
+                    final int e = (n * 7 + submitter) % numExecutors;
+                    final int seq = n;
+                    executors[e].execute(() -> {
+                        if (!running[e].compareAndSet(false, true))
+                            overlaps.incrementAndGet();
+                        if (lastSeen[e][submitter] >= seq)
+                            outOfOrder.incrementAndGet();
+                        lastSeen[e][submitter] = seq;
+                        running[e].set(false);
+                        finished.countDown();
+                    });
+                }
+            }));
+        }
+
+        for (final Thread submitter : submitters)
+            submitter.join();
+        assertTrue(finished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), finished.getCount() + " tasks never ran");
+        assertEquals(0, overlaps.get(), "tasks of one executor overlapped");
+        assertEquals(0, outOfOrder.get(), "tasks of one submitter ran out of order");
+    }
+
+    /**
+     * A task submitted just as the executor finds its queue empty must still
+     * run, which is where an executor that handed back its worker too early
+     * would strand it until the next event of the table.
+     */
+    @Test
+    void runsATaskSubmittedAsTheQueueEmpties() throws Exception {
+        final int numRounds = 100_000;
+        final SerialExecutor executor = new SerialExecutor(pool);
+        final AtomicInteger round = new AtomicInteger();
+        final AtomicInteger ran = new AtomicInteger();
+
+        // Submits in each round together with the test thread, so that one of them often comes as the other drains
+        final Thread late = start("late", () -> {
+            for (int r = 1; r <= numRounds; r++) {
+                while (round.get() < r)
+                    Thread.yield();
+                executor.execute(ran::incrementAndGet);
+            }
+        });
+        for (int r = 1; r <= numRounds; r++) {
+            round.set(r);
+            executor.execute(ran::incrementAndGet);
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+            while (ran.get() < 2 * r) {
+                assertTrue(System.nanoTime() < deadline, "a task of round " + r + " was stranded");
+                Thread.yield();
+            }
+        }
+        late.join();
+        assertEquals(2 * numRounds, ran.get());
+    }
+
+    /**
+     * An event that throws is reported and skipped, and the events queued
+     * behind it still run.
+     */
+    @Test
+    void goesOnAfterATaskThrows() throws Exception {
+        final SerialExecutor executor = new SerialExecutor(pool);
+        final CountDownLatch after = new CountDownLatch(1);
+        executor.execute(() -> {
+            throw new IllegalStateException("expected by the test");
+        });
+        executor.execute(after::countDown);
+        assertTrue(after.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,72 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import rule.Card;
+import rule.CardSet;
+
+/**
+ * Tests that shuffles are decided by the seed alone and deal every card to
+ * every position equally often.
+ *
+ * @author Weizhao Tang
+ */
+class ShoeTest {
+    @Test
+    void sameSeedDealsTheSameCards() {
+        final Shoe shoe = new Shoe(2);
+        final Shoe other = new Shoe(2);
+        final SplittableRandom random = new SplittableRandom(99);
+        final SplittableRandom otherRandom = new SplittableRandom(99);
+        for (int n = 0; n < 10; n++) {
+            shoe.shuffle(random);
+            other.shuffle(otherRandom);
+            assertEquals(2 * CardSet.NUM_KINDS, shoe.remainingCards());
+            Card card;
+            while ((card = shoe.dealCard()) != null)
+                assertSame(card, other.dealCard());
+            assertNull(other.dealCard());
+        }
+    }
+
+    @Test
+    void dealsEveryCard() {
+        final Shoe shoe = new Shoe(2);
+        shoe.shuffle(new SplittableRandom(5));
+        final CardSet dealt = new CardSet();
+        Card card;
+        while ((card = shoe.dealCard()) != null)
+            dealt.add(card);
+        assertEquals(CardSet.ALL_KINDS, dealt.first());
+        assertEquals(CardSet.ALL_KINDS, dealt.second());
+    }
+
+    /**
+     * Counts how often each card comes out at each position of a one-deck
+     * shoe, and checks the counts by a chi-squared test at every position.
+     */
+    @Test
+    void dealsUniformly() {
+        final int numKinds = CardSet.NUM_KINDS;
+        final int numShuffles = 200 * numKinds;
+        final int[][] counts = new int[numKinds][numKinds];
+        final Shoe shoe = new Shoe(1);
+        final SplittableRandom random = new SplittableRandom(2024);
+        for (int n = 0; n < numShuffles; n++) {
+            shoe.shuffle(random);
+            for (int position = 0; position < numKinds; position++)
+                counts[position][shoe.dealCard().weight()]++;
+        }
+
+        // With 51 degrees of freedom a chi-squared above 90 happens about once in 2,000
+        final double expected = (double) numShuffles / numKinds;
+        for (int position = 0; position < numKinds; position++) {
+            double chiSquared = 0;
+            for (final int count : counts[position])
+                chiSquared += (count - expected) * (count - expected) / expected;
+            assertTrue(chiSquared < 90, "chi-squared " + chiSquared + " at position " + position);
+        }
+    }
+}
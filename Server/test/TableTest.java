@@ -0,0 +1,59 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import rule.Protocol;
+
+/**
+ * Tests tables that run side by side on one pool of workers.
+ *
+ * @author Weizhao Tang
+ */
+class TableTest {
+    private static final int NUM_WORKERS = 4;
+    private static final int NUM_TABLES = 200;
+
+    private final ExecutorService workers = Executors.newFixedThreadPool(NUM_WORKERS);
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void shutDown() {
+        workers.shutdownNow();
+        timer.shutdownNow();
+    }
+
+    @Test
+    void dealsOnManyTablesAtOnceWithoutJournals() throws Exception {
+        final CountDownLatch dealt = new CountDownLatch(4 * NUM_TABLES);
+        final Player[][] players = new Player[NUM_TABLES][4];
+        for (int t = 0; t < NUM_TABLES; t++) {
+            final Table table = new Table(t, 2, t, Journal.OFF, workers, timer);
+            for (int seat = 0; seat < 4; seat++) {
+                players[t][seat] = new Player(line -> {
+                    if (line.startsWith(Protocol.SERVER_PREFIX + Protocol.SERVER_DELIM + "HAND" + Protocol.SERVER_DELIM))
+                        dealt.countDown();
+                }, table);
+                table.join(players[t][seat]);
+                players[t][seat].receive(message("SITDOWN", String.valueOf(seat), "0", "p" + t + "-" + seat));
+            }
+        }
+
+        // All tables start their frames at about the same time
+        for (int t = 0; t < NUM_TABLES; t++) {
+            for (final Player player : players[t])
+                player.receive(message("READY"));
+        }
+        assertTrue(dealt.await(30, TimeUnit.SECONDS), dealt.getCount() + " hands not dealt");
+    }
+
+    private static String message(final String... items) {
+        return Protocol.CLIENT_PREFIX + Protocol.CLIENT_DELIM + String.join(Protocol.CLIENT_DELIM, items);
+    }
+}